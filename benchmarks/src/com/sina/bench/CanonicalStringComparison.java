@@ -0,0 +1,88 @@
+package com.sina.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.sina.DefaultRequest;
+import com.sina.Request;
+import com.sina.bench.legacy.LegacyRestUtils;
+import com.sina.scs.RestUtils;
+
+/**
+ * Checks that {@link RestUtils#makeS3CanonicalString} returns exactly what
+ * {@link LegacyRestUtils} did for 100,000 randomized requests, then times both
+ * over 1,000,000 calls.
+ * <p>
+ * The requests mix signed and unsigned headers and parameters in varying
+ * case, null values and an optional expiry.
+ *
+ * <pre>
+ *  java -cp bench-classes:$CP com.sina.bench.CanonicalStringComparison
+ * </pre>
+ */
+public class CanonicalStringComparison {
+
+    private static final String[] HEADERS = {
+        "Content-Type", "Date", "x-amz-date", "X-Amz-Meta-Foo", "x-sina-acl", "s-sina-sha1",
+        "Content-MD5", "User-Agent", "Host", "x-sina-copy-source"
+    };
+
+    private static final String[] PARAMETERS = {
+        "acl", "uploadId", "partNumber", "x-amz-foo", "x-sina-bar", "prefix", "marker",
+        "formatter", "meta", "copy"
+    };
+
+    public static void main(String[] args) {
+        Random random = new Random(3);
+        List<Request<Object>> sample = new ArrayList<Request<Object>>();
+        int mismatches = 0;
+        for (int i = 0; i < 100000; i++) {
+            Request<Object> request = randomRequest(random);
+            String expires = random.nextInt(4) == 0 ? "1400000000" : null;
+            String expected = LegacyRestUtils.makeS3CanonicalString("PUT", "/bucket/key", request, expires);
+            String actual = RestUtils.makeS3CanonicalString("PUT", "/bucket/key", request, expires);
+            if (!expected.equals(actual) && mismatches++ < 3) {
+                System.out.println("Mismatch:\n" + expected + "\n--\n" + actual);
+            }
+            if (sample.size() < 1000) sample.add(request);
+        }
+        System.out.println("100000 requests, " + mismatches + " mismatches");
+
+        for (int round = 0; round < 3; round++) {
+            int length = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < 1000000; i++) {
+                length += LegacyRestUtils.makeS3CanonicalString("GET", "/bucket/key", sample.get(i % 1000), null).length();
+            }
+            long legacy = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < 1000000; i++) {
+                length += RestUtils.makeS3CanonicalString("GET", "/bucket/key", sample.get(i % 1000), null).length();
+            }
+            long current = System.nanoTime() - start;
+            System.out.println("legacy " + legacy / 1000000 + " ns/op, current " + current / 1000000
+                    + " ns/op (" + length + ")");
+        }
+        if (mismatches > 0) System.exit(1);
+    }
+
+    /**
+     * Returns a request with a random third of the headers and a random
+     * quarter of the parameters set, some of them to null.
+     */
+    static Request<Object> randomRequest(Random random) {
+        Request<Object> request = new DefaultRequest<Object>("scs");
+        for (String header : HEADERS) {
+            if (random.nextInt(3) == 0) {
+                request.addHeader(header, random.nextInt(5) == 0 ? null : "v" + random.nextInt(9));
+            }
+        }
+        for (String parameter : PARAMETERS) {
+            if (random.nextInt(4) == 0) {
+                request.addParameter(parameter, random.nextInt(3) == 0 ? null : "p" + random.nextInt(9));
+            }
+        }
+        return request;
+    }
+}
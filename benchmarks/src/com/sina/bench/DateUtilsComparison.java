@@ -0,0 +1,103 @@
+package com.sina.bench;
+
+import java.text.ParseException;
+import java.util.Date;
+import java.util.Random;
+
+import com.sina.bench.legacy.LegacyDateUtils;
+import com.sina.util.DateUtils;
+
+/**
+ * Checks that {@link DateUtils} formats and parses exactly like the
+ * SimpleDateFormat-based {@link LegacyDateUtils} for 2,000,000 instants, then
+ * times both.
+ * <p>
+ * The instants are the edge cases below, random instants across
+ * SimpleDateFormat's whole range (including years before 1 and after 9999)
+ * and random instants around the present. Parsing is compared from the
+ * Gregorian cutover on, as SimpleDateFormat parses earlier dates on the
+ * Julian calendar.
+ *
+ * <pre>
+ *  java -cp bench-classes:$CP com.sina.bench.DateUtilsComparison
+ * </pre>
+ */
+public class DateUtilsComparison {
+
+    /** The Gregorian cutover, 1582-10-15T00:00:00Z */
+    private static final long GREGORIAN_CUTOVER = -12219292800000L;
+
+    private static final long[] EDGES = {
+        GREGORIAN_CUTOVER, GREGORIAN_CUTOVER - 1, -12212553600000L, 253402300799999L,
+        253402300800000L, 0, -1, 951782400000L, -62135769600000L, -99999999999999L
+    };
+
+    public static void main(String[] args) throws ParseException {
+        DateUtils current = new DateUtils();
+        LegacyDateUtils legacy = new LegacyDateUtils();
+        Random random = new Random(1);
+        int mismatches = 0;
+        for (int i = 0; i < 2000000; i++) {
+            long time;
+            if (i < EDGES.length) {
+                time = EDGES[i];
+            } else if (i % 2 == 0) {
+                time = random.nextLong() % 300000000000000L;
+            } else {
+                time = 1400000000000L + (long)(random.nextDouble() * 3e12);
+            }
+            Date date = new Date(time);
+
+            String iso8601 = legacy.formatIso8601Date(date);
+            String rfc822 = legacy.formatRfc822Date(date);
+            mismatches += check("formatIso8601Date " + time, iso8601, current.formatIso8601Date(date));
+            mismatches += check("formatRfc822Date " + time, rfc822, current.formatRfc822Date(date));
+            if (time < GREGORIAN_CUTOVER) continue;
+
+            mismatches += check("parseIso8601Date " + iso8601,
+                    legacy.parseIso8601Date(iso8601), current.parseIso8601Date(iso8601));
+            mismatches += check("parseRfc822Date " + rfc822,
+                    legacy.parseRfc822Date(rfc822), current.parseRfc822Date(rfc822));
+            String utc = rfc822.replace("GMT", "UTC");
+            mismatches += check("parseRfc822Date " + utc,
+                    legacy.parseRfc822Date(utc), current.parseRfc822Date(utc));
+            String compressed = iso8601.substring(0, 19).replace("-", "").replace(":", "") + "Z";
+            if (compressed.length() == 16) {
+                mismatches += check("parseCompressedIso8601Date " + compressed,
+                        legacy.parseCompressedIso8601Date(compressed), current.parseCompressedIso8601Date(compressed));
+            }
+        }
+        System.out.println("2000000 instants, " + mismatches + " mismatches");
+
+        Date[] dates = new Date[1000];
+        String[] strings = new String[dates.length];
+        for (int i = 0; i < dates.length; i++) {
+            dates[i] = new Date(1400000000000L + (long)(random.nextDouble() * 3e12));
+            strings[i] = legacy.formatRfc822Date(dates[i]);
+        }
+        for (int round = 0; round < 3; round++) {
+            int length = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < 1000000; i++) {
+                length += legacy.formatRfc822Date(dates[i % 1000]).length();
+                length += legacy.parseRfc822Date(strings[i % 1000]).getDate();
+            }
+            long legacyTime = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int i = 0; i < 1000000; i++) {
+                length += current.formatRfc822Date(dates[i % 1000]).length();
+                length += current.parseRfc822Date(strings[i % 1000]).getDate();
+            }
+            long currentTime = System.nanoTime() - start;
+            System.out.println("RFC 822 format and parse: legacy " + legacyTime / 1000000 + " ns/op, current "
+                    + currentTime / 1000000 + " ns/op (" + length + ")");
+        }
+        if (mismatches > 0) System.exit(1);
+    }
+
+    private static int check(String what, Object expected, Object actual) {
+        if (expected.equals(actual)) return 0;
+        System.out.println("Mismatch in " + what + ": " + expected + " != " + actual);
+        return 1;
+    }
+}
@@ -0,0 +1,115 @@
+package com.sina.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sina.Request;
+import com.sina.auth.AWSCredentials;
+import com.sina.auth.AWSSessionCredentials;
+import com.sina.auth.AbstractAWSSigner;
+import com.sina.auth.SigningAlgorithm;
+import com.sina.bench.legacy.LegacyRestUtils;
+import com.sina.scs.RestUtils;
+
+/**
+ * JMH benchmark of building and signing the string to sign, before and after
+ * the signing allocations were cut: {@link LegacyRestUtils} with a new Mac
+ * per request against {@link RestUtils} with the signer's per-thread Mac.
+ * <p>
+ * Each invocation works on the next of 1000 randomized requests, built like
+ * those of {@link CanonicalStringComparison}.
+ *
+ * <pre>
+ *  java -cp jmh-core.jar:jopt-simple.jar:commons-math3.jar:bench-classes:$CP \
+ *      org.openjdk.jmh.Main SigningBenchmark
+ * </pre>
+ *
+ * The jars are those of JMH 1.x; compile this class with the JMH annotation
+ * processor (jmh-generator-annprocess) on the processor path.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SigningBenchmark {
+
+    private static final String SECRET_KEY = "bench-secret-key-0123456789";
+
+    private final ExposedSigner signer = new ExposedSigner();
+    private final byte[] key = SECRET_KEY.getBytes();
+
+    private List<Request<Object>> requests;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(3);
+        requests = new ArrayList<Request<Object>>();
+        for (int i = 0; i < 1000; i++) {
+            requests.add(CanonicalStringComparison.randomRequest(random));
+        }
+    }
+
+    private Request<Object> nextRequest() {
+        Request<Object> request = requests.get(next);
+        next = (next + 1) % requests.size();
+        return request;
+    }
+
+    @Benchmark
+    public String legacyCanonicalString() {
+        return LegacyRestUtils.makeS3CanonicalString("PUT", "/bucket/key", nextRequest(), null);
+    }
+
+    @Benchmark
+    public String canonicalString() {
+        return RestUtils.makeS3CanonicalString("PUT", "/bucket/key", nextRequest(), null);
+    }
+
+    @Benchmark
+    public byte[] legacySign() throws Exception {
+        String canonicalString = LegacyRestUtils.makeS3CanonicalString("PUT", "/bucket/key", nextRequest(), null);
+        Mac mac = Mac.getInstance(SigningAlgorithm.HmacSHA1.toString());
+        mac.init(new SecretKeySpec(key, SigningAlgorithm.HmacSHA1.toString()));
+        return mac.doFinal(canonicalString.getBytes("UTF-8"));
+    }
+
+    @Benchmark
+    public byte[] sign() throws Exception {
+        String canonicalString = RestUtils.makeS3CanonicalString("PUT", "/bucket/key", nextRequest(), null);
+        return signer.hmac(canonicalString.getBytes("UTF-8"), key);
+    }
+
+    /** Exposes the signer's HMAC, which is what requests are signed with */
+    private static class ExposedSigner extends AbstractAWSSigner {
+        public void sign(Request<?> request, AWSCredentials credentials) {
+            throw new UnsupportedOperationException();
+        }
+
+        protected void addSessionCredentials(Request<?> request, AWSSessionCredentials credentials) {
+            throw new UnsupportedOperationException();
+        }
+
+        byte[] hmac(byte[] data, byte[] key) {
+            return sign(data, key, SigningAlgorithm.HmacSHA1);
+        }
+    }
+}
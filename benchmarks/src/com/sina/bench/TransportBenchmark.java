@@ -0,0 +1,150 @@
+package com.sina.bench;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.sina.ClientConfiguration;
+import com.sina.Protocol;
+import com.sina.auth.BasicAWSCredentials;
+import com.sina.http.ApacheHttpTransport;
+import com.sina.http.HttpTransportFactory;
+import com.sina.http.JdkHttpTransportFactory;
+import com.sina.scs.S3ClientOptions;
+import com.sina.scs.SCSClient;
+import com.sina.scs.model.S3Object;
+
+/**
+ * Compares the bundled HttpClient transport with the JDK HttpClient
+ * transport on concurrent object reads from a local HTTP/2 stand-in server
+ * (transport/h2-server.js).
+ * <p>
+ * Each run reads the object <i>threads x requestsPerThread</i> times through
+ * SCSClient.getObject, so signing, retries and response handling are
+ * included, and reports throughput, latency percentiles and the number of
+ * TCP connections the server accepted for each transport.
+ *
+ * <pre>
+ *  TransportBenchmark https://localhost:8443 [threads] [requestsPerThread]
+ * </pre>
+ */
+public class TransportBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        String endpoint = args[0];
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int requestsPerThread = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+        HttpTransportFactory[] factories = { ApacheHttpTransport.FACTORY, new JdkHttpTransportFactory() };
+        String[] names = { "bundled HttpClient", "JDK HttpClient" };
+        for (int i = 0; i < factories.length; i++) {
+            SCSClient client = newClient(endpoint, factories[i], threads);
+            long[] before = stats(endpoint);
+            // One request first, so that an HTTP/2 client has a connection to
+            // multiplex onto, then a warm-up round, then the measured round.
+            read(client, new byte[16 * 1024]);
+            run(client, threads, Math.max(1, requestsPerThread / 10));
+            Result result = run(client, threads, requestsPerThread);
+            long[] after = stats(endpoint);
+            client.shutdown();
+            System.out.printf("%-20s %8.0f req/s  p50 %6.2f ms  p99 %6.2f ms  connections %d%n",
+                    names[i], result.throughput(), result.percentile(50), result.percentile(99),
+                    after[0] - before[0]);
+        }
+        System.exit(0);
+    }
+
+    private static SCSClient newClient(String endpoint, HttpTransportFactory factory, int threads) {
+        ClientConfiguration config = new ClientConfiguration()
+                .withProtocol(Protocol.HTTPS)
+                .withMaxConnections(threads)
+                .withMaxErrorRetry(0);
+        config.setHttpTransportFactory(factory);
+        SCSClient client = new SCSClient(new BasicAWSCredentials("bench", "bench"), config);
+        client.setEndpoint(endpoint);
+        client.setS3ClientOptions(new S3ClientOptions().withPathStyleAccess(true));
+        return client;
+    }
+
+    private static void read(SCSClient client, byte[] buffer) throws Exception {
+        S3Object object = client.getObject("bench", "object");
+        InputStream in = object.getObjectContent();
+        try {
+            while (in.read(buffer) != -1) {
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static Result run(final SCSClient client, int threads, final int requestsPerThread)
+            throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<long[]>> futures = new ArrayList<Future<long[]>>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(new Callable<long[]>() {
+                public long[] call() throws Exception {
+                    byte[] buffer = new byte[16 * 1024];
+                    long[] latencies = new long[requestsPerThread];
+                    for (int r = 0; r < requestsPerThread; r++) {
+                        long begin = System.nanoTime();
+                        read(client, buffer);
+                        latencies[r] = System.nanoTime() - begin;
+                    }
+                    return latencies;
+                }
+            }));
+        }
+
+        long[] all = new long[threads * requestsPerThread];
+        int n = 0;
+        try {
+            for (Future<long[]> future : futures) {
+                long[] latencies = future.get();
+                System.arraycopy(latencies, 0, all, n, latencies.length);
+                n += latencies.length;
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return new Result(all, System.nanoTime() - start);
+    }
+
+    /** Returns the connections and requests the stand-in server has counted */
+    private static long[] stats(String endpoint) throws Exception {
+        InputStream in = new URL(endpoint + "/__stats").openStream();
+        try {
+            String[] counts = new String(in.readAllBytes(), "UTF-8").trim().split(" ");
+            return new long[] { Long.parseLong(counts[0]), Long.parseLong(counts[1]) };
+        } finally {
+            in.close();
+        }
+    }
+
+    private static class Result {
+        private final long[] latencies;
+        private final long elapsedNanos;
+
+        Result(long[] latencies, long elapsedNanos) {
+            this.latencies = latencies;
+            this.elapsedNanos = elapsedNanos;
+            Arrays.sort(latencies);
+        }
+
+        double throughput() {
+            return latencies.length * 1e9 / elapsedNanos;
+        }
+
+        double percentile(int p) {
+            int index = Math.min(latencies.length - 1, latencies.length * p / 100);
+            return latencies[index] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.sina.bench;
+
+import java.util.Random;
+
+import com.sina.bench.legacy.LegacyHttpUtils;
+import com.sina.util.HttpUtils;
+
+/**
+ * Checks that {@link HttpUtils#urlEncode(String, boolean)} returns exactly
+ * what the URLEncoder and regex based {@link LegacyHttpUtils} did for
+ * 1,000,000 random strings, as paths and as query values, then times both on
+ * object keys with and without non-ASCII characters.
+ * <p>
+ * The strings mix ASCII letters, reserved and unreserved punctuation,
+ * characters encoded to two, three and four UTF-8 bytes, and unpaired
+ * surrogates.
+ *
+ * <pre>
+ *  java -cp bench-classes:$CP com.sina.bench.UrlEncodeComparison
+ * </pre>
+ */
+public class UrlEncodeComparison {
+
+    private static final char[] SPECIAL_CHARACTERS =
+            " +*~/%?&=#:@!$'(),;[]\"<>\\^`{|}-_.aZ09éßü中文日本語\u0080߿ࠀ￿"
+            .toCharArray();
+
+    public static void main(String[] args) {
+        Random random = new Random(11);
+        int mismatches = 0;
+        for (int i = 0; i < 1000000; i++) {
+            String value = randomString(random);
+            boolean path = random.nextBoolean();
+            String expected = LegacyHttpUtils.urlEncode(value, path);
+            String actual = HttpUtils.urlEncode(value, path);
+            if (!expected.equals(actual) && mismatches++ < 5) {
+                System.out.println("Mismatch for [" + value + "], path " + path + ":\n " + expected + "\n " + actual);
+            }
+        }
+        System.out.println("1000000 strings, " + mismatches + " mismatches");
+
+        String[] utf8Keys = new String[1000];
+        String[] asciiKeys = new String[1000];
+        for (int i = 0; i < 1000; i++) {
+            utf8Keys[i] = "用户上传/2014年/相册 " + i + "/IMG_" + i + " (copy).jpg";
+            asciiKeys[i] = "logs/2014/05/05/app-server-" + i + ".log.gz";
+        }
+        for (int round = 0; round < 3; round++) {
+            time("UTF-8 keys", utf8Keys);
+            time("ASCII keys", asciiKeys);
+        }
+        if (mismatches > 0) System.exit(1);
+    }
+
+    private static void time(String name, String[] keys) {
+        int length = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < 1000000; i++) {
+            length += LegacyHttpUtils.urlEncode(keys[i % keys.length], true).length();
+        }
+        long legacy = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < 1000000; i++) {
+            length += HttpUtils.urlEncode(keys[i % keys.length], true).length();
+        }
+        long current = System.nanoTime() - start;
+        System.out.println(name + ": legacy " + legacy / 1000000 + " ns/op, current " + current / 1000000
+                + " ns/op (" + length + ")");
+    }
+
+    private static String randomString(Random random) {
+        StringBuilder builder = new StringBuilder();
+        int length = random.nextInt(40);
+        for (int i = 0; i < length; i++) {
+            int kind = random.nextInt(20);
+            if (kind == 0) {
+                builder.append((char)(0xD800 + random.nextInt(0x800)));
+            } else if (kind == 1) {
+                builder.appendCodePoint(0x10000 + random.nextInt(0x100000));
+            } else if (kind < 8) {
+                builder.append(SPECIAL_CHARACTERS[random.nextInt(SPECIAL_CHARACTERS.length)]);
+            } else {
+                builder.append((char)('a' + random.nextInt(26)));
+            }
+        }
+        return builder.toString();
+    }
+}
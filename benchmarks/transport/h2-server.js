@@ -0,0 +1,47 @@
+// Local HTTP/2 stand-in for an SCS endpoint, used by TransportBenchmark.
+//
+//   node h2-server.js <port> <key.pem> <cert.pem> [objectSize]
+//
+// Every GET returns the same object of objectSize bytes, every HEAD its
+// headers. ALPN offers h2 and http/1.1, so clients that only speak HTTP/1.1
+// are served too. GET /__stats returns "<connections> <requests>" counted so
+// far, which the benchmark reads before and after each run.
+'use strict';
+
+const crypto = require('crypto');
+const fs = require('fs');
+const http2 = require('http2');
+
+const [port, keyFile, certFile, size] = process.argv.slice(2);
+const body = Buffer.alloc(parseInt(size || '65536', 10), 7);
+const etag = '"' + crypto.createHash('md5').update(body).digest('hex') + '"';
+
+let connections = 0;
+let requests = 0;
+
+const server = http2.createSecureServer({
+  key: fs.readFileSync(keyFile),
+  cert: fs.readFileSync(certFile),
+  allowHTTP1: true,
+  settings: { maxConcurrentStreams: 1000 },
+}, (req, res) => {
+  // Drain any request body first, or a large upload stalls on flow control.
+  req.resume();
+  req.on('end', () => respond(req, res));
+});
+
+function respond(req, res) {
+  if (req.url === '/__stats') {
+    res.end(connections + ' ' + requests);
+    return;
+  }
+  requests++;
+  res.setHeader('Content-Type', 'application/octet-stream');
+  res.setHeader('Content-Length', body.length);
+  res.setHeader('ETag', etag);
+  res.setHeader('Last-Modified', 'Mon, 31 Mar 2014 08:53:10 GMT');
+  res.end(req.method === 'HEAD' ? undefined : body);
+}
+
+server.on('secureConnection', () => connections++);
+server.listen(parseInt(port, 10), '127.0.0.1');
@@ -0,0 +1,296 @@
+package com.sina.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.net.InetSocketAddress;
+import java.net.ProxySelector;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.sina.ClientConfiguration;
+import com.sina.Headers;
+import com.sina.http.httpclientandroidlib.Header;
+import com.sina.http.httpclientandroidlib.HttpEntity;
+import com.sina.http.httpclientandroidlib.HttpEntityEnclosingRequest;
+import com.sina.http.httpclientandroidlib.HttpResponse;
+import com.sina.http.httpclientandroidlib.HttpVersion;
+import com.sina.http.httpclientandroidlib.client.methods.HttpRequestBase;
+import com.sina.http.httpclientandroidlib.concurrent.Cancellable;
+import com.sina.http.httpclientandroidlib.entity.BasicHttpEntity;
+import com.sina.http.httpclientandroidlib.impl.EnglishReasonPhraseCatalog;
+import com.sina.http.httpclientandroidlib.message.BasicHttpResponse;
+import com.sina.http.httpclientandroidlib.message.BasicStatusLine;
+import com.sina.http.httpclientandroidlib.protocol.HttpContext;
+
+/**
+ * An {@link HttpTransport} over the JDK's own {@link HttpClient} (Java 11 and
+ * later). Requests negotiate HTTP/2 where the endpoint supports it, through
+ * ALPN over TLS or an h2c upgrade over plain HTTP, so concurrent requests to
+ * one endpoint are multiplexed over a few connections instead of one
+ * connection each. Endpoints that only speak HTTP/1.1 are served over
+ * HTTP/1.1.
+ * <p>
+ * The connection and socket timeouts and the proxy host and port of the
+ * client configuration are honoured; proxy authentication and the connection
+ * pool size are not, as the JDK client manages its own connections.
+ * <p>
+ * This class lives in the separate Java 11 source set and is enabled with
+ * {@link JdkHttpTransportFactory}. It also sends requests without blocking,
+ * so that {@link com.sina.scs.SCSAsyncClient} doesn't hold a thread for each
+ * <code>getObject</code> or <code>getObjectMetadata</code> call waiting for
+ * its response.
+ */
+public class JdkHttpTransport implements AsyncHttpTransport {
+
+    private static final Log log = LogFactory.getLog(JdkHttpTransport.class);
+
+    /** Headers the JDK client sets itself and refuses from callers */
+    private static final Set<String> RESTRICTED_HEADERS = new HashSet<String>(Arrays.asList(
+            "connection", "content-length", "expect", "host", "upgrade"));
+
+    /**
+     * HTTP/2 sends every header name in lower case, but the response handlers
+     * look up the standard headers by the names in {@link Headers}.
+     */
+    private static final Map<String, String> CANONICAL_HEADER_NAMES = new HashMap<String, String>();
+    static {
+        for (String name : Arrays.asList(Headers.CACHE_CONTROL, Headers.CONTENT_DISPOSITION,
+                Headers.CONTENT_ENCODING, Headers.CONTENT_LENGTH, Headers.CONTENT_MD5,
+                Headers.CONTENT_TYPE, Headers.DATE, Headers.ETAG, Headers.EXPIRES,
+                Headers.LAST_MODIFIED, Headers.SERVER, "Accept-Ranges", "Content-Range", "Location")) {
+            CANONICAL_HEADER_NAMES.put(name.toLowerCase(), name);
+        }
+    }
+
+    private final HttpClient httpClient;
+
+    /** Timeout for the response headers of each request, or null for none */
+    private final Duration responseTimeout;
+
+    /** Threads writing request entities into the client's body publishers */
+    private final ExecutorService entityWriters;
+
+    /**
+     * Creates a transport whose HttpClient is configured with the given
+     * client configuration.
+     */
+    public JdkHttpTransport(ClientConfiguration config) {
+        this.entityWriters = Executors.newCachedThreadPool(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "scs-jdk-http-entity-writer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NEVER);
+        if (config.getConnectionTimeout() > 0) {
+            builder.connectTimeout(Duration.ofMillis(config.getConnectionTimeout()));
+        }
+        if (config.getProxyHost() != null && config.getProxyPort() > 0) {
+            builder.proxy(ProxySelector.of(
+                    new InetSocketAddress(config.getProxyHost(), config.getProxyPort())));
+        }
+        this.httpClient = builder.build();
+        this.responseTimeout = config.getSocketTimeout() > 0
+                ? Duration.ofMillis(config.getSocketTimeout()) : null;
+    }
+
+    public HttpResponse execute(HttpRequestBase request, HttpContext context) throws IOException {
+        CompletableFuture<java.net.http.HttpResponse<InputStream>> future = send(request);
+        java.net.http.HttpResponse<InputStream> response;
+        try {
+            response = future.get();
+        } catch (CancellationException e) {
+            throw new IOException("Request aborted", e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for the response");
+        } catch (ExecutionException e) {
+            throw toIOException(e.getCause());
+        }
+        return toResponse(request, response);
+    }
+
+    public void executeAsync(final HttpRequestBase request, HttpContext context, final Callback callback) {
+        CompletableFuture<java.net.http.HttpResponse<InputStream>> future;
+        try {
+            future = send(request);
+        } catch (IOException e) {
+            callback.failed(e);
+            return;
+        }
+        future.whenComplete((response, failure) -> {
+            HttpResponse apacheResponse;
+            try {
+                if (failure != null) throw toIOException(failure);
+                apacheResponse = toResponse(request, response);
+            } catch (IOException e) {
+                callback.failed(e);
+                return;
+            }
+            callback.completed(apacheResponse);
+        });
+    }
+
+    public void shutdown() {
+        entityWriters.shutdownNow();
+    }
+
+    /**
+     * Starts sending the request, registering the returned future as what
+     * aborting the request cancels.
+     */
+    private CompletableFuture<java.net.http.HttpResponse<InputStream>> send(HttpRequestBase request)
+            throws IOException {
+        java.net.http.HttpRequest.Builder builder = java.net.http.HttpRequest.newBuilder(request.getURI())
+                .method(request.getMethod(), toBodyPublisher(request));
+        if (responseTimeout != null) builder.timeout(responseTimeout);
+        for (Header header : request.getAllHeaders()) {
+            String name = header.getName().toLowerCase();
+            if (name.equals("expect")) {
+                builder.expectContinue("100-continue".equalsIgnoreCase(header.getValue()));
+            } else if (!RESTRICTED_HEADERS.contains(name)) {
+                builder.header(header.getName(), header.getValue());
+            }
+        }
+
+        if (request.isAborted()) throw new IOException("Request aborted");
+        final CompletableFuture<java.net.http.HttpResponse<InputStream>> future =
+                httpClient.sendAsync(builder.build(), BodyHandlers.ofInputStream());
+        request.setCancellable(new Cancellable() {
+            public boolean cancel() {
+                return future.cancel(true);
+            }
+        });
+        // Aborted since the check above, in which case the cancellable wasn't set
+        if (request.isAborted()) future.cancel(true);
+        return future;
+    }
+
+    /**
+     * Returns the I/O error a request failed with, unwrapped from the
+     * future's exception.
+     */
+    private static IOException toIOException(Throwable failure) {
+        if (failure instanceof CompletionException && failure.getCause() != null) {
+            failure = failure.getCause();
+        }
+        if (failure instanceof IOException) return (IOException)failure;
+        if (failure instanceof CancellationException) return new IOException("Request aborted", failure);
+        return new IOException("Unable to execute HTTP request: " + failure.getMessage(), failure);
+    }
+
+    /**
+     * Returns a publisher that streams the entity of the request, if any.
+     * The entity is written through {@link HttpEntity#writeTo(OutputStream)}
+     * rather than read from its content, so that repeatable entities rewind
+     * their content on retries just as they do on the bundled client.
+     */
+    private BodyPublisher toBodyPublisher(HttpRequestBase request) {
+        if (!(request instanceof HttpEntityEnclosingRequest)) return BodyPublishers.noBody();
+        final HttpEntity entity = ((HttpEntityEnclosingRequest)request).getEntity();
+        if (entity == null) return BodyPublishers.noBody();
+
+        BodyPublisher publisher = BodyPublishers.ofInputStream(() -> {
+            final PipedInputStream in = new PipedInputStream(64 * 1024);
+            final PipedOutputStream out;
+            try {
+                out = new PipedOutputStream(in);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            entityWriters.execute(new Runnable() {
+                public void run() {
+                    try {
+                        entity.writeTo(out);
+                    } catch (IOException e) {
+                        log.debug("Unable to write the request entity", e);
+                    } finally {
+                        try {
+                            out.close();
+                        } catch (IOException e) {
+                            log.debug("Unable to close the request entity pipe", e);
+                        }
+                    }
+                }
+            });
+            return in;
+        });
+        long contentLength = entity.getContentLength();
+        return contentLength >= 0 ? BodyPublishers.fromPublisher(publisher, contentLength) : publisher;
+    }
+
+    /**
+     * Adapts a JDK response to the bundled client's response type, leaving
+     * the body streaming; aborting the request from then on closes the body.
+     */
+    private static HttpResponse toResponse(HttpRequestBase request,
+            java.net.http.HttpResponse<InputStream> response) throws IOException {
+        final InputStream content = response.body();
+        request.setCancellable(new Cancellable() {
+            public boolean cancel() {
+                try {
+                    content.close();
+                } catch (IOException e) {
+                    log.debug("Unable to close the aborted response stream", e);
+                }
+                return true;
+            }
+        });
+
+        int status = response.statusCode();
+        BasicHttpResponse apacheResponse = new BasicHttpResponse(new BasicStatusLine(
+                HttpVersion.HTTP_1_1, status, EnglishReasonPhraseCatalog.INSTANCE.getReason(status, null)));
+
+        HttpHeaders headers = response.headers();
+        for (Map.Entry<String, List<String>> header : headers.map().entrySet()) {
+            String name = header.getKey();
+            if (name.startsWith(":")) continue;
+            String canonicalName = CANONICAL_HEADER_NAMES.get(name.toLowerCase());
+            if (canonicalName != null) name = canonicalName;
+            for (String value : header.getValue()) {
+                apacheResponse.addHeader(name, value);
+            }
+        }
+
+        if ("HEAD".equals(request.getMethod()) || status == 204 || status == 304) {
+            content.close();
+            return apacheResponse;
+        }
+        BasicHttpEntity entity = new BasicHttpEntity();
+        entity.setContent(content);
+        entity.setContentLength(headers.firstValueAsLong("Content-Length").orElse(-1L));
+        entity.setContentType(apacheResponse.getFirstHeader("Content-Type"));
+        entity.setContentEncoding(apacheResponse.getFirstHeader("Content-Encoding"));
+        apacheResponse.setEntity(entity);
+        return apacheResponse;
+    }
+}
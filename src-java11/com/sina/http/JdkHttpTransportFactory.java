@@ -0,0 +1,18 @@
+package com.sina.http;
+
+import com.sina.ClientConfiguration;
+
+/**
+ * Creates {@link JdkHttpTransport}s. Set it on a client configuration, or
+ * for every client with the system property
+ *
+ * <pre>
+ *  -Dcom.sina.sdk.httpTransportFactory=com.sina.http.JdkHttpTransportFactory
+ * </pre>
+ */
+public class JdkHttpTransportFactory implements HttpTransportFactory {
+
+    public HttpTransport createTransport(ClientConfiguration config) {
+        return new JdkHttpTransport(config);
+    }
+}
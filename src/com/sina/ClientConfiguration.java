@@ -15,7 +15,9 @@
 package com.sina;
 
 
+import com.sina.http.HttpTransportFactory;
 import com.sina.http.IdleConnectionReaper;
+import com.sina.metrics.RequestMetricCollector;
 import com.sina.http.httpclientandroidlib.annotation.NotThreadSafe;
 import com.sina.http.httpclientandroidlib.client.HttpRequestRetryHandler;
 import com.sina.http.retry.PredefinedRetryPolicies;
@@ -43,6 +45,12 @@ public class ClientConfiguration {
      * @see IdleConnectionReaper
      */
     public static final boolean DEFAULT_USE_REAPER = true;
+
+    /**
+     * The default on whether file uploads over plain HTTP are sent with
+     * FileChannel.transferTo.
+     */
+    public static final boolean DEFAULT_USE_ZERO_COPY_UPLOAD = false;
     
 
     /**
@@ -120,6 +128,25 @@ public class ClientConfiguration {
      */
     private boolean useReaper = DEFAULT_USE_REAPER;
 
+    /**
+     * Optional whether file uploads over plain HTTP are sent straight from the
+     * file to the socket with FileChannel.transferTo, instead of being copied
+     * through the connection's output buffer.
+     */
+    private boolean useZeroCopyUpload = DEFAULT_USE_ZERO_COPY_UPLOAD;
+
+    /**
+     * Optional factory for the transport requests are sent through; the
+     * bundled HttpClient is used if not set.
+     */
+    private HttpTransportFactory httpTransportFactory;
+
+    /**
+     * Optional collector of the metrics of every request; no metrics are
+     * recorded if not set.
+     */
+    private RequestMetricCollector requestMetricCollector;
+
 
     public ClientConfiguration() {}
 
@@ -138,6 +165,9 @@ public class ClientConfiguration {
         this.socketTimeout     = other.socketTimeout;
         this.userAgent         = other.userAgent;
         this.useReaper         = other.useReaper;
+        this.useZeroCopyUpload = other.useZeroCopyUpload;
+        this.httpTransportFactory = other.httpTransportFactory;
+        this.requestMetricCollector = other.requestMetricCollector;
 
         this.socketReceiveBufferSizeHint = other.socketReceiveBufferSizeHint;
         this.socketSendBufferSizeHint    = other.socketSendBufferSizeHint;
@@ -685,6 +715,127 @@ public class ClientConfiguration {
         return this;
     }
 
+    /**
+     * Checks if file uploads over plain HTTP are sent with
+     * FileChannel.transferTo.
+     *
+     * @return if file uploads over plain HTTP are sent with
+     *         FileChannel.transferTo
+     */
+    public boolean useZeroCopyUpload() {
+        return useZeroCopyUpload;
+    }
+
+    /**
+     * Sets whether file uploads over plain HTTP are sent straight from the
+     * file to the socket with FileChannel.transferTo. Only uploads whose
+     * Content-MD5 is known before the request is sent take this path; HTTPS
+     * connections always copy the file through the connection.
+     *
+     * @param use whether file uploads over plain HTTP are sent with
+     *            FileChannel.transferTo
+     */
+    public void setUseZeroCopyUpload(boolean use) {
+        this.useZeroCopyUpload = use;
+    }
+
+    /**
+     * Sets whether file uploads over plain HTTP are sent with
+     * FileChannel.transferTo.
+     *
+     * @param use whether file uploads over plain HTTP are sent with
+     *            FileChannel.transferTo
+     *
+     * @return The updated ClientConfiguration object.
+     */
+    public ClientConfiguration withZeroCopyUpload(boolean use) {
+        setUseZeroCopyUpload(use);
+        return this;
+    }
+
+    /**
+     * Returns the factory for the transport requests are sent through, or
+     * null if the bundled HttpClient is used.
+     *
+     * @return The factory for the transport requests are sent through.
+     */
+    public HttpTransportFactory getHttpTransportFactory() {
+        return httpTransportFactory;
+    }
+
+    /**
+     * Sets the factory for the transport requests are sent through, to run
+     * requests on an HTTP engine other than the bundled HttpClient. Signing,
+     * retries and response handling are unchanged whatever the transport.
+     * Options that configure the bundled HttpClient, such as the connection
+     * pool size, timeouts and proxy settings, are passed to the factory and
+     * apply only as far as the transport honours them.
+     *
+     * @param httpTransportFactory
+     *            The factory for the transport requests are sent through, or
+     *            null to use the bundled HttpClient.
+     */
+    public void setHttpTransportFactory(HttpTransportFactory httpTransportFactory) {
+        this.httpTransportFactory = httpTransportFactory;
+    }
+
+    /**
+     * Sets the factory for the transport requests are sent through, and
+     * returns the updated ClientConfiguration object.
+     *
+     * @param httpTransportFactory
+     *            The factory for the transport requests are sent through, or
+     *            null to use the bundled HttpClient.
+     *
+     * @return The updated ClientConfiguration object.
+     */
+    public ClientConfiguration withHttpTransportFactory(HttpTransportFactory httpTransportFactory) {
+        setHttpTransportFactory(httpTransportFactory);
+        return this;
+    }
+
+    /**
+     * Returns the collector of the metrics of every request, or null if no
+     * metrics are recorded.
+     *
+     * @return The collector of the metrics of every request.
+     */
+    public RequestMetricCollector getRequestMetricCollector() {
+        return requestMetricCollector;
+    }
+
+    /**
+     * Sets the collector of the metrics of every request. When set, each
+     * request records its signing, HTTP request, retry pause and response
+     * processing times per attempt, its status code and the response bytes
+     * processed, and hands them to the collector once it completes. When not
+     * set, nothing is recorded.
+     *
+     * @param requestMetricCollector
+     *            The collector of the metrics of every request, or null to
+     *            record no metrics.
+     *
+     * @see com.sina.metrics.AggregatingRequestMetricCollector
+     */
+    public void setRequestMetricCollector(RequestMetricCollector requestMetricCollector) {
+        this.requestMetricCollector = requestMetricCollector;
+    }
+
+    /**
+     * Sets the collector of the metrics of every request, and returns the
+     * updated ClientConfiguration object.
+     *
+     * @param requestMetricCollector
+     *            The collector of the metrics of every request, or null to
+     *            record no metrics.
+     *
+     * @return The updated ClientConfiguration object.
+     */
+    public ClientConfiguration withRequestMetricCollector(RequestMetricCollector requestMetricCollector) {
+        setRequestMetricCollector(requestMetricCollector);
+        return this;
+    }
+
     /**
      * Returns the optional size hints (in bytes) for the low level TCP send and
      * receive buffers. This is an advanced option for advanced users who want
@@ -26,6 +26,7 @@ import com.sina.http.ExecutionContext;
 import com.sina.http.HttpConnect;
 import com.sina.http.HttpMethodName;
 import com.sina.http.HttpRequest;
+import com.sina.metrics.ClientStatistics;
 
 
 /**
@@ -136,6 +137,16 @@ public abstract class SCSWebServiceClient {
         client.shutdown();
     }
 
+    /**
+     * Returns a snapshot of this client's connection pool and request
+     * counters. The snapshot is cheap to take and can be polled, or the live
+     * values can be published through JMX with
+     * {@link com.sina.metrics.StatisticsMBeans#registerClient(String, SCSWebServiceClient)}.
+     */
+    public ClientStatistics getClientStatistics() {
+        return client.getStatistics();
+    }
+
     /**
      * Converts a Request<T> object into an HttpRequest object. Copies all the
      * headers, parameters, etc. from the Request into the new HttpRequest.
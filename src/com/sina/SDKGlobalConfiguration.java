@@ -27,6 +27,17 @@ public class SDKGlobalConfiguration {
 	 * endpoint.
 	 */
 	public static final String EC2_METADATA_SERVICE_OVERRIDE_SYSTEM_PROPERTY = "com.amazonaws.sdk.ec2MetadataServiceEndpointOverride";
+	/**
+	 * System property naming the {@link com.sina.http.HttpTransportFactory}
+	 * class used by clients whose configuration doesn't set one. The class
+	 * must have a public no-argument constructor.
+	 * 
+	 * <pre>
+	 * Example:
+	 *  -Dcom.sina.sdk.httpTransportFactory=com.sina.http.JdkHttpTransportFactory
+	 * </pre>
+	 */
+	public static final String HTTP_TRANSPORT_FACTORY_SYSTEM_PROPERTY = "com.sina.sdk.httpTransportFactory";
 	/**
 	 * @deprecated by {@link #DEFAULT_METRICS_SYSTEM_PROPERTY}.
 	 * 
@@ -20,7 +20,9 @@ import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.security.DigestInputStream;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.Map;
@@ -89,14 +91,46 @@ public abstract class AbstractAWSSigner implements Signer {
 
     protected byte[] sign(byte[] data, byte[] key, SigningAlgorithm algorithm) throws SCSClientException {
         try {
-            Mac mac = Mac.getInstance(algorithm.toString());
-            mac.init(new SecretKeySpec(key, algorithm.toString()));
-            return mac.doFinal(data);
+            return keyedMacs.get()[algorithm.ordinal()].getMac(key, algorithm).doFinal(data);
         } catch (Exception e) {
             throw new SCSClientException("Unable to calculate a request signature: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Per-thread Mac for each signing algorithm. A Mac stays initialized with
+     * its key after doFinal, so while a thread keeps signing with the same
+     * key neither Mac.getInstance nor init are repeated.
+     */
+    private static final ThreadLocal<KeyedMac[]> keyedMacs = new ThreadLocal<KeyedMac[]>() {
+        @Override
+        protected KeyedMac[] initialValue() {
+            KeyedMac[] macs = new KeyedMac[SigningAlgorithm.values().length];
+            for (int i = 0; i < macs.length; i++) {
+                macs[i] = new KeyedMac();
+            }
+            return macs;
+        }
+    };
+
+    /** A Mac together with the key it was last initialized with */
+    private static final class KeyedMac {
+        private Mac mac;
+        private byte[] key;
+
+        Mac getMac(byte[] key, SigningAlgorithm algorithm) throws GeneralSecurityException {
+            if (mac == null) {
+                mac = Mac.getInstance(algorithm.toString());
+            }
+            if (!Arrays.equals(this.key, key)) {
+                this.key = null;
+                mac.init(new SecretKeySpec(key, algorithm.toString()));
+                this.key = key.clone();
+            }
+            return mac;
+        }
+    }
+
     /**
      * Hashes the string contents (assumed to be UTF-8) using the SHA-256
      * algorithm.
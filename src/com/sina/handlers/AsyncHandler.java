@@ -0,0 +1,36 @@
+package com.sina.handlers;
+
+import com.sina.SCSWebServiceRequest;
+
+/**
+ * Callback interface for notification on web service requests executed with
+ * the asynchronous clients. Callbacks run on the thread that executed the
+ * request, so further requests can be chained from them without blocking a
+ * caller thread.
+ *
+ * @param <REQUEST>
+ *            The type of the original request.
+ * @param <RESULT>
+ *            The type of the result of the request.
+ */
+public interface AsyncHandler<REQUEST extends SCSWebServiceRequest, RESULT> {
+
+    /**
+     * Invoked after an asynchronous request completes with an error, or is
+     * aborted.
+     *
+     * @param exception
+     *            The exception thrown by the request.
+     */
+    public void onError(Exception exception);
+
+    /**
+     * Invoked after an asynchronous request completes successfully.
+     *
+     * @param request
+     *            The original request.
+     * @param result
+     *            The result of the request.
+     */
+    public void onSuccess(REQUEST request, RESULT result);
+}
@@ -0,0 +1,52 @@
+package com.sina.http;
+
+import java.io.IOException;
+
+import com.sina.ClientConfiguration;
+import com.sina.http.httpclientandroidlib.HttpResponse;
+import com.sina.http.httpclientandroidlib.client.HttpClient;
+import com.sina.http.httpclientandroidlib.client.methods.HttpRequestBase;
+import com.sina.http.httpclientandroidlib.protocol.HttpContext;
+
+/**
+ * The default {@link HttpTransport}, which sends requests with the bundled
+ * blocking HttpClient over a pool of persistent connections.
+ */
+@SuppressWarnings("deprecation")
+public class ApacheHttpTransport implements HttpTransport {
+
+    private static final HttpClientFactory httpClientFactory = new HttpClientFactory();
+
+    /** Factory for the default transport */
+    public static final HttpTransportFactory FACTORY = new HttpTransportFactory() {
+        public HttpTransport createTransport(ClientConfiguration config) {
+            return new ApacheHttpTransport(config);
+        }
+    };
+
+    private final HttpClient httpClient;
+
+    /**
+     * Creates a transport whose HttpClient is configured with the given
+     * client configuration.
+     */
+    public ApacheHttpTransport(ClientConfiguration config) {
+        this.httpClient = httpClientFactory.createHttpClient(config);
+    }
+
+    public HttpResponse execute(HttpRequestBase request, HttpContext context) throws IOException {
+        return httpClient.execute(request, context);
+    }
+
+    /**
+     * Returns the connection manager of the underlying HttpClient.
+     */
+    public com.sina.http.httpclientandroidlib.conn.ClientConnectionManager getConnectionManager() {
+        return httpClient.getConnectionManager();
+    }
+
+    public void shutdown() {
+        IdleConnectionReaper.removeConnectionManager(httpClient.getConnectionManager());
+        httpClient.getConnectionManager().shutdown();
+    }
+}
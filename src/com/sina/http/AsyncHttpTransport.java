@@ -0,0 +1,59 @@
+package com.sina.http;
+
+import java.io.IOException;
+
+import com.sina.http.httpclientandroidlib.HttpResponse;
+import com.sina.http.httpclientandroidlib.client.methods.HttpRequestBase;
+import com.sina.http.httpclientandroidlib.protocol.HttpContext;
+
+/**
+ * An {@link HttpTransport} that can also send a request without blocking the
+ * calling thread. {@link HttpConnect#executeAsync} sends requests without a
+ * body through it, so that requests waiting for their response don't hold a
+ * thread each; {@link com.sina.scs.SCSAsyncClient} uses it for
+ * <code>getObject</code> and <code>getObjectMetadata</code>.
+ * <p>
+ * The bundled HttpClient is blocking, so {@link ApacheHttpTransport} doesn't
+ * implement this interface; the Java 11 <code>JdkHttpTransport</code> does.
+ */
+public interface AsyncHttpTransport extends HttpTransport {
+
+    /**
+     * Sends the request and returns straight away. The callback is invoked
+     * once, on a thread of the transport, when the response headers have
+     * arrived or the request has failed; the response entity, if any, is
+     * left streaming as with {@link #execute(HttpRequestBase, HttpContext)}.
+     * Aborting the request fails the callback.
+     *
+     * @param request
+     *            The request to send.
+     * @param context
+     *            The context of this attempt at the request.
+     * @param callback
+     *            The callback notified of the response.
+     */
+    public void executeAsync(HttpRequestBase request, HttpContext context, Callback callback);
+
+    /**
+     * Notified of the outcome of a request sent with
+     * {@link AsyncHttpTransport#executeAsync(HttpRequestBase, HttpContext, Callback)}.
+     */
+    public interface Callback {
+
+        /**
+         * Invoked with the response once its headers have arrived.
+         *
+         * @param response
+         *            The response to the request.
+         */
+        public void completed(HttpResponse response);
+
+        /**
+         * Invoked if the request couldn't be sent or no response arrived.
+         *
+         * @param exception
+         *            The cause of the failure.
+         */
+        public void failed(IOException exception);
+    }
+}
@@ -16,6 +16,8 @@ package com.sina.http;
 
 
 import com.sina.ClientConfiguration;
+import com.sina.http.conn.InstrumentedClientConnectionManager;
+import com.sina.http.conn.ZeroCopyClientConnectionManager;
 import com.sina.http.httpclientandroidlib.impl.conn.PoolingClientConnectionManager;
 import com.sina.http.httpclientandroidlib.params.HttpParams;
 
@@ -24,7 +26,9 @@ import com.sina.http.httpclientandroidlib.params.HttpParams;
 class ConnectionManagerFactory {
 
 	public static PoolingClientConnectionManager createPoolingClientConnManager( ClientConfiguration config, HttpParams httpClientParams ) {
-        PoolingClientConnectionManager connectionManager = new PoolingClientConnectionManager();
+        PoolingClientConnectionManager connectionManager = config.useZeroCopyUpload()
+                ? new ZeroCopyClientConnectionManager()
+                : new InstrumentedClientConnectionManager();
         connectionManager.setDefaultMaxPerRoute(config.getMaxConnections());
         connectionManager.setMaxTotal(config.getMaxConnections());
         if (config.useReaper()) {
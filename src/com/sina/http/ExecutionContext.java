@@ -17,6 +17,7 @@ package com.sina.http;
 import com.sina.auth.AWSCredentials;
 import com.sina.auth.Signer;
 import com.sina.http.httpclientandroidlib.annotation.NotThreadSafe;
+import com.sina.metrics.RequestMetrics;
 
 @NotThreadSafe
 public class ExecutionContext {
@@ -24,12 +25,18 @@ public class ExecutionContext {
 //    private List<RequestHandler2> requestHandler2s;
     private String contextUserAgent;
 
+    /** Metrics recorded for the request; records nothing unless metrics are enabled. */
+    private RequestMetrics requestMetrics = RequestMetrics.NONE;
+
     /** Optional signer to enable the runtime layer to handle signing requests (and resigning on retries). */
     private Signer signer;
 
     /** Optional credentials to enable the runtime layer to handle signing requests (and resigning on retries). */
     private AWSCredentials credentials;
 
+    /** Optional handle through which the request can be aborted while it runs. */
+    private RequestAbortHandle abortHandle;
+
 //    /** For testing purposes. */
 //    public ExecutionContext() {
 //        this(null, false);
@@ -58,6 +65,25 @@ public class ExecutionContext {
 //        return awsRequestMetrics;
 //    }
 
+    /**
+     * Returns the metrics recorded for the associated request.
+     *
+     * @return The metrics recorded for the associated request.
+     */
+    public RequestMetrics getRequestMetrics() {
+        return requestMetrics;
+    }
+
+    /**
+     * Sets the metrics recorded for the associated request.
+     *
+     * @param requestMetrics
+     *            The metrics to record for the associated request.
+     */
+    public void setRequestMetrics(RequestMetrics requestMetrics) {
+        this.requestMetrics = requestMetrics;
+    }
+
     /**
      * Returns the optional signer used to sign the associated request.
      *
@@ -100,4 +126,28 @@ public class ExecutionContext {
     public void setCredentials(AWSCredentials credentials) {
         this.credentials = credentials;
     }
+
+    /**
+     * Returns the optional handle through which the associated request can be
+     * aborted while it runs.
+     *
+     * @return The optional handle through which the associated request can be
+     *         aborted.
+     */
+    public RequestAbortHandle getAbortHandle() {
+        return abortHandle;
+    }
+
+    /**
+     * Sets the optional handle through which the associated request can be
+     * aborted while it runs. The runtime layer registers each HTTP request it
+     * sends with the handle, and stops retrying once the handle is aborted.
+     *
+     * @param abortHandle
+     *            The optional handle through which the associated request can
+     *            be aborted.
+     */
+    public void setAbortHandle(RequestAbortHandle abortHandle) {
+        this.abortHandle = abortHandle;
+    }
 }
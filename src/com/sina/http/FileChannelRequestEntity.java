@@ -0,0 +1,92 @@
+package com.sina.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+
+import com.sina.Request;
+import com.sina.http.conn.ChannelWritableEntity;
+import com.sina.http.httpclientandroidlib.entity.BasicHttpEntity;
+
+/**
+ * Request entity for content read from a {@link FileRegionInputStream}. When
+ * the connection exposes its socket channel the region is sent with
+ * {@link FileRegionInputStream#transferTo(WritableByteChannel)}, otherwise it
+ * is copied through the connection's output stream.
+ * <p>
+ * The entity is always repeatable: retries move the read position of the
+ * region back to its start instead of replaying buffered data.
+ */
+class FileChannelRequestEntity extends BasicHttpEntity implements ChannelWritableEntity {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    /** True if the request entity hasn't been written out yet */
+    private boolean firstAttempt = true;
+
+    /** The file region containing the content to write out */
+    private final FileRegionInputStream content;
+
+    /**
+     * Record the original exception if we do attempt a retry, so that if the
+     * retry fails, we can report the original exception.
+     */
+    private IOException originalException;
+
+    /**
+     * Creates a new FileChannelRequestEntity for the specified request, whose
+     * content must be a {@link FileRegionInputStream}.
+     *
+     * @param request
+     *            The details of the request being written out (content type
+     *            and content).
+     */
+    FileChannelRequestEntity(final Request<?> request) {
+        content = (FileRegionInputStream)request.getContent();
+
+        setChunked(false);
+        setContent(content);
+        setContentType(request.getHeaders().get("Content-Type"));
+        setContentLength(content.getLength());
+    }
+
+    @Override
+    public boolean isChunked() {
+        return false;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public void writeTo(OutputStream output) throws IOException {
+        try {
+            prepareAttempt();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int bytesRead;
+            while ((bytesRead = content.read(buffer)) != -1) {
+                output.write(buffer, 0, bytesRead);
+            }
+        } catch (IOException ioe) {
+            if (originalException == null) originalException = ioe;
+            throw originalException;
+        }
+    }
+
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        try {
+            prepareAttempt();
+            content.transferTo(channel);
+        } catch (IOException ioe) {
+            if (originalException == null) originalException = ioe;
+            throw originalException;
+        }
+    }
+
+    private void prepareAttempt() throws IOException {
+        if (!firstAttempt) content.reset();
+        firstAttempt = false;
+    }
+}
@@ -0,0 +1,191 @@
+package com.sina.http;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import com.sina.event.ProgressEvent;
+import com.sina.event.ProgressListenerCallbackExecutor;
+
+/**
+ * Input stream over a region of a file, read with positional reads on the
+ * file's channel. Marking and resetting only move the read position, so the
+ * stream can be repeated any number of times without buffering.
+ * <p>
+ * A request whose content is a FileRegionInputStream is sent with
+ * {@link #transferTo(WritableByteChannel)} when the connection allows it,
+ * handing the region to the operating system to copy straight from the file
+ * into the socket. Progress is reported to the listener set with
+ * {@link #setProgressListenerCallbackExecutor(ProgressListenerCallbackExecutor)}
+ * whichever way the data leaves the stream.
+ */
+public class FileRegionInputStream extends InputStream {
+
+    /** The threshold of bytes between progress notifications. */
+    private static final int NOTIFICATION_THRESHOLD = 8 * 1024;
+
+    /** The most bytes handed to a single FileChannel.transferTo call. */
+    private static final long TRANSFER_CHUNK_SIZE = 1024 * 1024;
+
+    private final File file;
+    private final long offset;
+    private final long length;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+
+    /** The read position, relative to the start of the region */
+    private long position = 0;
+    private long markedPosition = 0;
+
+    private ProgressListenerCallbackExecutor progressListenerCallbackExecutor;
+    private long unnotifiedByteCount;
+
+    /**
+     * Creates a stream over the given region of a file.
+     *
+     * @param file
+     *            The file to read.
+     * @param offset
+     *            The offset in the file at which the region starts.
+     * @param length
+     *            The length of the region.
+     *
+     * @throws FileNotFoundException
+     *             If the file doesn't exist.
+     */
+    public FileRegionInputStream(File file, long offset, long length) throws FileNotFoundException {
+        this.file = file;
+        this.offset = offset;
+        this.length = length;
+        this.randomAccessFile = new RandomAccessFile(file, "r");
+        this.channel = randomAccessFile.getChannel();
+    }
+
+    /**
+     * Returns the file this stream reads.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the length of the region this stream reads.
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Sets the listener callback executor notified about the number of bytes
+     * read or transferred.
+     */
+    public void setProgressListenerCallbackExecutor(ProgressListenerCallbackExecutor progressListenerCallbackExecutor) {
+        this.progressListenerCallbackExecutor = progressListenerCallbackExecutor;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        int bytesRead = read(b, 0, 1);
+        return (bytesRead == -1) ? -1 : (b[0] & 0xff);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        long remaining = length - position;
+        if (remaining <= 0) return -1;
+        if (len == 0) return 0;
+
+        int count = (int)Math.min(len, remaining);
+        int bytesRead = channel.read(ByteBuffer.wrap(b, off, count), offset + position);
+        if (bytesRead == -1) return -1;
+        position += bytesRead;
+        notify(bytesRead);
+        return bytesRead;
+    }
+
+    /**
+     * Transfers the rest of the region, from the current read position, to the
+     * given channel using {@link FileChannel#transferTo(long, long, WritableByteChannel)}.
+     *
+     * @param target
+     *            The channel to write the region to.
+     *
+     * @return The number of bytes transferred.
+     */
+    public long transferTo(WritableByteChannel target) throws IOException {
+        long transferred = 0;
+        while (position < length) {
+            long count = Math.min(length - position, TRANSFER_CHUNK_SIZE);
+            long bytesTransferred = channel.transferTo(offset + position, count, target);
+            if (bytesTransferred <= 0) {
+                throw new IOException("Unable to transfer " + file + " from offset " + (offset + position));
+            }
+            position += bytesTransferred;
+            transferred += bytesTransferred;
+            notify(bytesTransferred);
+        }
+        return transferred;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) return 0;
+        long skipped = Math.min(n, length - position);
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int)Math.min(Integer.MAX_VALUE, length - position);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public void mark(int readlimit) {
+        markedPosition = position;
+    }
+
+    /**
+     * Moves the read position back to the last mark, or to the start of the
+     * region if the stream was never marked.
+     */
+    @Override
+    public void reset() throws IOException {
+        position = markedPosition;
+        if (progressListenerCallbackExecutor != null) {
+            ProgressEvent event = new ProgressEvent(unnotifiedByteCount);
+            event.setEventCode(ProgressEvent.RESET_EVENT_CODE);
+            progressListenerCallbackExecutor.progressChanged(event);
+        }
+        unnotifiedByteCount = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (progressListenerCallbackExecutor != null && unnotifiedByteCount > 0) {
+            progressListenerCallbackExecutor.progressChanged(new ProgressEvent(unnotifiedByteCount));
+        }
+        unnotifiedByteCount = 0;
+        randomAccessFile.close();
+    }
+
+    private void notify(long bytes) {
+        if (progressListenerCallbackExecutor == null) return;
+        unnotifiedByteCount += bytes;
+        if (unnotifiedByteCount >= NOTIFICATION_THRESHOLD) {
+            progressListenerCallbackExecutor.progressChanged(new ProgressEvent(unnotifiedByteCount));
+            unnotifiedByteCount = 0;
+        }
+    }
+}
@@ -17,7 +17,9 @@ package com.sina.http;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
 import java.net.UnknownHostException;
+import java.nio.channels.SocketChannel;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
@@ -93,7 +95,9 @@ class HttpClientFactory {
 //        httpClient.setRedirectStrategy(new LocationHeaderNotRequiredRedirectStrategy());
 
         try {
-            Scheme http = new Scheme("http", PlainSocketFactory.getSocketFactory(), 80);
+            Scheme http = config.useZeroCopyUpload()
+                    ? new Scheme("http", 80, new ChannelSocketFactory())
+                    : new Scheme("http", PlainSocketFactory.getSocketFactory(), 80);
             SSLSocketFactory sf = new SSLSocketFactory(SSLContext.getDefault(),
                     SSLSocketFactory.STRICT_HOSTNAME_VERIFIER);
             
@@ -161,6 +165,46 @@ class HttpClientFactory {
         }
     }
 
+    /**
+     * Plain socket factory whose sockets are created from a
+     * {@link SocketChannel}, so that request bodies can be written to the
+     * channel with FileChannel.transferTo. Connects the same way as
+     * {@link PlainSocketFactory}.
+     */
+    @SuppressWarnings("deprecation")
+    private static class ChannelSocketFactory implements SchemeSocketFactory {
+
+        public Socket createSocket(HttpParams params) throws IOException {
+            return SocketChannel.open().socket();
+        }
+
+        public Socket connectSocket(Socket sock,
+                InetSocketAddress remoteAddress,
+                InetSocketAddress localAddress, HttpParams params)
+                throws IOException, UnknownHostException,
+                ConnectTimeoutException {
+            if (sock == null) sock = createSocket(params);
+            if (localAddress != null) {
+                sock.setReuseAddress(HttpConnectionParams.getSoReuseaddr(params));
+                sock.bind(localAddress);
+            }
+            int connTimeout = HttpConnectionParams.getConnectionTimeout(params);
+            int soTimeout = HttpConnectionParams.getSoTimeout(params);
+
+            try {
+                sock.setSoTimeout(soTimeout);
+                sock.connect(remoteAddress, connTimeout);
+            } catch (SocketTimeoutException e) {
+                throw new ConnectTimeoutException("Connect to " + remoteAddress + " timed out");
+            }
+            return sock;
+        }
+
+        public boolean isSecure(Socket sock) throws IllegalArgumentException {
+            return false;
+        }
+    }
+
     /**
      * Simple implementation of SchemeSocketFactory (and
      * LayeredSchemeSocketFactory) that bypasses SSL certificate checks. This
@@ -3,11 +3,20 @@ package com.sina.http;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
 import java.net.URI;
 import java.text.ParseException;
 import java.util.Date;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -27,13 +36,21 @@ import com.sina.http.httpclientandroidlib.Header;
 import com.sina.http.httpclientandroidlib.HttpEntity;
 import com.sina.http.httpclientandroidlib.HttpEntityEnclosingRequest;
 import com.sina.http.httpclientandroidlib.HttpStatus;
-import com.sina.http.httpclientandroidlib.client.HttpClient;
 import com.sina.http.httpclientandroidlib.client.methods.HttpEntityEnclosingRequestBase;
 import com.sina.http.httpclientandroidlib.client.methods.HttpRequestBase;
+import com.sina.http.httpclientandroidlib.conn.routing.HttpRoute;
+import com.sina.http.httpclientandroidlib.pool.PoolStats;
 import com.sina.http.httpclientandroidlib.protocol.BasicHttpContext;
 import com.sina.http.httpclientandroidlib.protocol.HttpContext;
+import com.sina.http.conn.InstrumentedClientConnectionManager;
 import com.sina.http.retry.RetryUtils;
+import com.sina.metrics.ClientStatistics;
+import com.sina.metrics.ClientStatistics.RouteStatistics;
+import com.sina.metrics.RequestMetrics;
+import com.sina.metrics.RequestMetrics.Field;
+import com.sina.metrics.RequestMetricsFullSupport;
 import com.sina.retry.RetryPolicy;
+import com.sina.util.CountingInputStream;
 import com.sina.util.DateUtils;
 
 /**
@@ -45,7 +62,7 @@ public class HttpConnect {
 	
 	private static final String HEADER_USER_AGENT = "User-Agent";
 
-	private HttpClient httpClient;
+	private HttpTransport transport;
 	
 	ClientConfiguration config;
 	
@@ -58,13 +75,46 @@ public class HttpConnect {
 	HttpRequestBase httpRequest;
 	
 	private static final HttpRequestFactory httpRequestFactory = new HttpRequestFactory();
-    private static final HttpClientFactory httpClientFactory = new HttpClientFactory();
+
+    /** Delays the retries of requests executed with {@link #executeAsync} */
+    private static final ScheduledExecutorService retryTimer = Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "scs-async-retry-timer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    /** Counters reported by {@link #getStatistics()} */
+    private final AtomicInteger inFlightRequests = new AtomicInteger();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong retryCount = new AtomicLong();
 	
 	public HttpConnect(ClientConfiguration config) {
 		this.config = config;
-		this.httpClient = httpClientFactory.createHttpClient(config);
+		this.transport = getTransportFactory(config).createTransport(config);
 	}
 
+    /**
+     * Returns the transport factory set in the configuration, or else the one
+     * named by the {@link SDKGlobalConfiguration#HTTP_TRANSPORT_FACTORY_SYSTEM_PROPERTY}
+     * system property, or else the factory for the bundled HttpClient.
+     */
+    private static HttpTransportFactory getTransportFactory(ClientConfiguration config) {
+        if (config.getHttpTransportFactory() != null) return config.getHttpTransportFactory();
+
+        String factoryClassName = System.getProperty(SDKGlobalConfiguration.HTTP_TRANSPORT_FACTORY_SYSTEM_PROPERTY);
+        if (factoryClassName == null) return ApacheHttpTransport.FACTORY;
+        try {
+            return (HttpTransportFactory)Class.forName(factoryClassName).getDeclaredConstructor().newInstance();
+        } catch (InvocationTargetException e) {
+            throw new SCSClientException("Unable to create HTTP transport factory " + factoryClassName, e.getCause());
+        } catch (Exception e) {
+            throw new SCSClientException("Unable to create HTTP transport factory " + factoryClassName, e);
+        }
+    }
+
 	 /**
      * Executes the request and returns the result.
      *
@@ -87,16 +137,283 @@ public class HttpConnect {
         if (executionContext == null)
             throw new SCSClientException("Internal SDK Error: No execution context parameter specified.");
 //        List<RequestHandler2> requestHandler2s = requestHandler2s(request, executionContext);
-//        final AWSRequestMetrics awsRequestMetrics = executionContext.getAwsRequestMetrics();
+        final RequestMetrics requestMetrics = executionContext.getRequestMetrics();
         Response<T> response = null;
+        requestMetrics.startEvent(Field.ClientExecuteTime);
+        inFlightRequests.incrementAndGet();
         try {
             response = executeHelper(request, responseHandler, errorResponseHandler, executionContext);
-//            TimingInfo timingInfo = awsRequestMetrics.getTimingInfo().endTiming();
 //            afterResponse(request, requestHandler2s, response, timingInfo);
             return response;
         } catch (SCSClientException e) {
 //            afterError(request, response, requestHandler2s, e);
+            requestMetrics.setException(e);
             throw e;
+        } finally {
+            inFlightRequests.decrementAndGet();
+            requestMetrics.endEvent(Field.ClientExecuteTime);
+            if (requestMetrics.isEnabled() && config.getRequestMetricCollector() != null) {
+                config.getRequestMetricCollector().collectMetrics(request, (RequestMetricsFullSupport)requestMetrics);
+            }
+        }
+    }
+
+    /**
+     * Returns true if the transport can send requests without blocking, in
+     * which case {@link #executeAsync} can be used.
+     */
+    public boolean isAsyncSupported() {
+        return transport instanceof AsyncHttpTransport;
+    }
+
+    /**
+     * Executes a request without content without blocking the calling
+     * thread, retrying it like {@link #execute} does, and passes the result
+     * or the exception it failed with to the callback. The response handlers
+     * run on a thread of the transport, so they shouldn't block for long.
+     *
+     * @param request
+     *            The request to send to the remote server
+     * @param responseHandler
+     *            A response handler to accept a successful response from the
+     *            remote server
+     * @param errorResponseHandler
+     *            A response handler to accept an unsuccessful response from the
+     *            remote server
+     * @param executionContext
+     *            Additional information about the context of this web service
+     *            call
+     * @param callback
+     *            The callback notified of the outcome of the request
+     *
+     * @throws SCSClientException
+     *             If the transport can't send requests without blocking, or
+     *             if the request has content.
+     */
+    public <T> void executeAsync(Request<?> request,
+            HttpResponseHandler<SCSWebServiceResponse<T>> responseHandler,
+            HttpResponseHandler<SCSServiceException> errorResponseHandler,
+            ExecutionContext executionContext,
+            ResponseCallback<Response<T>> callback) throws SCSClientException {
+        if (executionContext == null)
+            throw new SCSClientException("Internal SDK Error: No execution context parameter specified.");
+        if (!isAsyncSupported())
+            throw new SCSClientException("The HTTP transport can't send requests asynchronously");
+        if (request.getContent() != null)
+            throw new SCSClientException("Only requests without content can be sent asynchronously");
+        setUserAgent(request);
+        new AsyncExecution<T>(request, responseHandler, errorResponseHandler, executionContext, callback).start();
+    }
+
+    /**
+     * The state of a request executed with {@link HttpConnect#executeAsync}:
+     * the same steps as {@link HttpConnect#executeHelper}, with each attempt
+     * sent through the {@link AsyncHttpTransport} and the pause before a
+     * retry scheduled on the retry timer instead of slept.
+     */
+    private class AsyncExecution<T> implements AsyncHttpTransport.Callback {
+        private final Request<?> request;
+        private final HttpResponseHandler<SCSWebServiceResponse<T>> responseHandler;
+        private final HttpResponseHandler<SCSServiceException> errorResponseHandler;
+        private final ExecutionContext executionContext;
+        private final ResponseCallback<Response<T>> callback;
+        private final RequestMetrics requestMetrics;
+        private final Map<String, String> originalParameters;
+        private final Map<String, String> originalHeaders;
+
+        private int requestCount;
+        private URI redirectedURI;
+        private SCSClientException retriedException;
+        private HttpRequestBase httpRequest;
+
+        AsyncExecution(Request<?> request,
+                HttpResponseHandler<SCSWebServiceResponse<T>> responseHandler,
+                HttpResponseHandler<SCSServiceException> errorResponseHandler,
+                ExecutionContext executionContext,
+                ResponseCallback<Response<T>> callback) {
+            this.request = request;
+            this.responseHandler = responseHandler;
+            this.errorResponseHandler = errorResponseHandler;
+            this.executionContext = executionContext;
+            this.callback = callback;
+            this.requestMetrics = executionContext.getRequestMetrics();
+            this.originalParameters = new HashMap<String, String>(request.getParameters());
+            this.originalHeaders = new HashMap<String, String>(request.getHeaders());
+        }
+
+        void start() {
+            requestMetrics.startEvent(Field.ClientExecuteTime);
+            inFlightRequests.incrementAndGet();
+            attempt();
+        }
+
+        /**
+         * Signs and sends the next attempt at the request.
+         */
+        private void attempt() {
+            ++requestCount;
+            requestMetrics.incrementRequestCount();
+            HttpConnect.this.requestCount.incrementAndGet();
+            if (requestCount > 1) { // retry
+                retryCount.incrementAndGet();
+                request.setParameters(originalParameters);
+                request.setHeaders(originalHeaders);
+            }
+
+            try {
+                if (executionContext.getAbortHandle() != null && executionContext.getAbortHandle().isAborted()) {
+                    finish(null, new SCSClientException("The request was aborted"));
+                    return;
+                }
+
+                if (executionContext.getSigner() != null && executionContext.getCredentials() != null) {
+                    requestMetrics.startEvent(Field.RequestSigningTime);
+                    try {
+                        executionContext.getSigner().sign(request, executionContext.getCredentials());
+                    } finally {
+                        requestMetrics.endEvent(Field.RequestSigningTime);
+                    }
+                }
+
+                if (log.isDebugEnabled()) {
+                    log.debug("Sending Request: " + request.toString());
+                }
+
+                httpRequest = httpRequestFactory.createHttpRequest(request, config, null, executionContext);
+                if (executionContext.getAbortHandle() != null) {
+                    executionContext.getAbortHandle().setHttpRequest(httpRequest);
+                }
+                if (redirectedURI != null) {
+                    httpRequest.setURI(redirectedURI);
+                }
+            } catch (RuntimeException e) {
+                finish(null, e);
+                return;
+            }
+
+            retriedException = null;
+            requestMetrics.startEvent(Field.HttpRequestTime);
+            ((AsyncHttpTransport)transport).executeAsync(httpRequest, new BasicHttpContext(), this);
+        }
+
+        public void completed(com.sina.http.httpclientandroidlib.HttpResponse apacheResponse) {
+            requestMetrics.endEvent(Field.HttpRequestTime);
+            boolean leaveHttpConnectionOpen = false;
+            Response<T> response = null;
+            RuntimeException exception = null;
+            try {
+                if (isRequestSuccessful(apacheResponse)) {
+                    requestMetrics.setStatusCode(apacheResponse.getStatusLine().getStatusCode());
+                    leaveHttpConnectionOpen = responseHandler.needsConnectionLeftOpen();
+                    HttpResponse httpResponse = createResponse(httpRequest, request, apacheResponse);
+                    T result = handleResponse(request, responseHandler, httpRequest, httpResponse,
+                            apacheResponse, executionContext);
+                    response = new Response<T>(result, httpResponse);
+                } else if (isTemporaryRedirect(apacheResponse)) {
+                    String redirectedLocation = apacheResponse.getHeaders("location")[0].getValue();
+                    log.debug("Redirecting to: " + redirectedLocation);
+                    redirectedURI = URI.create(redirectedLocation);
+                    requestMetrics.setStatusCode(apacheResponse.getStatusLine().getStatusCode());
+                } else {
+                    leaveHttpConnectionOpen = errorResponseHandler.needsConnectionLeftOpen();
+                    SCSServiceException ase = handleErrorResponse(request, errorResponseHandler,
+                            httpRequest, apacheResponse);
+                    requestMetrics.setStatusCode(ase.getStatusCode());
+                    if (shouldRetry(request.getOriginalRequest(), httpRequest, ase, requestCount,
+                            config.getRetryPolicy())) {
+                        retriedException = ase;
+                        if (RetryUtils.isClockSkewError(ase)) {
+                            SDKGlobalConfiguration.setGlobalTimeOffset(parseClockSkewOffset(apacheResponse, ase));
+                        }
+                    } else {
+                        exception = ase;
+                    }
+                }
+            } catch (IOException ioe) {
+                exception = failure(ioe);
+            } catch (RuntimeException e) {
+                exception = e;
+            } finally {
+                if (!leaveHttpConnectionOpen) {
+                    closeResponseContent(apacheResponse);
+                }
+            }
+
+            if (response != null || exception != null) {
+                finish(response, exception);
+            } else {
+                scheduleRetry();
+            }
+        }
+
+        public void failed(IOException ioe) {
+            requestMetrics.endEvent(Field.HttpRequestTime);
+            RuntimeException exception = failure(ioe);
+            if (exception != null) {
+                finish(null, exception);
+            } else {
+                scheduleRetry();
+            }
+        }
+
+        /**
+         * Returns the exception to fail the request with after an I/O error,
+         * or null if the request should be retried.
+         */
+        private RuntimeException failure(IOException ioe) {
+            if (log.isInfoEnabled()) {
+                log.info("Unable to execute HTTP request: " + ioe.getMessage(), ioe);
+            }
+            if (executionContext.getAbortHandle() != null && executionContext.getAbortHandle().isAborted()) {
+                return new SCSClientException("The request was aborted", ioe);
+            }
+
+            SCSClientException ace = new SCSClientException("Unable to execute HTTP request: " + ioe.getMessage(), ioe);
+            try {
+                if (!shouldRetry(request.getOriginalRequest(), httpRequest, ace, requestCount,
+                        config.getRetryPolicy())) {
+                    return ace;
+                }
+            } catch (RuntimeException e) {
+                return e;
+            }
+            retriedException = ace;
+            return null;
+        }
+
+        private void scheduleRetry() {
+            long delay;
+            try {
+                delay = delayBeforeNextRetry(request.getOriginalRequest(), retriedException,
+                        requestCount + 1, config.getRetryPolicy());
+            } catch (RuntimeException e) {
+                finish(null, e);
+                return;
+            }
+            requestMetrics.startEvent(Field.RetryPauseTime);
+            retryTimer.schedule(new Runnable() {
+                public void run() {
+                    requestMetrics.endEvent(Field.RetryPauseTime);
+                    attempt();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+
+        private void finish(Response<T> response, RuntimeException exception) {
+            if (exception instanceof SCSClientException) {
+                requestMetrics.setException((SCSClientException)exception);
+            }
+            inFlightRequests.decrementAndGet();
+            requestMetrics.endEvent(Field.ClientExecuteTime);
+            if (requestMetrics.isEnabled() && config.getRequestMetricCollector() != null) {
+                config.getRequestMetricCollector().collectMetrics(request, (RequestMetricsFullSupport)requestMetrics);
+            }
+
+            if (exception != null) {
+                callback.onError(exception);
+            } else {
+                callback.onResponse(response);
+            }
         }
     }
     
@@ -120,7 +437,7 @@ public class HttpConnect {
          * any of the content until after a response is returned to the caller.
          */
         boolean leaveHttpConnectionOpen = false;
-//        AWSRequestMetrics awsRequestMetrics = executionContext.getAwsRequestMetrics();
+        RequestMetrics requestMetrics = executionContext.getRequestMetrics();
         /* add the service endpoint to the logs. You can infer service name from service endpoint */
 //        awsRequestMetrics.addProperty(Field.ServiceName, request.getServiceName());
 //        awsRequestMetrics.addProperty(Field.ServiceEndpoint, request.getEndpoint());
@@ -140,8 +457,10 @@ public class HttpConnect {
 
         while (true) {
             ++requestCount;
-//            awsRequestMetrics.setCounter(Field.RequestCount, requestCount);
+            requestMetrics.incrementRequestCount();
+            this.requestCount.incrementAndGet();
             if (requestCount > 1) { // retry
+                retryCount.incrementAndGet();
                 request.setParameters(originalParameters);
                 request.setHeaders(originalHeaders);
             }
@@ -152,12 +471,12 @@ public class HttpConnect {
             try {
                 // Sign the request if a signer was provided
                 if (executionContext.getSigner() != null && executionContext.getCredentials() != null) {
-//                    awsRequestMetrics.startEvent(Field.RequestSigningTime);
+                    requestMetrics.startEvent(Field.RequestSigningTime);
                     try {
 						executionContext.getSigner().sign(request,
 								executionContext.getCredentials());
                     } finally {
-//                        awsRequestMetrics.endEvent(Field.RequestSigningTime);
+                        requestMetrics.endEvent(Field.RequestSigningTime);
                     }
                 }
 
@@ -166,6 +485,9 @@ public class HttpConnect {
                  }
 
                 httpRequest = httpRequestFactory.createHttpRequest(request, config, entity, executionContext);
+                if (executionContext.getAbortHandle() != null) {
+                    executionContext.getAbortHandle().setHttpRequest(httpRequest);
+                }
 
                 if (httpRequest instanceof HttpEntityEnclosingRequest) {
                     entity = ((HttpEntityEnclosingRequest)httpRequest).getEntity();
@@ -176,14 +498,14 @@ public class HttpConnect {
                 }
 
                 if (requestCount > 1) {   // retry
-//                    awsRequestMetrics.startEvent(Field.RetryPauseTime);
+                    requestMetrics.startEvent(Field.RetryPauseTime);
                     try {
                         pauseBeforeNextRetry(request.getOriginalRequest(),
                                              retriedException,
                                              requestCount,
                                              config.getRetryPolicy());
                     } finally {
-//                        awsRequestMetrics.endEvent(Field.RetryPauseTime);
+                        requestMetrics.endEvent(Field.RetryPauseTime);
                     }
                 }
 
@@ -206,15 +528,15 @@ public class HttpConnect {
 //                        AWSRequestMetrics.class.getSimpleName(),
 //                        awsRequestMetrics);
                 retriedException = null;
-//                awsRequestMetrics.startEvent(Field.HttpRequestTime);
+                requestMetrics.startEvent(Field.HttpRequestTime);
                 try {
-                    apacheResponse = httpClient.execute(httpRequest, httpContext);
+                    apacheResponse = transport.execute(httpRequest, httpContext);
                 } finally {
-//                    awsRequestMetrics.endEvent(Field.HttpRequestTime);
+                    requestMetrics.endEvent(Field.HttpRequestTime);
                 }
 
                 if (isRequestSuccessful(apacheResponse)) {
-//                    awsRequestMetrics.addProperty(Field.StatusCode, apacheResponse.getStatusLine().getStatusCode());
+                    requestMetrics.setStatusCode(apacheResponse.getStatusLine().getStatusCode());
                     /*
                      * If we get back any 2xx status code, then we know we should
                      * treat the service call as successful.
@@ -239,7 +561,7 @@ public class HttpConnect {
                     log.debug("Redirecting to: " + redirectedLocation);
                     redirectedURI = URI.create(redirectedLocation);
                     httpRequest.setURI(redirectedURI);
-//                    awsRequestMetrics.addProperty(Field.StatusCode, apacheResponse.getStatusLine().getStatusCode());
+                    requestMetrics.setStatusCode(apacheResponse.getStatusLine().getStatusCode());
 //                    awsRequestMetrics.addProperty(Field.RedirectLocation, redirectedLocation);
 //                    awsRequestMetrics.addProperty(Field.AWSRequestID, null);
 
@@ -248,7 +570,7 @@ public class HttpConnect {
                     SCSServiceException ase = handleErrorResponse(request, errorResponseHandler, httpRequest, apacheResponse);
 //                    awsRequestMetrics.addProperty(Field.AWSRequestID, ase.getRequestId());
 //                    awsRequestMetrics.addProperty(Field.AWSErrorCode, ase.getErrorCode());
-//                    awsRequestMetrics.addProperty(Field.StatusCode, ase.getStatusCode());
+                    requestMetrics.setStatusCode(ase.getStatusCode());
                     
                 	if (!shouldRetry(request.getOriginalRequest(),
 				            httpRequest,
@@ -278,6 +600,10 @@ public class HttpConnect {
 //                awsRequestMetrics.addProperty(Field.Exception, ioe);
 //                awsRequestMetrics.addProperty(Field.AWSRequestID, null);
 
+                if (executionContext.getAbortHandle() != null && executionContext.getAbortHandle().isAborted()) {
+                    throw new SCSClientException("The request was aborted", ioe);
+                }
+
                 SCSClientException ace = new SCSClientException("Unable to execute HTTP request: " + ioe.getMessage(), ioe);
                 if (!shouldRetry(request.getOriginalRequest(),
 				            httpRequest,
@@ -305,18 +631,22 @@ public class HttpConnect {
                  * up resources.
                  */
                 if (!leaveHttpConnectionOpen) {
-                    try {
-                        if (apacheResponse != null && apacheResponse.getEntity() != null
-                                && apacheResponse.getEntity().getContent() != null) {
-                            apacheResponse.getEntity().getContent().close();
-                        }
-                    } catch (IOException e) {
-                        log.warn("Cannot close the response content.", e);
-                    }
+                    closeResponseContent(apacheResponse);
                 }
             }
         } /* end while (true) */
     }
+
+    private static void closeResponseContent(com.sina.http.httpclientandroidlib.HttpResponse apacheResponse) {
+        try {
+            if (apacheResponse != null && apacheResponse.getEntity() != null
+                    && apacheResponse.getEntity().getContent() != null) {
+                apacheResponse.getEntity().getContent().close();
+            }
+        } catch (IOException e) {
+            log.warn("Cannot close the response content.", e);
+        }
+    }
     
     /**
      * Sets a User-Agent for the specified request, taking into account
@@ -371,6 +701,23 @@ public class HttpConnect {
                                     SCSClientException previousException,
                                     int requestCount,
                                     RetryPolicy retryPolicy) {
+        long delay = delayBeforeNextRetry(originalRequest, previousException, requestCount, retryPolicy);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SCSClientException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns how long to wait before the next attempt at a failed request,
+     * in milliseconds; the parameters are those of {@link #pauseBeforeNextRetry}.
+     */
+    private long delayBeforeNextRetry(SCSWebServiceRequest originalRequest,
+                                    SCSClientException previousException,
+                                    int requestCount,
+                                    RetryPolicy retryPolicy) {
 
         final int retries = requestCount // including next attempt
                             - 1          // number of attempted requests
@@ -383,13 +730,7 @@ public class HttpConnect {
             log.debug("Retriable error detected, " +
                     "will retry in " + delay + "ms, attempt number: " + retries);
         }
-
-        try {
-            Thread.sleep(delay);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new SCSClientException(e.getMessage(), e);
-        }
+        return delay;
     }
 
     private boolean isRequestSuccessful(com.sina.http.httpclientandroidlib.HttpResponse response) {
@@ -467,23 +808,24 @@ public class HttpConnect {
         }
 
         try {
-//            com.sina.util.CountingInputStream countingInputStream = null;
-//            if (System.getProperty(PROFILING_SYSTEM_PROPERTY) != null) {
-//                countingInputStream = new CountingInputStream(httpResponse.getContent());
-//                httpResponse.setContent(countingInputStream);
-//            }
-//
-//            AWSRequestMetrics awsRequestMetrics = executionContext.getAwsRequestMetrics();
+            RequestMetrics requestMetrics = executionContext.getRequestMetrics();
+            CountingInputStream countingInputStream = null;
+            if (requestMetrics.isEnabled() && httpResponse.getContent() != null
+                    && !responseHandler.needsConnectionLeftOpen()) {
+                countingInputStream = new CountingInputStream(httpResponse.getContent());
+                httpResponse.setContent(countingInputStream);
+            }
+
             SCSWebServiceResponse<? extends T> awsResponse;
-//            awsRequestMetrics.startEvent(Field.ResponseProcessingTime);
+            requestMetrics.startEvent(Field.ResponseProcessingTime);
             try {
                 awsResponse = responseHandler.handle(httpResponse);
             } finally {
-//                awsRequestMetrics.endEvent(Field.ResponseProcessingTime);
+                requestMetrics.endEvent(Field.ResponseProcessingTime);
+            }
+            if (countingInputStream != null) {
+                requestMetrics.addBytesProcessed(countingInputStream.getByteCount());
             }
-//            if (countingInputStream != null) {
-//                awsRequestMetrics.setCounter(Field.BytesProcessed, countingInputStream.getByteCount());
-//            }
 
             if (awsResponse == null)
                 throw new RuntimeException("Unable to unmarshall response metadata");
@@ -695,8 +1037,43 @@ public class HttpConnect {
      * Once a client has been shutdown, it cannot be used to make more requests.
      */
     public void shutdown() {
-        IdleConnectionReaper.removeConnectionManager(httpClient.getConnectionManager());
-        httpClient.getConnectionManager().shutdown();
+        transport.shutdown();
+    }
+
+    /**
+     * Returns a snapshot of the requests executed by this client and, when
+     * the transport pools connections with the bundled HttpClient, of its
+     * connection pool.
+     */
+    @SuppressWarnings("deprecation")
+    public ClientStatistics getStatistics() {
+        RouteStatistics totals = null;
+        List<RouteStatistics> routes = new ArrayList<RouteStatistics>();
+        long bytesSent = 0;
+        long bytesReceived = 0;
+
+        com.sina.http.httpclientandroidlib.conn.ClientConnectionManager connectionManager =
+                transport instanceof ApacheHttpTransport
+                ? ((ApacheHttpTransport)transport).getConnectionManager() : null;
+        if (connectionManager instanceof com.sina.http.httpclientandroidlib.impl.conn.PoolingClientConnectionManager) {
+            com.sina.http.httpclientandroidlib.impl.conn.PoolingClientConnectionManager pool =
+                    (com.sina.http.httpclientandroidlib.impl.conn.PoolingClientConnectionManager)connectionManager;
+            totals = toRouteStatistics(null, pool.getTotalStats());
+            if (pool instanceof InstrumentedClientConnectionManager) {
+                InstrumentedClientConnectionManager instrumented = (InstrumentedClientConnectionManager)pool;
+                for (HttpRoute route : instrumented.getRoutes()) {
+                    routes.add(toRouteStatistics(route.toString(), pool.getStats(route)));
+                }
+                bytesSent = instrumented.getBytesSent();
+                bytesReceived = instrumented.getBytesReceived();
+            }
+        }
+        return new ClientStatistics(inFlightRequests.get(), requestCount.get(), retryCount.get(),
+                bytesSent, bytesReceived, totals, routes);
+    }
+
+    private static RouteStatistics toRouteStatistics(String route, PoolStats stats) {
+        return new RouteStatistics(route, stats.getLeased(), stats.getAvailable(), stats.getPending(), stats.getMax());
     }
     
     /**
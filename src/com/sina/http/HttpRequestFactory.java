@@ -110,6 +110,8 @@ class HttpRequestFactory {
 
             if (previousEntity != null) {
                 putMethod.setEntity(previousEntity);
+            } else if (request.getContent() instanceof FileRegionInputStream) {
+                putMethod.setEntity(new FileChannelRequestEntity(request));
             } else if (request.getContent() != null) {
                 HttpEntity entity = new RepeatableInputStreamRequestEntity(request);
                 if (request.getHeaders().get("Content-Length") == null) {
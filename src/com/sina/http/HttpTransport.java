@@ -0,0 +1,50 @@
+package com.sina.http;
+
+import java.io.IOException;
+
+import com.sina.http.httpclientandroidlib.HttpResponse;
+import com.sina.http.httpclientandroidlib.client.methods.HttpRequestBase;
+import com.sina.http.httpclientandroidlib.protocol.HttpContext;
+
+/**
+ * Transport SPI: the engine {@link HttpConnect} sends its HTTP requests
+ * through. Signing, retries, redirects and response handling all stay in
+ * HttpConnect; a transport only has to deliver one fully built request and
+ * return the response with its body left streaming.
+ * <p>
+ * {@link #execute(HttpRequestBase, HttpContext)} is blocking: the calling
+ * thread waits for the response headers, then reads the body itself. A
+ * transport that can also send requests without blocking implements
+ * {@link AsyncHttpTransport}, which {@link com.sina.scs.SCSAsyncClient} uses
+ * so that its requests in flight don't each hold a thread.
+ * <p>
+ * The default transport is {@link ApacheHttpTransport}. Other engines can be
+ * plugged in per client with
+ * {@link com.sina.ClientConfiguration#setHttpTransportFactory(HttpTransportFactory)},
+ * or for every client with the
+ * {@link com.sina.SDKGlobalConfiguration#HTTP_TRANSPORT_FACTORY_SYSTEM_PROPERTY}
+ * system property, so that transports built against newer platforms can ship
+ * separately. Implementations must be safe for use by multiple threads, and
+ * must honour {@link HttpRequestBase#abort()} on requests in flight.
+ */
+public interface HttpTransport {
+
+    /**
+     * Sends the request and returns its response. The response entity, if
+     * any, must stay readable until its content is consumed or closed.
+     *
+     * @param request
+     *            The request to send.
+     * @param context
+     *            The context of this attempt at the request.
+     *
+     * @return The response to the request.
+     */
+    public HttpResponse execute(HttpRequestBase request, HttpContext context) throws IOException;
+
+    /**
+     * Releases any connections and threads held by this transport. The
+     * transport can't be used after it has been shut down.
+     */
+    public void shutdown();
+}
@@ -0,0 +1,22 @@
+package com.sina.http;
+
+import com.sina.ClientConfiguration;
+
+/**
+ * Creates the {@link HttpTransport} of each client.
+ *
+ * @see com.sina.ClientConfiguration#setHttpTransportFactory(HttpTransportFactory)
+ */
+public interface HttpTransportFactory {
+
+    /**
+     * Creates a transport configured with the given client configuration
+     * (connection limits, timeouts, proxy settings, etc).
+     *
+     * @param config
+     *            The configuration of the client the transport is for.
+     *
+     * @return A new transport.
+     */
+    public HttpTransport createTransport(ClientConfiguration config);
+}
@@ -0,0 +1,42 @@
+package com.sina.http;
+
+import com.sina.http.httpclientandroidlib.client.methods.HttpRequestBase;
+
+/**
+ * Handle through which a request running on another thread can be aborted.
+ * The runtime layer registers each HTTP request it sends for the associated
+ * service request; aborting the handle aborts the request in flight, or the
+ * next one to be registered, and stops any further retries.
+ * <p>
+ * This class is intended only for internal use by the SDK.
+ */
+public final class RequestAbortHandle {
+
+    private HttpRequestBase httpRequest;
+    private boolean aborted;
+
+    /**
+     * Registers the HTTP request about to be sent, aborting it straight away
+     * if this handle has already been aborted.
+     */
+    public synchronized void setHttpRequest(HttpRequestBase httpRequest) {
+        this.httpRequest = httpRequest;
+        if (aborted && httpRequest != null) httpRequest.abort();
+    }
+
+    /**
+     * Aborts the HTTP request currently registered, if any, and any request
+     * registered after it.
+     */
+    public synchronized void abort() {
+        aborted = true;
+        if (httpRequest != null) httpRequest.abort();
+    }
+
+    /**
+     * Returns true if this handle has been aborted.
+     */
+    public synchronized boolean isAborted() {
+        return aborted;
+    }
+}
@@ -0,0 +1,30 @@
+package com.sina.http;
+
+/**
+ * Notified of the outcome of a service request executed without blocking.
+ * It is invoked once, on a thread of the HTTP transport or of the retry
+ * timer.
+ * <p>
+ * This interface is intended only for internal use by the SDK.
+ *
+ * @param <T>
+ *            The type of the result of the request.
+ */
+public interface ResponseCallback<T> {
+
+    /**
+     * Invoked with the result once the request has succeeded.
+     *
+     * @param result
+     *            The result of the request.
+     */
+    public void onResponse(T result);
+
+    /**
+     * Invoked once the request has failed, after any retries.
+     *
+     * @param exception
+     *            The exception the request failed with.
+     */
+    public void onError(Exception exception);
+}
@@ -0,0 +1,21 @@
+package com.sina.http.conn;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * An HTTP entity that can write its content straight to the channel of the
+ * connection's socket, bypassing the connection's output buffer. Used by
+ * {@link ZeroCopyClientConnectionManager} for connections that expose a
+ * plain socket channel; all other connections write the entity as usual.
+ */
+public interface ChannelWritableEntity {
+
+    /**
+     * Writes the content of this entity to the given channel.
+     *
+     * @param channel
+     *            The channel of the connection's socket.
+     */
+    void writeTo(WritableByteChannel channel) throws IOException;
+}
@@ -0,0 +1,79 @@
+package com.sina.http.conn;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sina.http.httpclientandroidlib.HttpConnectionMetrics;
+import com.sina.http.httpclientandroidlib.conn.routing.HttpRoute;
+
+/**
+ * Pooling connection manager which keeps track of the routes it has served
+ * and of the bytes sent and received over its connections, so that pool and
+ * traffic statistics can be reported per client.
+ * <p>
+ * A connection's byte counts are added to the totals when the connection is
+ * released back to the manager, so traffic on connections still leased isn't
+ * counted yet.
+ * <p>
+ * The deprecated connection classes are referred to by their qualified names
+ * rather than imported, since deprecation warnings on imports can't be
+ * suppressed.
+ */
+@SuppressWarnings("deprecation")
+public class InstrumentedClientConnectionManager
+        extends com.sina.http.httpclientandroidlib.impl.conn.PoolingClientConnectionManager {
+
+    private final ConcurrentMap<HttpRoute, Boolean> routes = new ConcurrentHashMap<HttpRoute, Boolean>();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong bytesReceived = new AtomicLong();
+
+    public InstrumentedClientConnectionManager() {
+        super();
+    }
+
+    @Override
+    public com.sina.http.httpclientandroidlib.conn.ClientConnectionRequest requestConnection(
+            final HttpRoute route, final Object state) {
+        if (route != null && !routes.containsKey(route)) routes.put(route, Boolean.TRUE);
+        return super.requestConnection(route, state);
+    }
+
+    @Override
+    public void releaseConnection(final com.sina.http.httpclientandroidlib.conn.ManagedClientConnection conn,
+            final long keepalive, final TimeUnit tunit) {
+        try {
+            HttpConnectionMetrics metrics = conn.getMetrics();
+            bytesSent.addAndGet(metrics.getSentBytesCount());
+            bytesReceived.addAndGet(metrics.getReceivedBytesCount());
+            metrics.reset();
+        } catch (IllegalStateException e) {
+            // Already released; its bytes were counted then
+        }
+        super.releaseConnection(conn, keepalive, tunit);
+    }
+
+    /**
+     * Returns the routes connections have been requested for.
+     */
+    public List<HttpRoute> getRoutes() {
+        return new ArrayList<HttpRoute>(routes.keySet());
+    }
+
+    /**
+     * Returns the number of bytes sent over connections released so far.
+     */
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    /**
+     * Returns the number of bytes received over connections released so far.
+     */
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+}
@@ -0,0 +1,70 @@
+package com.sina.http.conn;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+
+import com.sina.http.httpclientandroidlib.HttpEntity;
+import com.sina.http.httpclientandroidlib.HttpEntityEnclosingRequest;
+import com.sina.http.httpclientandroidlib.HttpException;
+import com.sina.http.httpclientandroidlib.impl.conn.SystemDefaultDnsResolver;
+
+/**
+ * Instrumented pooling connection manager whose connections write
+ * {@link ChannelWritableEntity} request bodies straight to the socket's
+ * channel, so that file content can be sent with
+ * {@link java.nio.channels.FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}.
+ * <p>
+ * Only plain sockets created from a {@link SocketChannel} take this path;
+ * secure connections and other entities are written through the connection's
+ * output buffer as usual. Entities sent over the channel don't show up in the
+ * wire log or the connection's byte metrics.
+ * <p>
+ * The deprecated connection classes are referred to by their qualified names
+ * rather than imported, since deprecation warnings on imports can't be
+ * suppressed.
+ */
+@SuppressWarnings("deprecation")
+public class ZeroCopyClientConnectionManager extends InstrumentedClientConnectionManager {
+
+    public ZeroCopyClientConnectionManager() {
+        super();
+    }
+
+    @Override
+    protected com.sina.http.httpclientandroidlib.conn.ClientConnectionOperator createConnectionOperator(
+            final com.sina.http.httpclientandroidlib.conn.scheme.SchemeRegistry schreg) {
+        return new com.sina.http.httpclientandroidlib.impl.conn.DefaultClientConnectionOperator(schreg,
+                new SystemDefaultDnsResolver()) {
+            @Override
+            public com.sina.http.httpclientandroidlib.conn.OperatedClientConnection createConnection() {
+                return new ZeroCopyClientConnection();
+            }
+        };
+    }
+
+    /**
+     * Connection that hands channel writable entities the socket's channel.
+     */
+    private static class ZeroCopyClientConnection
+            extends com.sina.http.httpclientandroidlib.impl.conn.DefaultClientConnection {
+
+        @Override
+        public void sendRequestEntity(final HttpEntityEnclosingRequest request)
+                throws HttpException, IOException {
+            HttpEntity entity = request.getEntity();
+            Socket socket = getSocket();
+            if (!(entity instanceof ChannelWritableEntity) || isSecure()
+                    || socket == null || socket.getChannel() == null) {
+                super.sendRequestEntity(request);
+                return;
+            }
+
+            assertOpen();
+            // The request line and headers are still sitting in the output buffer
+            doFlush();
+            SocketChannel channel = socket.getChannel();
+            ((ChannelWritableEntity)entity).writeTo(channel);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.sina.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.sina.Request;
+
+/**
+ * Collector which aggregates request metrics in memory per operation and
+ * bucket, into counters and latency histograms that can be polled.
+ */
+public class AggregatingRequestMetricCollector implements RequestMetricCollector {
+
+    private final ConcurrentMap<String, OperationMetrics> operations =
+            new ConcurrentHashMap<String, OperationMetrics>();
+
+    public void collectMetrics(Request<?> request, RequestMetricsFullSupport metrics) {
+        String operationName = metrics.getOperationName();
+        String bucketName = metrics.getBucketName();
+        String key = (bucketName == null) ? operationName : operationName + "/" + bucketName;
+
+        OperationMetrics operation = operations.get(key);
+        if (operation == null) {
+            OperationMetrics created = new OperationMetrics(operationName, bucketName);
+            operation = operations.putIfAbsent(key, created);
+            if (operation == null) operation = created;
+        }
+        operation.add(metrics);
+    }
+
+    /**
+     * Returns the metrics aggregated for the given operation and bucket, or
+     * null if no such request has completed.
+     *
+     * @param operationName
+     *            The name of the operation, e.g. "GetObject".
+     * @param bucketName
+     *            The name of the bucket, or null for requests not made on a
+     *            bucket.
+     */
+    public OperationMetrics getOperationMetrics(String operationName, String bucketName) {
+        return operations.get((bucketName == null) ? operationName : operationName + "/" + bucketName);
+    }
+
+    /**
+     * Returns the metrics aggregated so far for every operation and bucket.
+     */
+    public List<OperationMetrics> getOperationMetrics() {
+        return new ArrayList<OperationMetrics>(operations.values());
+    }
+
+    /**
+     * Discards all aggregated metrics.
+     */
+    public void reset() {
+        operations.clear();
+    }
+}
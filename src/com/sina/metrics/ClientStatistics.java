@@ -0,0 +1,141 @@
+package com.sina.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Snapshot of a client's connection pool and request counters, taken with
+ * {@link com.sina.SCSWebServiceClient#getClientStatistics()}.
+ * <p>
+ * Pool figures are zero when the client uses an HTTP transport which doesn't
+ * pool connections with the bundled HttpClient, and byte counts are only
+ * kept by the bundled connection managers.
+ */
+public class ClientStatistics implements ClientStatisticsMBean {
+
+    private final int inFlightRequests;
+    private final long requestCount;
+    private final long retryCount;
+    private final long bytesSent;
+    private final long bytesReceived;
+    private final RouteStatistics totals;
+    private final List<RouteStatistics> routes;
+
+    public ClientStatistics(int inFlightRequests, long requestCount, long retryCount,
+            long bytesSent, long bytesReceived, RouteStatistics totals, List<RouteStatistics> routes) {
+        this.inFlightRequests = inFlightRequests;
+        this.requestCount = requestCount;
+        this.retryCount = retryCount;
+        this.bytesSent = bytesSent;
+        this.bytesReceived = bytesReceived;
+        this.totals = totals != null ? totals : new RouteStatistics(null, 0, 0, 0, 0);
+        this.routes = routes != null
+                ? Collections.unmodifiableList(new ArrayList<RouteStatistics>(routes))
+                : Collections.<RouteStatistics>emptyList();
+    }
+
+    public int getInFlightRequests() {
+        return inFlightRequests;
+    }
+
+    public long getRequestCount() {
+        return requestCount;
+    }
+
+    public long getRetryCount() {
+        return retryCount;
+    }
+
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    public int getLeasedConnections() {
+        return totals.getLeased();
+    }
+
+    public int getAvailableConnections() {
+        return totals.getAvailable();
+    }
+
+    public int getPendingConnections() {
+        return totals.getPending();
+    }
+
+    public int getMaxConnections() {
+        return totals.getMax();
+    }
+
+    /**
+     * Returns the pool state of each route connections have been requested
+     * for.
+     */
+    public List<RouteStatistics> getRoutes() {
+        return routes;
+    }
+
+    public String[] getRouteStatistics() {
+        String[] result = new String[routes.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = routes.get(i).toString();
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "inFlight=" + inFlightRequests + " requests=" + requestCount + " retries=" + retryCount
+                + " bytesSent=" + bytesSent + " bytesReceived=" + bytesReceived + " " + totals;
+    }
+
+    /**
+     * Connection pool state of one route, or of the whole pool.
+     */
+    public static class RouteStatistics {
+        private final String route;
+        private final int leased;
+        private final int available;
+        private final int pending;
+        private final int max;
+
+        public RouteStatistics(String route, int leased, int available, int pending, int max) {
+            this.route = route;
+            this.leased = leased;
+            this.available = available;
+            this.pending = pending;
+            this.max = max;
+        }
+
+        /** Returns the route, or null for the totals of the whole pool. */
+        public String getRoute() {
+            return route;
+        }
+
+        public int getLeased() {
+            return leased;
+        }
+
+        public int getAvailable() {
+            return available;
+        }
+
+        public int getPending() {
+            return pending;
+        }
+
+        public int getMax() {
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return (route != null ? route + " " : "") + "leased=" + leased + " available=" + available
+                    + " pending=" + pending + " max=" + max;
+        }
+    }
+}
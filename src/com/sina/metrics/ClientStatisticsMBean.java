@@ -0,0 +1,43 @@
+package com.sina.metrics;
+
+/**
+ * Management interface exposing the state of a client's connection pool and
+ * request counters through JMX.
+ *
+ * @see StatisticsMBeans#registerClient(String, com.sina.SCSWebServiceClient)
+ */
+public interface ClientStatisticsMBean {
+
+    /** Returns the number of requests currently being executed. */
+    public int getInFlightRequests();
+
+    /** Returns the number of HTTP requests sent, including retries. */
+    public long getRequestCount();
+
+    /** Returns the number of HTTP requests which were retries. */
+    public long getRetryCount();
+
+    /** Returns the number of bytes sent over released connections. */
+    public long getBytesSent();
+
+    /** Returns the number of bytes received over released connections. */
+    public long getBytesReceived();
+
+    /** Returns the number of pooled connections currently leased. */
+    public int getLeasedConnections();
+
+    /** Returns the number of idle connections available in the pool. */
+    public int getAvailableConnections();
+
+    /** Returns the number of requests waiting for a connection. */
+    public int getPendingConnections();
+
+    /** Returns the maximum number of connections in the pool. */
+    public int getMaxConnections();
+
+    /**
+     * Returns the pool state of each route, one line per route, e.g.
+     * "{}->http://sdk.sinastorage.com leased=2 available=1 pending=0 max=50".
+     */
+    public String[] getRouteStatistics();
+}
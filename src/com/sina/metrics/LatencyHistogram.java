@@ -0,0 +1,99 @@
+package com.sina.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread safe histogram of latencies, with power of two buckets in
+ * microseconds: bucket 0 counts latencies under 1 microsecond, and bucket
+ * <i>i</i> those from 2<sup><i>i</i>-1</sup> up to 2<sup><i>i</i></sup>
+ * microseconds. Recording a value takes no locks and allocates nothing.
+ */
+public class LatencyHistogram {
+
+    /** The number of buckets; the last one also counts any longer latency. */
+    public static final int BUCKET_COUNT = 40;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos
+     *            The latency, in nanoseconds.
+     */
+    public void record(long nanos) {
+        long micros = Math.max(nanos, 0) / 1000;
+        int bucket = (micros == 0) ? 0 : 64 - Long.numberOfLeadingZeros(micros);
+        buckets.incrementAndGet(Math.min(bucket, BUCKET_COUNT - 1));
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Returns the number of latencies recorded.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns the sum, in nanoseconds, of all latencies recorded.
+     */
+    public long getTotalNanos() {
+        return totalNanos.get();
+    }
+
+    /**
+     * Returns the number of latencies recorded in the given bucket.
+     */
+    public long getBucketCount(int bucket) {
+        return buckets.get(bucket);
+    }
+
+    /**
+     * Returns the exclusive upper bound, in microseconds, of the latencies
+     * counted by the given bucket.
+     */
+    public static long getBucketUpperBoundMicros(int bucket) {
+        return 1L << bucket;
+    }
+
+    /**
+     * Returns an upper bound, in microseconds, of the given percentile of the
+     * latencies recorded, or 0 if none were recorded. The bound is the upper
+     * bound of the bucket the percentile falls in, so it is at most twice the
+     * actual value.
+     *
+     * @param percentile
+     *            The percentile, from 0 to 100.
+     */
+    public long getPercentileMicros(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) return 0;
+
+        long rank = (long)Math.ceil(total * Math.min(Math.max(percentile, 0), 100) / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= rank && seen > 0) return getBucketUpperBoundMicros(i);
+        }
+        return getBucketUpperBoundMicros(BUCKET_COUNT - 1);
+    }
+
+    /**
+     * Clears all recorded latencies.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) buckets.set(i, 0);
+        count.set(0);
+        totalNanos.set(0);
+    }
+}
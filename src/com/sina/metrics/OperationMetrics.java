@@ -0,0 +1,112 @@
+package com.sina.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sina.metrics.RequestMetrics.Field;
+
+/**
+ * Counters and latency histograms aggregated over the requests for one
+ * operation on one bucket.
+ */
+public class OperationMetrics {
+
+    private final String operationName;
+    private final String bucketName;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong attemptCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private final AtomicLong bytesProcessed = new AtomicLong();
+    private final Map<Field, LatencyHistogram> latencies = new EnumMap<Field, LatencyHistogram>(Field.class);
+
+    public OperationMetrics(String operationName, String bucketName) {
+        this.operationName = operationName;
+        this.bucketName = bucketName;
+        for (Field field : Field.values()) {
+            latencies.put(field, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Adds the metrics of one completed request.
+     */
+    void add(RequestMetricsFullSupport metrics) {
+        requestCount.incrementAndGet();
+        attemptCount.addAndGet(metrics.getRequestCount());
+        if (metrics.getException() != null) failureCount.incrementAndGet();
+        bytesProcessed.addAndGet(metrics.getBytesProcessed());
+        for (Field field : Field.values()) {
+            LatencyHistogram histogram = latencies.get(field);
+            for (long duration : metrics.getDurations(field)) {
+                histogram.record(duration);
+            }
+        }
+    }
+
+    /**
+     * Returns the name of the operation, e.g. "GetObject".
+     */
+    public String getOperationName() {
+        return operationName;
+    }
+
+    /**
+     * Returns the name of the bucket, or null for requests not made on a
+     * bucket.
+     */
+    public String getBucketName() {
+        return bucketName;
+    }
+
+    /**
+     * Returns the number of requests completed.
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Returns the number of attempts made, including retries.
+     */
+    public long getAttemptCount() {
+        return attemptCount.get();
+    }
+
+    /**
+     * Returns the number of requests that failed after all retries.
+     */
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    /**
+     * Returns the number of response bytes processed by the SDK.
+     */
+    public long getBytesProcessed() {
+        return bytesProcessed.get();
+    }
+
+    /**
+     * Returns the histogram of the latencies of the given event. The signing,
+     * HTTP request and retry pause histograms hold one value per attempt.
+     */
+    public LatencyHistogram getLatency(Field field) {
+        return latencies.get(field);
+    }
+
+    @Override
+    public String toString() {
+        LatencyHistogram execute = getLatency(Field.ClientExecuteTime);
+        LatencyHistogram http = getLatency(Field.HttpRequestTime);
+        return operationName + (bucketName == null ? "" : " " + bucketName)
+                + ": requests=" + getRequestCount()
+                + ", attempts=" + getAttemptCount()
+                + ", failures=" + getFailureCount()
+                + ", bytes=" + getBytesProcessed()
+                + ", p50=" + execute.getPercentileMicros(50) + "us"
+                + ", p99=" + execute.getPercentileMicros(99) + "us"
+                + ", http p99=" + http.getPercentileMicros(99) + "us";
+    }
+}
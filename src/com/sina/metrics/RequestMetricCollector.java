@@ -0,0 +1,24 @@
+package com.sina.metrics;
+
+import com.sina.Request;
+
+/**
+ * Receives the metrics of every request executed by a client once the
+ * request has completed, successfully or not. Set with
+ * {@link com.sina.ClientConfiguration#setRequestMetricCollector(RequestMetricCollector)}.
+ * <p>
+ * Collectors are called on the thread that executed the request and must be
+ * thread safe and quick.
+ */
+public interface RequestMetricCollector {
+
+    /**
+     * Collects the metrics of a completed request.
+     *
+     * @param request
+     *            The request that was executed.
+     * @param metrics
+     *            The metrics recorded while executing the request.
+     */
+    public void collectMetrics(Request<?> request, RequestMetricsFullSupport metrics);
+}
@@ -0,0 +1,70 @@
+package com.sina.metrics;
+
+/**
+ * Metrics recorded for one request while it is executed, across all of its
+ * attempts. This base class records nothing, so that instrumented code costs
+ * next to nothing when no {@link RequestMetricCollector} is configured;
+ * {@link RequestMetricsFullSupport} does the recording.
+ * <p>
+ * Instances are used by the thread executing the request and are not thread
+ * safe.
+ */
+public class RequestMetrics {
+
+    /** The timed events of a request. */
+    public static enum Field {
+        /** Time spent executing the request, from the first attempt to the result */
+        ClientExecuteTime,
+        /** Time spent signing an attempt */
+        RequestSigningTime,
+        /** Time from sending an attempt to receiving its response headers */
+        HttpRequestTime,
+        /** Time spent unmarshalling a successful response */
+        ResponseProcessingTime,
+        /** Time spent waiting before a retry */
+        RetryPauseTime,
+        ;
+    }
+
+    /** Shared instance used when metrics are disabled. */
+    public static final RequestMetrics NONE = new RequestMetrics();
+
+    protected RequestMetrics() {}
+
+    /**
+     * Returns true if this instance records metrics.
+     */
+    public boolean isEnabled() {
+        return false;
+    }
+
+    /**
+     * Marks the start of a timed event.
+     */
+    public void startEvent(Field field) {}
+
+    /**
+     * Marks the end of the timed event last started for the field.
+     */
+    public void endEvent(Field field) {}
+
+    /**
+     * Records the start of another attempt at the request.
+     */
+    public void incrementRequestCount() {}
+
+    /**
+     * Records the HTTP status code of an attempt.
+     */
+    public void setStatusCode(int statusCode) {}
+
+    /**
+     * Adds to the number of response bytes processed by the SDK.
+     */
+    public void addBytesProcessed(long bytes) {}
+
+    /**
+     * Records the exception the request finally failed with.
+     */
+    public void setException(Exception exception) {}
+}
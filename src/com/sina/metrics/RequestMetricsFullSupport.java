@@ -0,0 +1,139 @@
+package com.sina.metrics;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Request metrics which record the duration of every timed event, so that
+ * each attempt's signing, HTTP request and response processing time can be
+ * told apart.
+ */
+public class RequestMetricsFullSupport extends RequestMetrics {
+
+    private final String operationName;
+    private String bucketName;
+
+    private final Map<Field, long[]> durations = new EnumMap<Field, long[]>(Field.class);
+    private final Map<Field, Long> startTimes = new EnumMap<Field, Long>(Field.class);
+
+    private int requestCount;
+    private int statusCode = -1;
+    private long bytesProcessed;
+    private Exception exception;
+
+    /**
+     * @param operationName
+     *            The name of the operation being executed, e.g. "GetObject".
+     */
+    public RequestMetricsFullSupport(String operationName) {
+        this.operationName = operationName;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public void startEvent(Field field) {
+        startTimes.put(field, System.nanoTime());
+    }
+
+    @Override
+    public void endEvent(Field field) {
+        Long startTime = startTimes.remove(field);
+        if (startTime == null) return;
+
+        long duration = System.nanoTime() - startTime;
+        long[] previous = durations.get(field);
+        long[] updated;
+        if (previous == null) {
+            updated = new long[] { duration };
+        } else {
+            updated = Arrays.copyOf(previous, previous.length + 1);
+            updated[previous.length] = duration;
+        }
+        durations.put(field, updated);
+    }
+
+    @Override
+    public void incrementRequestCount() {
+        requestCount++;
+    }
+
+    @Override
+    public void setStatusCode(int statusCode) {
+        this.statusCode = statusCode;
+    }
+
+    @Override
+    public void addBytesProcessed(long bytes) {
+        bytesProcessed += bytes;
+    }
+
+    @Override
+    public void setException(Exception exception) {
+        this.exception = exception;
+    }
+
+    /**
+     * Sets the name of the bucket the request is for.
+     */
+    public void setBucketName(String bucketName) {
+        this.bucketName = bucketName;
+    }
+
+    /**
+     * Returns the name of the operation executed, e.g. "GetObject".
+     */
+    public String getOperationName() {
+        return operationName;
+    }
+
+    /**
+     * Returns the name of the bucket the request was for, or null.
+     */
+    public String getBucketName() {
+        return bucketName;
+    }
+
+    /**
+     * Returns the duration, in nanoseconds, of each recorded event of the
+     * field, in the order they happened.
+     */
+    public long[] getDurations(Field field) {
+        long[] recorded = durations.get(field);
+        return (recorded == null) ? new long[0] : recorded.clone();
+    }
+
+    /**
+     * Returns the number of attempts made at the request.
+     */
+    public int getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * Returns the HTTP status code of the last attempt, or -1 if no response
+     * was received.
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Returns the number of response bytes processed by the SDK. The content
+     * of objects returned to the caller as a stream isn't counted.
+     */
+    public long getBytesProcessed() {
+        return bytesProcessed;
+    }
+
+    /**
+     * Returns the exception the request failed with, or null if it succeeded.
+     */
+    public Exception getException() {
+        return exception;
+    }
+}
@@ -0,0 +1,102 @@
+package com.sina.metrics;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import com.sina.SCSClientException;
+import com.sina.SCSWebServiceClient;
+import com.sina.scs.transfer.TransferManager;
+import com.sina.scs.transfer.TransferManagerStatisticsMBean;
+
+/**
+ * Registers the statistics of clients and transfer managers as MBeans with
+ * the platform MBean server. Each attribute read through JMX takes a fresh
+ * snapshot, so the MBeans always show live values.
+ * <p>
+ * JMX isn't available on Android; this class is only loaded when one of its
+ * methods is called, so the rest of the SDK doesn't depend on it.
+ */
+public class StatisticsMBeans {
+
+    /** The domain of the object names MBeans are registered under */
+    public static final String DOMAIN = "com.sina.scs";
+
+    /**
+     * Registers the statistics of a client under the object name
+     * "com.sina.scs:type=Client,name=<name>".
+     *
+     * @param name
+     *            The name distinguishing this client from others registered.
+     * @param client
+     *            The client whose statistics to expose.
+     *
+     * @return The object name the MBean was registered under, which can be
+     *         passed to {@link #unregister(ObjectName)}.
+     */
+    public static ObjectName registerClient(String name, final SCSWebServiceClient client) {
+        ClientStatisticsMBean mbean = new ClientStatisticsMBean() {
+            public int getInFlightRequests() { return client.getClientStatistics().getInFlightRequests(); }
+            public long getRequestCount() { return client.getClientStatistics().getRequestCount(); }
+            public long getRetryCount() { return client.getClientStatistics().getRetryCount(); }
+            public long getBytesSent() { return client.getClientStatistics().getBytesSent(); }
+            public long getBytesReceived() { return client.getClientStatistics().getBytesReceived(); }
+            public int getLeasedConnections() { return client.getClientStatistics().getLeasedConnections(); }
+            public int getAvailableConnections() { return client.getClientStatistics().getAvailableConnections(); }
+            public int getPendingConnections() { return client.getClientStatistics().getPendingConnections(); }
+            public int getMaxConnections() { return client.getClientStatistics().getMaxConnections(); }
+            public String[] getRouteStatistics() { return client.getClientStatistics().getRouteStatistics(); }
+        };
+        return register("Client", name, mbean, ClientStatisticsMBean.class);
+    }
+
+    /**
+     * Registers the statistics of a transfer manager under the object name
+     * "com.sina.scs:type=TransferManager,name=<name>".
+     *
+     * @param name
+     *            The name distinguishing this transfer manager from others
+     *            registered.
+     * @param transferManager
+     *            The transfer manager whose statistics to expose.
+     *
+     * @return The object name the MBean was registered under, which can be
+     *         passed to {@link #unregister(ObjectName)}.
+     */
+    public static ObjectName registerTransferManager(String name, final TransferManager transferManager) {
+        TransferManagerStatisticsMBean mbean = new TransferManagerStatisticsMBean() {
+            public int getQueueDepth() { return transferManager.getStatistics().getQueueDepth(); }
+            public int getActiveThreads() { return transferManager.getStatistics().getActiveThreads(); }
+            public int getPoolSize() { return transferManager.getStatistics().getPoolSize(); }
+            public int getMaximumPoolSize() { return transferManager.getStatistics().getMaximumPoolSize(); }
+            public long getCompletedTasks() { return transferManager.getStatistics().getCompletedTasks(); }
+        };
+        return register("TransferManager", name, mbean, TransferManagerStatisticsMBean.class);
+    }
+
+    /**
+     * Unregisters an MBean registered by this class. Does nothing if it
+     * isn't registered.
+     */
+    public static void unregister(ObjectName objectName) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(objectName)) server.unregisterMBean(objectName);
+        } catch (JMException e) {
+            throw new SCSClientException("Unable to unregister MBean " + objectName, e);
+        }
+    }
+
+    private static <T> ObjectName register(String type, String name, T mbean, Class<T> mbeanInterface) {
+        try {
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(mbean, mbeanInterface), objectName);
+            return objectName;
+        } catch (JMException e) {
+            throw new SCSClientException("Unable to register MBean for " + type + " " + name, e);
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package com.sina.scs;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.sina.HttpMethod;
+import com.sina.SCSClientException;
+import com.sina.auth.AWSCredentials;
+import com.sina.auth.AWSSessionCredentials;
+import com.sina.auth.SigningAlgorithm;
+import com.sina.scs.model.GeneratePresignedUrlRequest;
+import com.sina.util.HttpUtils;
+
+/**
+ * Generates pre-signed URLs in bulk. The URLs are the same as those returned
+ * by {@link SCSClient#generatePresignedUrl(GeneratePresignedUrlRequest)}, but
+ * the signing key, endpoint and bucket prefixes are prepared once, so each
+ * URL costs a single HMAC and little more than the string it is returned as.
+ * <p>
+ * A presigner is created with {@link SCSClient#newPresigner()} and signs with
+ * the credentials the client had at that time; create a new one when the
+ * credentials change. Presigners are thread-safe.
+ */
+public class Presigner {
+
+    /** Maximum number of buckets whose URL prefix is cached */
+    private static final int MAX_CACHED_BUCKETS = 1024;
+
+    /** Default lifetime of a URL, as for SCSClient#generatePresignedUrl */
+    private static final long DEFAULT_EXPIRATION_MILLIS = 1000 * 60 * 15;
+
+    private static final char[] BASE64_CHARS =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+    /** The query parameters of a pre-signed URL */
+    private static final String SECURITY_TOKEN = "x-amz-security-token";
+    private static final String KID = "KID";
+    private static final String EXPIRES = "Expires";
+    private static final String SSIG = "ssig";
+
+    /**
+     * The order the signing parameters appear in at the end of the query
+     * string of a pre-signed URL: the access key, the expiry, the session
+     * token of session credentials and last the signature.
+     * {@link SCSClient#generatePresignedUrl(GeneratePresignedUrlRequest)}
+     * uses the same order, after any other parameters of the request.
+     */
+    static final List<String> QUERY_PARAMETER_ORDER =
+            Collections.unmodifiableList(Arrays.asList(KID, EXPIRES, SECURITY_TOKEN, SSIG));
+
+    private final SCSClient client;
+    private final URI endpoint;
+    private final boolean virtualHosting;
+    private final SecretKeySpec signingKey;
+    private final Mac prototypeMac;
+    private final String encodedKid;
+    private final String sessionToken;
+    private final String encodedSessionToken;
+
+    private final ConcurrentMap<String, String> urlPrefixes = new ConcurrentHashMap<String, String>();
+
+    private final ThreadLocal<SigningState> signingState = new ThreadLocal<SigningState>() {
+        @Override
+        protected SigningState initialValue() {
+            return new SigningState(newMac());
+        }
+    };
+
+    /**
+     * @param client
+     *            The client requests which need more than a bucket, key,
+     *            method and expiration are delegated to.
+     * @param credentials
+     *            The credentials to sign with.
+     * @param endpoint
+     *            The endpoint of the client.
+     * @param virtualHosting
+     *            Whether buckets with DNS compatible names are addressed as
+     *            virtual hosts.
+     */
+    Presigner(SCSClient client, AWSCredentials credentials, URI endpoint, boolean virtualHosting) {
+        this.client = client;
+        this.endpoint = endpoint;
+        this.virtualHosting = virtualHosting;
+
+        String accessKeyId;
+        String secretKey;
+        String token = null;
+        synchronized (credentials) {
+            accessKeyId = credentials.getAWSAccessKeyId();
+            secretKey = credentials.getAWSSecretKey();
+            if (credentials instanceof AWSSessionCredentials) {
+                token = ((AWSSessionCredentials)credentials).getSessionToken();
+            }
+        }
+        if (accessKeyId == null || secretKey == null) {
+            throw new SCSClientException("Credentials with an access key and secret key are required to pre-sign URLs");
+        }
+        this.encodedKid = HttpUtils.urlEncode("sina," + accessKeyId.trim(), false);
+        this.sessionToken = token != null ? token.trim() : null;
+        this.encodedSessionToken = sessionToken != null ? HttpUtils.urlEncode(sessionToken, false) : null;
+
+        try {
+            String algorithm = SigningAlgorithm.HmacSHA1.toString();
+            this.signingKey = new SecretKeySpec(secretKey.trim().getBytes("UTF-8"), algorithm);
+            this.prototypeMac = Mac.getInstance(algorithm);
+            this.prototypeMac.init(signingKey);
+        } catch (Exception e) {
+            throw new SCSClientException("Unable to initialize the request signer: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns a pre-signed URL for an object.
+     *
+     * @param bucketName
+     *            The name of the bucket containing the object.
+     * @param key
+     *            The key of the object.
+     * @param expiration
+     *            The time at which the URL will expire, or null for 15
+     *            minutes from now.
+     * @param method
+     *            The HTTP method the URL will be used with.
+     *
+     * @return The pre-signed URL.
+     */
+    public String presign(String bucketName, String key, Date expiration, HttpMethod method) {
+        long expirationMillis = expiration != null
+                ? expiration.getTime() : System.currentTimeMillis() + DEFAULT_EXPIRATION_MILLIS;
+        StringBuilder url = new StringBuilder(128 + (key != null ? key.length() : 0));
+        presign(bucketName, key, expirationMillis / 1000L, method, url);
+        return url.toString();
+    }
+
+    /**
+     * Appends a pre-signed URL for an object to a builder, which lets callers
+     * streaming many URLs reuse one builder for all of them.
+     *
+     * @param bucketName
+     *            The name of the bucket containing the object.
+     * @param key
+     *            The key of the object.
+     * @param expirationSeconds
+     *            The time at which the URL will expire, in seconds since the
+     *            epoch.
+     * @param method
+     *            The HTTP method the URL will be used with.
+     * @param url
+     *            The builder to append the URL to.
+     */
+    public void presign(String bucketName, String key, long expirationSeconds, HttpMethod method, StringBuilder url) {
+        if (bucketName == null) {
+            throw new IllegalArgumentException("The bucket name parameter must be specified when generating a pre-signed URL");
+        }
+        if (method == null) {
+            throw new IllegalArgumentException("The HTTP method request parameter must be specified when generating a pre-signed URL");
+        }
+
+        String escapedKey = escapeKey(key);
+        SigningState state = signingState.get();
+
+        StringBuilder stringToSign = state.stringToSign;
+        stringToSign.setLength(0);
+        stringToSign.append(method.toString()).append("\n\n\n").append(expirationSeconds).append('\n');
+        if (sessionToken != null) {
+            stringToSign.append(SECURITY_TOKEN).append(':').append(sessionToken).append('\n');
+        }
+        stringToSign.append('/').append(bucketName).append('/').append(escapedKey);
+
+        url.append(getUrlPrefix(bucketName)).append(escapedKey);
+        char separator = '?';
+        for (String parameter : QUERY_PARAMETER_ORDER) {
+            if (parameter == SECURITY_TOKEN && sessionToken == null) continue;
+            url.append(separator).append(parameter).append('=');
+            if (parameter == KID) {
+                url.append(encodedKid);
+            } else if (parameter == EXPIRES) {
+                url.append(expirationSeconds);
+            } else if (parameter == SSIG) {
+                appendSignature(state, url);
+            } else {
+                url.append(encodedSessionToken);
+            }
+            separator = '&';
+        }
+    }
+
+    /**
+     * Returns pre-signed URLs for a batch of requests, in the same order.
+     * Requests with request parameters, response header overrides, a content
+     * type or their own credentials are passed to
+     * {@link SCSClient#generatePresignedUrl(GeneratePresignedUrlRequest)}.
+     *
+     * @param requests
+     *            The requests to pre-sign.
+     *
+     * @return The pre-signed URLs.
+     */
+    public List<String> presign(Collection<GeneratePresignedUrlRequest> requests) {
+        List<String> urls = new ArrayList<String>(requests.size());
+        StringBuilder url = new StringBuilder(256);
+        for (GeneratePresignedUrlRequest request : requests) {
+            if (!request.getRequestParameters().isEmpty() || request.getResponseHeaders() != null
+                    || request.getContentType() != null || request.getRequestCredentials() != null) {
+                urls.add(client.generatePresignedUrl(request).toString());
+                continue;
+            }
+
+            long expirationMillis = request.getExpiration() != null
+                    ? request.getExpiration().getTime() : System.currentTimeMillis() + DEFAULT_EXPIRATION_MILLIS;
+            url.setLength(0);
+            presign(request.getBucketName(), request.getKey(), expirationMillis / 1000L, request.getMethod(), url);
+            urls.add(url.toString());
+        }
+        return urls;
+    }
+
+    /**
+     * Returns the scheme, host and, for path-style addressing, bucket of the
+     * URLs for a bucket, up to the slash before the key.
+     */
+    private String getUrlPrefix(String bucketName) {
+        String prefix = urlPrefixes.get(bucketName);
+        if (prefix != null) return prefix;
+
+        if (virtualHosting && BucketNameUtils.isDNSBucketName(bucketName)) {
+            prefix = endpoint.getScheme() + "://" + bucketName + "." + endpoint.getAuthority() + "/";
+        } else {
+            prefix = endpoint + "/" + HttpUtils.urlEncode(bucketName, true) + "/";
+        }
+        if (urlPrefixes.size() < MAX_CACHED_BUCKETS) urlPrefixes.putIfAbsent(bucketName, prefix);
+        return prefix;
+    }
+
+    /**
+     * URL encodes a key, leaving slashes alone but escaping every slash which
+     * follows another (the key itself follows a slash) as SCSClient does.
+     */
+    private static String escapeKey(String key) {
+        if (key == null) return "";
+
+        String encoded = HttpUtils.urlEncode(key, true);
+        if (!encoded.startsWith("/") && encoded.indexOf("//") < 0) return encoded;
+
+        StringBuilder escaped = new StringBuilder(encoded.length() + 8);
+        char previous = '/';
+        for (int i = 0; i < encoded.length(); i++) {
+            char c = encoded.charAt(i);
+            if (c == '/' && previous == '/') {
+                escaped.append("%2F");
+            } else {
+                escaped.append(c);
+            }
+            previous = c;
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Signs the string to sign in the state and appends the signature as it
+     * appears in the URL: characters 5 to 15 of the Base64 encoded HMAC, URL
+     * encoded as a path and then again as a query parameter value.
+     */
+    private void appendSignature(SigningState state, StringBuilder url) {
+        StringBuilder stringToSign = state.stringToSign;
+        int length = stringToSign.length();
+        byte[] data = state.data;
+        boolean ascii = true;
+        if (data.length < length) data = state.data = new byte[Math.max(length, data.length * 2)];
+        for (int i = 0; i < length && ascii; i++) {
+            char c = stringToSign.charAt(i);
+            ascii = c < 0x80;
+            data[i] = (byte)c;
+        }
+
+        byte[] hmac = state.hmac;
+        try {
+            if (ascii) {
+                state.mac.update(data, 0, length);
+            } else {
+                state.mac.update(stringToSign.toString().getBytes("UTF-8"));
+            }
+            state.mac.doFinal(hmac, 0);
+        } catch (Exception e) {
+            throw new SCSClientException("Unable to calculate a request signature: " + e.getMessage(), e);
+        }
+
+        for (int i = 5; i < 15; i++) {
+            int bit = i * 6;
+            int pair = ((hmac[bit / 8] & 0xff) << 8) | (hmac[bit / 8 + 1] & 0xff);
+            char c = BASE64_CHARS[(pair >> (10 - bit % 8)) & 0x3f];
+            if (c == '+') {
+                url.append("%252B");
+            } else if (c == '/') {
+                url.append("%2F");
+            } else {
+                url.append(c);
+            }
+        }
+    }
+
+    private Mac newMac() {
+        try {
+            return (Mac)prototypeMac.clone();
+        } catch (CloneNotSupportedException e) {
+            // Not every provider's Macs can be cloned
+        }
+        try {
+            Mac mac = Mac.getInstance(prototypeMac.getAlgorithm());
+            mac.init(signingKey);
+            return mac;
+        } catch (Exception e) {
+            throw new SCSClientException("Unable to initialize the request signer: " + e.getMessage(), e);
+        }
+    }
+
+    /** The signing buffers and Mac of one thread */
+    private static final class SigningState {
+        final Mac mac;
+        final StringBuilder stringToSign = new StringBuilder(256);
+        final byte[] hmac;
+        byte[] data = new byte[256];
+
+        SigningState(Mac mac) {
+            this.mac = mac;
+            this.hmac = new byte[mac.getMacLength()];
+        }
+    }
+}
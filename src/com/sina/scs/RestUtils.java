@@ -18,12 +18,10 @@
 package com.sina.scs;
 
 import java.util.Arrays;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Locale;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
-import java.util.SortedMap;
-import java.util.TreeMap;
+import java.util.Set;
 
 import com.sina.Headers;
 import com.sina.Request;
@@ -38,7 +36,7 @@ public class RestUtils {
      * The set of request parameters which must be included in the canonical
      * string to sign.
      */
-    private static final List<String> SIGNED_PARAMETERS = Arrays.asList(new String[] {
+    private static final Set<String> SIGNED_PARAMETERS = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(new String[] {
             "acl", "torrent", "logging", "location", "policy", "requestPayment", "versioning",
             "versions", "versionId", "notification", "uploadId", "uploads", "partNumber", "website",
             "delete", "lifecycle", "tagging", "cors", "restore", "relax", "meta", "multipart", "part", "copy",
@@ -48,7 +46,18 @@ public class RestUtils {
             ResponseHeaderOverrides.RESPONSE_HEADER_CONTENT_LANGUAGE,
             ResponseHeaderOverrides.RESPONSE_HEADER_CONTENT_TYPE,
             ResponseHeaderOverrides.RESPONSE_HEADER_EXPIRES,
-    });
+    })));
+
+    /** Builders larger than this aren't kept for reuse by their thread */
+    private static final int MAX_REUSED_BUILDER_CAPACITY = 8 * 1024;
+
+    /** Per-thread builder the canonical string is assembled in */
+    private static final ThreadLocal<StringBuilder> canonicalStringBuilder = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(256);
+        }
+    };
 
     /**
      * Calculate the canonical string for a REST/HTTP request to S3.
@@ -57,29 +66,22 @@ public class RestUtils {
      */
     public static <T> String makeS3CanonicalString(String method, String resource, Request<T> request, String expires)
     {
-        StringBuilder buf = new StringBuilder();
-        buf.append(method + "\n");
+        StringBuilder buf = canonicalStringBuilder.get();
+        buf.setLength(0);
+        buf.append(method).append('\n');
 
         // Add all interesting headers to a list, then sort them.  "Interesting"
         // is defined as Content-MD5, Content-Type, Date, and x-amz-
         Map<String, String> headersMap = request.getHeaders();
-        SortedMap<String, String> interestingHeaders = new TreeMap<String, String>();
+        SortedHeaders interestingHeaders = new SortedHeaders(
+                (headersMap != null ? headersMap.size() : 0) + request.getParameters().size() + 2);
         if (headersMap != null && headersMap.size() > 0) {
-            Iterator<Map.Entry<String, String>> headerIter = headersMap.entrySet().iterator();
-            while (headerIter.hasNext()) {
-                Map.Entry<String, String> entry = (Map.Entry<String, String>) headerIter.next();
+            for (Map.Entry<String, String> entry : headersMap.entrySet()) {
                 String key = entry.getKey();
-                String value = entry.getValue();
-
-                if (key == null) continue;
-                String lk = key.toString().toLowerCase(Locale.getDefault());
-
                 // Ignore any headers that are not particularly interesting.
-                if (lk.equals("content-type") || lk.equals("date") || lk.equals("s-sina-sha1") || lk.equals("content-md5") ||
-                    lk.startsWith(Headers.AMAZON_PREFIX) || lk.startsWith(Headers.SINA_PREFIX))
-                {
-                    interestingHeaders.put(lk, value);
-                }
+                if (key == null || !isInterestingHeader(key)) continue;
+
+                interestingHeaders.put(toLowerCase(key), entry.getValue());
             }
         }
 
@@ -99,24 +101,17 @@ public class RestUtils {
         if (! interestingHeaders.containsKey("content-type")) {
             interestingHeaders.put("content-type", "");
         }
-        
-//        interestingHeaders.put("date", "Mon, 05 May 2014 07:11:43 GMT");
 
         //添加sha1/content-md5
         String s_sina_sha1 = "";
         if (interestingHeaders.containsKey("s-sina-sha1")) {
-        	s_sina_sha1 = interestingHeaders.get("s-sina-sha1");
-        	interestingHeaders.remove("s-sina-sha1");
+        	s_sina_sha1 = interestingHeaders.remove("s-sina-sha1");
         }else if (interestingHeaders.containsKey("content-md5")) {
-        	s_sina_sha1 = interestingHeaders.get("content-md5");
-        	interestingHeaders.remove("content-md5");
+        	s_sina_sha1 = interestingHeaders.remove("content-md5");
         }
         
-        buf.append(s_sina_sha1+"\n");
+        buf.append(s_sina_sha1).append('\n');
 
-//        if (! interestingHeaders.containsKey("content-md5")) {
-//        	interestingHeaders.put("content-md5", "");
-//        }
         // Any parameters that are prefixed with "x-amz-" need to be included
         // in the headers section of the canonical string to sign
         for (Map.Entry<String, String> parameter: request.getParameters().entrySet()) {
@@ -126,40 +121,135 @@ public class RestUtils {
         }
 
         // Add all the interesting headers (i.e.: all that startwith x-amz- ;-))
-        for (Iterator<Map.Entry<String, String>> i = interestingHeaders.entrySet().iterator(); i.hasNext(); ) {
-            Map.Entry<String, String> entry = (Map.Entry<String, String>) i.next();
-            String key = (String) entry.getKey();
-            Object value = entry.getValue();
+        for (int i = 0; i < interestingHeaders.size; i++) {
+            String key = interestingHeaders.keys[i];
+            String value = interestingHeaders.values[i];
 
             if (key.startsWith(Headers.AMAZON_PREFIX) || key.startsWith(Headers.SINA_PREFIX)) {
                 buf.append(key).append(':').append(value);
             } else {
                 buf.append(value);
             }
-            buf.append("\n");
+            buf.append('\n');
         }
 
         // Add all the interesting parameters
         buf.append(resource);
-        String[] parameterNames = request.getParameters().keySet().toArray(
-                new String[request.getParameters().size()]);
-        Arrays.sort(parameterNames);
+        String[] parameterNames = signedParameterNames(request.getParameters());
         char separator = '?';
         for (String parameterName : parameterNames) {
-            // Skip any parameters that aren't part of the canonical signed string
-            if (SIGNED_PARAMETERS.contains(parameterName) == false) continue;
-
             buf.append(separator);
             buf.append(parameterName);
             String parameterValue = request.getParameters().get(parameterName);
             if (parameterValue != null) {
-                buf.append("=").append(parameterValue);
+                buf.append('=').append(parameterValue);
             }
 
             separator = '&';
         }
 
-        return buf.toString();
+        String canonicalString = buf.toString();
+        if (buf.capacity() > MAX_REUSED_BUILDER_CAPACITY) {
+            canonicalStringBuilder.remove();
+        }
+        return canonicalString;
+    }
+
+    /**
+     * Returns the sorted names of the parameters which are part of the
+     * canonical signed string.
+     */
+    private static String[] signedParameterNames(Map<String, String> parameters) {
+        int count = 0;
+        for (String parameterName : parameters.keySet()) {
+            if (SIGNED_PARAMETERS.contains(parameterName)) count++;
+        }
+        String[] parameterNames = new String[count];
+        if (count == 0) return parameterNames;
+
+        int i = 0;
+        for (String parameterName : parameters.keySet()) {
+            if (SIGNED_PARAMETERS.contains(parameterName)) parameterNames[i++] = parameterName;
+        }
+        Arrays.sort(parameterNames);
+        return parameterNames;
     }
 
+    /**
+     * Returns whether the header, in any case, is one of Content-Type, Date,
+     * s-sina-sha1 or Content-MD5, or has the x-amz- or x-sina- prefix.
+     */
+    private static boolean isInterestingHeader(String key) {
+        return key.equalsIgnoreCase("content-type") || key.equalsIgnoreCase("date")
+                || key.equalsIgnoreCase("s-sina-sha1") || key.equalsIgnoreCase("content-md5")
+                || key.regionMatches(true, 0, Headers.AMAZON_PREFIX, 0, Headers.AMAZON_PREFIX.length())
+                || key.regionMatches(true, 0, Headers.SINA_PREFIX, 0, Headers.SINA_PREFIX.length());
+    }
+
+    /**
+     * Lower-cases the ASCII letters of a header name, returning the name
+     * itself if it has none in upper case. Unlike String.toLowerCase() this
+     * doesn't depend on the default locale.
+     */
+    private static String toLowerCase(String key) {
+        int i = 0;
+        while (i < key.length() && (key.charAt(i) < 'A' || key.charAt(i) > 'Z')) i++;
+        if (i == key.length()) return key;
+
+        char[] chars = key.toCharArray();
+        for (; i < chars.length; i++) {
+            if (chars[i] >= 'A' && chars[i] <= 'Z') chars[i] += 'a' - 'A';
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Map from header name to value kept sorted by name in a pair of arrays,
+     * which for the handful of headers a request signs is cheaper than a
+     * TreeMap.
+     */
+    private static final class SortedHeaders {
+        String[] keys;
+        String[] values;
+        int size;
+
+        SortedHeaders(int capacity) {
+            keys = new String[capacity];
+            values = new String[capacity];
+        }
+
+        boolean containsKey(String key) {
+            return Arrays.binarySearch(keys, 0, size, key) >= 0;
+        }
+
+        void put(String key, String value) {
+            int index = Arrays.binarySearch(keys, 0, size, key);
+            if (index >= 0) {
+                values[index] = value;
+                return;
+            }
+            index = -index - 1;
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2 + 1);
+                values = Arrays.copyOf(values, size * 2 + 1);
+            }
+            System.arraycopy(keys, index, keys, index + 1, size - index);
+            System.arraycopy(values, index, values, index + 1, size - index);
+            keys[index] = key;
+            values[index] = value;
+            size++;
+        }
+
+        String remove(String key) {
+            int index = Arrays.binarySearch(keys, 0, size, key);
+            if (index < 0) return null;
+            String value = values[index];
+            System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+            System.arraycopy(values, index + 1, values, index, size - index - 1);
+            size--;
+            keys[size] = null;
+            values[size] = null;
+            return value;
+        }
+    }
 }
@@ -22,13 +22,20 @@ public class S3ClientOptions {
     /** The default setting for use of path-style access */
     public static final boolean DEFAULT_PATH_STYLE_ACCESS = false;
 
+    /** The default setting for computing the MD5 hash of files as they are uploaded */
+    public static final boolean DEFAULT_INLINE_FILE_MD5 = false;
+
     /** Flag for use of path-style access */
     private boolean pathStyleAccess = DEFAULT_PATH_STYLE_ACCESS;
 
+    /** Flag for computing the MD5 hash of files as they are uploaded */
+    private boolean inlineFileMD5 = DEFAULT_INLINE_FILE_MD5;
+
     public S3ClientOptions() {}
 
     public S3ClientOptions( S3ClientOptions other ) {
         this.pathStyleAccess = other.pathStyleAccess;
+        this.inlineFileMD5 = other.inlineFileMD5;
     }
 
     /**
@@ -103,4 +110,55 @@ public class S3ClientOptions {
       return this;
     }
 
-}
\ No newline at end of file
+    /**
+     * <p>
+     * Returns whether the client computes the MD5 hash of an uploaded file as
+     * the file is sent, instead of reading the whole file to hash it first.
+     * </p>
+     * @return True if the client hashes files as they are uploaded.
+     */
+    public boolean isInlineFileMD5() {
+        return inlineFileMD5;
+    }
+
+    /**
+     * <p>
+     * Configures whether the client computes the MD5 hash of an uploaded
+     * file as the file is sent, instead of reading the whole file to hash it
+     * first.
+     * </p>
+     * <p>
+     * By default a file is read twice: once to compute the Content-MD5
+     * header, and once to send it. Hashing it as it is sent halves the disk
+     * reads and lets the first byte go out without waiting for the hash. The
+     * hash is then checked against the ETag returned by the server, so a
+     * corrupted upload is still reported, but only after the object has been
+     * stored. Files whose Content-MD5 is already set aren't hashed at all.
+     * </p>
+     * @param inlineFileMD5
+     *            True to hash files as they are uploaded.
+     */
+    public void setInlineFileMD5(boolean inlineFileMD5) {
+      this.inlineFileMD5 = inlineFileMD5;
+    }
+
+    /**
+     * <p>
+     * Configures whether the client computes the MD5 hash of an uploaded
+     * file as the file is sent, instead of reading the whole file to hash it
+     * first.
+     * </p>
+     * @param inlineFileMD5
+     *            True to hash files as they are uploaded.
+     *
+     * @return The updated S3ClientOptions object with the new inline MD5
+     *         setting.
+     *
+     * @see #setInlineFileMD5(boolean)
+     */
+    public S3ClientOptions withInlineFileMD5(boolean inlineFileMD5) {
+      setInlineFileMD5(inlineFileMD5);
+      return this;
+    }
+
+}
@@ -24,6 +24,7 @@ import java.util.Map;
 import com.sina.HttpMethod;
 import com.sina.SCSClientException;
 import com.sina.SCSServiceException;
+import com.sina.scs.model.AbortMultipartUploadRequest;
 import com.sina.scs.model.AccessControlList;
 import com.sina.scs.model.Bucket;
 import com.sina.scs.model.BucketInfo;
@@ -47,6 +48,7 @@ import com.sina.scs.model.ObjectListing;
 import com.sina.scs.model.ObjectMetadata;
 import com.sina.scs.model.PartListing;
 import com.sina.scs.model.Permission;
+import com.sina.scs.model.PutObjectRelaxRequest;
 import com.sina.scs.model.PutObjectRequest;
 import com.sina.scs.model.PutObjectResult;
 import com.sina.scs.model.S3Object;
@@ -1309,6 +1311,28 @@ public interface SCS {
      */
     public PutObjectResult putObjectRelax(String bucketName, String key, String fileSha1, long fileLength)
     		throws SCSClientException, SCSServiceException;
+
+    /**
+     * Uploads with relax: creates the object from content the server already
+     * stores, identified by its SHA-1 hash and length, with the metadata and
+     * canned ACL of the given request. No content is sent.
+     *
+     * @param putObjectRelaxRequest
+     *            The request object containing the SHA-1 hash and length of
+     *            the content, and the metadata of the new object.
+     *
+     * @return A {@link PutObjectResult} object containing the information
+     *         returned by SCS for the newly created object.
+     *
+     * @throws SCSClientException
+     *             If any errors are encountered in the client while making the
+     *             request or handling the response.
+     * @throws SCSServiceException
+     *             If any errors occurred in SCS while processing the request,
+     *             such as when it doesn't store the content.
+     */
+    public PutObjectResult putObjectRelax(PutObjectRelaxRequest putObjectRelaxRequest)
+            throws SCSClientException, SCSServiceException;
     
     /**
      * <p>
@@ -1850,30 +1874,30 @@ public interface SCS {
      */
     public PartListing listParts(ListPartsRequest request)
             throws SCSClientException, SCSServiceException;
-//
-//    /**
-//     * Aborts a multipart upload. After a multipart upload is aborted, no
-//     * additional parts can be uploaded using that upload ID. The storage
-//     * consumed by any previously uploaded parts will be freed. However, if any
-//     * part uploads are currently in progress, those part uploads may or may not
-//     * succeed. As a result, it may be necessary to abort a given multipart
-//     * upload multiple times in order to completely free all storage consumed by
-//     * all parts.
-//     *
-//     * @param request
-//     *            The AbortMultipartUploadRequest object that specifies all the
-//     *            parameters of this operation.
-//     *
-//     * @throws SCSClientException
-//     *             If any errors are encountered in the client while making the
-//     *             request or handling the response.
-//     * @throws SCSServiceException
-//     *             If any errors occurred in SCS while processing the
-//     *             request.
-//     */
-//    public void abortMultipartUpload(AbortMultipartUploadRequest request)
-//            throws SCSClientException, SCSServiceException;
-//
+
+    /**
+     * Aborts a multipart upload. After a multipart upload is aborted, no
+     * additional parts can be uploaded using that upload ID. The storage
+     * consumed by any previously uploaded parts will be freed. However, if any
+     * part uploads are currently in progress, those part uploads may or may not
+     * succeed. As a result, it may be necessary to abort a given multipart
+     * upload multiple times in order to completely free all storage consumed by
+     * all parts.
+     *
+     * @param request
+     *            The AbortMultipartUploadRequest object that specifies all the
+     *            parameters of this operation.
+     *
+     * @throws SCSClientException
+     *             If any errors are encountered in the client while making the
+     *             request or handling the response.
+     * @throws SCSServiceException
+     *             If any errors occurred in SCS while processing the
+     *             request.
+     */
+    public void abortMultipartUpload(AbortMultipartUploadRequest request)
+            throws SCSClientException, SCSServiceException;
+
     /**
      * Completes a multipart upload by assembling previously uploaded parts.
      * <p>
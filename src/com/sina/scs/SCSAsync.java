@@ -0,0 +1,298 @@
+package com.sina.scs;
+
+import java.util.concurrent.Future;
+
+import com.sina.handlers.AsyncHandler;
+import com.sina.scs.model.CompleteMultipartUploadRequest;
+import com.sina.scs.model.CopyObjectRequest;
+import com.sina.scs.model.DeleteObjectRequest;
+import com.sina.scs.model.GetObjectMetadataRequest;
+import com.sina.scs.model.GetObjectRequest;
+import com.sina.scs.model.InitiateMultipartUploadRequest;
+import com.sina.scs.model.InitiateMultipartUploadResult;
+import com.sina.scs.model.ListObjectsRequest;
+import com.sina.scs.model.ListPartsRequest;
+import com.sina.scs.model.ObjectListing;
+import com.sina.scs.model.ObjectMetadata;
+import com.sina.scs.model.PartListing;
+import com.sina.scs.model.PutObjectRequest;
+import com.sina.scs.model.PutObjectResult;
+import com.sina.scs.model.S3Object;
+import com.sina.scs.model.UploadPartRequest;
+import com.sina.scs.model.UploadPartResult;
+
+/**
+ * Interface for accessing SCS asynchronously. Each asynchronous method runs
+ * the corresponding {@link SCS} method on an executor, or sends its request
+ * without blocking where the HTTP transport allows it, and returns a
+ * {@link Future} for its result. Passing an {@link AsyncHandler} makes the
+ * result available to a callback as soon as the request completes, which is
+ * how dependent requests are chained without tying up a thread per request.
+ * <p>
+ * Cancelling a returned future before the request completes aborts the HTTP
+ * request in flight.
+ */
+public interface SCSAsync extends SCS {
+
+    /**
+     * Returns a list of summary information about the objects in a bucket.
+     *
+     * @param request
+     *            The request to execute.
+     *
+     * @return A future for the result of the request.
+     *
+     * @see SCS#listObjects(ListObjectsRequest)
+     */
+    public Future<ObjectListing> listObjectsAsync(ListObjectsRequest request);
+
+    /**
+     * Returns a list of summary information about the objects in a bucket.
+     *
+     * @param request
+     *            The request to execute.
+     * @param asyncHandler
+     *            The handler notified when the request completes, or null.
+     *
+     * @return A future for the result of the request.
+     *
+     * @see SCS#listObjects(ListObjectsRequest)
+     */
+    public Future<ObjectListing> listObjectsAsync(ListObjectsRequest request, AsyncHandler<ListObjectsRequest, ObjectListing> asyncHandler);
+
+    /**
+     * Gets the metadata for an object without fetching the object itself.
+     *
+     * @param request
+     *            The request to execute.
+     *
+     * @return A future for the result of the request.
+     *
+     * @see SCS#getObjectMetadata(GetObjectMetadataRequest)
+     */
+    public Future<ObjectMetadata> getObjectMetadataAsync(GetObjectMetadataRequest request);
+
+    /**
+     * Gets the metadata for an object without fetching the object itself.
+     *
+     * @param request
+     *            The request to execute.
+     * @param asyncHandler
+     *            The handler notified when the request completes, or null.
+     *
+     * @return A future for the result of the request.
+     *
+     * @see SCS#getObjectMetadata(GetObjectMetadataRequest)
+     */
+    public Future<ObjectMetadata> getObjectMetadataAsync(GetObjectMetadataRequest request, AsyncHandler<GetObjectMetadataRequest, ObjectMetadata> asyncHandler);
+
+    /**
+     * Gets an object. The returned future completes once the response headers
+     * have arrived; the object's content is read from the returned S3Object.
+     *
+     * @param request
+     *            The request to execute.
+     *
+     * @return A future for the result of the request.
+     *
+     * @see SCS#getObject(GetObjectRequest)
+     */
+    public Future<S3Object> getObjectAsync(GetObjectRequest request);
+
+    /**
+     * Gets an object. The returned future completes once the response headers
+     * have arrived; the object's content is read from the returned S3Object.
+     *
+     * @param request
+     *            The request to execute.
+     * @param asyncHandler
+     *            The handler notified when the request completes, or null.
+     *
+     * @return A future for the result of the request.
+     *
+     * @see SCS#getObject(GetObjectRequest)
+     */
+    public Future<S3Object> getObjectAsync(GetObjectRequest request, AsyncHandler<GetObjectRequest, S3Object> asyncHandler);
+
+    /**
+     * Uploads a new object.
+     *
+     * @param request
+     *            The request to execute.
+     *
+     * @return A future for the result of the request.
+     *
+     * @see SCS#putObject(PutObjectRequest)
+     */
+    public Future<PutObjectResult> putObjectAsync(PutObjectRequest request);
+
+    /**
+     * Uploads a new object.
+     *
+     * @param request
+     *            The request to execute.
+     * @param asyncHandler
+     *            The handler notified when the request completes, or null.
+     *
+     * @return A future for the result of the request.
+     *
+     * @see SCS#putObject(PutObjectRequest)
+     */
+    public Future<PutObjectResult> putObjectAsync(PutObjectRequest request, AsyncHandler<PutObjectRequest, PutObjectResult> asyncHandler);
+
+    /**
+     * Copies an object.
+     *
+     * @param request
+     *            The request to execute.
+     *
+     * @return A future for the result of the request.
+     *
+     * @see SCS#copyObject(CopyObjectRequest)
+     */
+    public Future<Void> copyObjectAsync(CopyObjectRequest request);
+
+    /**
+     * Copies an object.
+     *
+     * @param request
+     *            The request to execute.
+     * @param asyncHandler
+     *            The handler notified when the request completes, or null.
+     *
+     * @return A future for the result of the request.
+     *
+     * @see SCS#copyObject(CopyObjectRequest)
+     */
+    public Future<Void> copyObjectAsync(CopyObjectRequest request, AsyncHandler<CopyObjectRequest, Void> asyncHandler);
+
+    /**
+     * Deletes an object.
+     *
+     * @param request
+     *            The request to execute.
+     *
+     * @return A future for the result of the request.
+     *
+     * @see SCS#deleteObject(DeleteObjectRequest)
+     */
+    public Future<Void> deleteObjectAsync(DeleteObjectRequest request);
+
+    /**
+     * Deletes an object.
+     *
+     * @param request
+     *            The request to execute.
+     * @param asyncHandler
+     *            The handler notified when the request completes, or null.
+     *
+     * @return A future for the result of the request.
+     *
+     * @see SCS#deleteObject(DeleteObjectRequest)
+     */
+    public Future<Void> deleteObjectAsync(DeleteObjectRequest request, AsyncHandler<DeleteObjectRequest, Void> asyncHandler);
+
+    /**
+     * Initiates a multipart upload.
+     *
+     * @param request
+     *            The request to execute.
+     *
+     * @return A future for the result of the request.
+     *
+     * @see SCS#initiateMultipartUpload(InitiateMultipartUploadRequest)
+     */
+    public Future<InitiateMultipartUploadResult> initiateMultipartUploadAsync(InitiateMultipartUploadRequest request);
+
+    /**
+     * Initiates a multipart upload.
+     *
+     * @param request
+     *            The request to execute.
+     * @param asyncHandler
+     *            The handler notified when the request completes, or null.
+     *
+     * @return A future for the result of the request.
+     *
+     * @see SCS#initiateMultipartUpload(InitiateMultipartUploadRequest)
+     */
+    public Future<InitiateMultipartUploadResult> initiateMultipartUploadAsync(InitiateMultipartUploadRequest request, AsyncHandler<InitiateMultipartUploadRequest, InitiateMultipartUploadResult> asyncHandler);
+
+    /**
+     * Uploads a part of a multipart upload.
+     *
+     * @param request
+     *            The request to execute.
+     *
+     * @return A future for the result of the request.
+     *
+     * @see SCS#uploadPart(UploadPartRequest)
+     */
+    public Future<UploadPartResult> uploadPartAsync(UploadPartRequest request);
+
+    /**
+     * Uploads a part of a multipart upload.
+     *
+     * @param request
+     *            The request to execute.
+     * @param asyncHandler
+     *            The handler notified when the request completes, or null.
+     *
+     * @return A future for the result of the request.
+     *
+     * @see SCS#uploadPart(UploadPartRequest)
+     */
+    public Future<UploadPartResult> uploadPartAsync(UploadPartRequest request, AsyncHandler<UploadPartRequest, UploadPartResult> asyncHandler);
+
+    /**
+     * Lists the parts uploaded for a multipart upload.
+     *
+     * @param request
+     *            The request to execute.
+     *
+     * @return A future for the result of the request.
+     *
+     * @see SCS#listParts(ListPartsRequest)
+     */
+    public Future<PartListing> listPartsAsync(ListPartsRequest request);
+
+    /**
+     * Lists the parts uploaded for a multipart upload.
+     *
+     * @param request
+     *            The request to execute.
+     * @param asyncHandler
+     *            The handler notified when the request completes, or null.
+     *
+     * @return A future for the result of the request.
+     *
+     * @see SCS#listParts(ListPartsRequest)
+     */
+    public Future<PartListing> listPartsAsync(ListPartsRequest request, AsyncHandler<ListPartsRequest, PartListing> asyncHandler);
+
+    /**
+     * Completes a multipart upload.
+     *
+     * @param request
+     *            The request to execute.
+     *
+     * @return A future for the result of the request.
+     *
+     * @see SCS#completeMultipartUpload(CompleteMultipartUploadRequest)
+     */
+    public Future<ObjectMetadata> completeMultipartUploadAsync(CompleteMultipartUploadRequest request);
+
+    /**
+     * Completes a multipart upload.
+     *
+     * @param request
+     *            The request to execute.
+     * @param asyncHandler
+     *            The handler notified when the request completes, or null.
+     *
+     * @return A future for the result of the request.
+     *
+     * @see SCS#completeMultipartUpload(CompleteMultipartUploadRequest)
+     */
+    public Future<ObjectMetadata> completeMultipartUploadAsync(CompleteMultipartUploadRequest request, AsyncHandler<CompleteMultipartUploadRequest, ObjectMetadata> asyncHandler);
+}
@@ -0,0 +1,379 @@
+package com.sina.scs;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import com.sina.ClientConfiguration;
+import com.sina.SCSWebServiceRequest;
+import com.sina.auth.AWSCredentials;
+import com.sina.auth.AWSCredentialsProvider;
+import com.sina.handlers.AsyncHandler;
+import com.sina.http.RequestAbortHandle;
+import com.sina.http.ResponseCallback;
+import com.sina.internal.StaticCredentialsProvider;
+import com.sina.scs.model.CompleteMultipartUploadRequest;
+import com.sina.scs.model.CopyObjectRequest;
+import com.sina.scs.model.DeleteObjectRequest;
+import com.sina.scs.model.GetObjectMetadataRequest;
+import com.sina.scs.model.GetObjectRequest;
+import com.sina.scs.model.InitiateMultipartUploadRequest;
+import com.sina.scs.model.InitiateMultipartUploadResult;
+import com.sina.scs.model.ListObjectsRequest;
+import com.sina.scs.model.ListPartsRequest;
+import com.sina.scs.model.ObjectListing;
+import com.sina.scs.model.ObjectMetadata;
+import com.sina.scs.model.PartListing;
+import com.sina.scs.model.PutObjectRequest;
+import com.sina.scs.model.PutObjectResult;
+import com.sina.scs.model.S3Object;
+import com.sina.scs.model.UploadPartRequest;
+import com.sina.scs.model.UploadPartResult;
+
+/**
+ * Client for accessing SCS asynchronously. Requests are executed by the
+ * blocking {@link SCSClient} methods on an executor service, so the number
+ * of requests in flight is bounded by that executor (by default a fixed pool
+ * of {@link ClientConfiguration#getMaxConnections()} threads) rather than by
+ * the number of caller threads.
+ * <p>
+ * When the HTTP transport can send requests without blocking, as
+ * <code>JdkHttpTransport</code> does, <code>getObjectAsync</code> and
+ * <code>getObjectMetadataAsync</code> don't use the executor at all: their
+ * requests are sent and retried without holding a thread while waiting for
+ * the response, and the handler, if any, is notified on a thread of the
+ * transport. The content of an object returned that way is read as it
+ * arrives, so reading it still blocks the reading thread.
+ * <p>
+ * Cancelling a returned future before its request completes aborts the HTTP
+ * request in flight and stops any retries.
+ *
+ * @see SCSAsync
+ */
+public class SCSAsyncClient extends SCSClient implements SCSAsync {
+
+    /** The executor service the requests are executed on */
+    private final ExecutorService executorService;
+
+    /**
+     * Constructs a new asynchronous client using the specified credentials,
+     * with a fixed pool of {@link ClientConfiguration#DEFAULT_MAX_CONNECTIONS}
+     * threads to execute requests.
+     *
+     * @param awsCredentials
+     *            The credentials to use when making requests with this client.
+     */
+    public SCSAsyncClient(AWSCredentials awsCredentials) {
+        this(awsCredentials, new ClientConfiguration());
+    }
+
+    /**
+     * Constructs a new asynchronous client using the specified credentials and
+     * client configuration, with a fixed pool of as many threads as the
+     * configuration allows connections to execute requests.
+     *
+     * @param awsCredentials
+     *            The credentials to use when making requests with this client.
+     * @param clientConfiguration
+     *            The client configuration options controlling how this client
+     *            connects to SCS (e.g. proxy settings, retry counts, etc).
+     */
+    public SCSAsyncClient(AWSCredentials awsCredentials, ClientConfiguration clientConfiguration) {
+        this(awsCredentials, clientConfiguration,
+                Executors.newFixedThreadPool(clientConfiguration.getMaxConnections()));
+    }
+
+    /**
+     * Constructs a new asynchronous client using the specified credentials,
+     * client configuration and executor service.
+     *
+     * @param awsCredentials
+     *            The credentials to use when making requests with this client.
+     * @param clientConfiguration
+     *            The client configuration options controlling how this client
+     *            connects to SCS (e.g. proxy settings, retry counts, etc).
+     * @param executorService
+     *            The executor service the requests are executed on.
+     */
+    public SCSAsyncClient(AWSCredentials awsCredentials, ClientConfiguration clientConfiguration,
+            ExecutorService executorService) {
+        this(new StaticCredentialsProvider(awsCredentials), clientConfiguration, executorService);
+    }
+
+    /**
+     * Constructs a new asynchronous client using the specified credentials
+     * provider, client configuration and executor service.
+     *
+     * @param credentialsProvider
+     *            The credentials provider which will provide credentials to
+     *            authenticate requests.
+     * @param clientConfiguration
+     *            The client configuration options controlling how this client
+     *            connects to SCS (e.g. proxy settings, retry counts, etc).
+     * @param executorService
+     *            The executor service the requests are executed on.
+     */
+    public SCSAsyncClient(AWSCredentialsProvider credentialsProvider, ClientConfiguration clientConfiguration,
+            ExecutorService executorService) {
+        super(credentialsProvider, clientConfiguration);
+        this.executorService = executorService;
+    }
+
+    /**
+     * Returns the executor service the requests of this client are executed
+     * on.
+     *
+     * @return The executor service the requests are executed on.
+     */
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    /**
+     * Shuts down the client, releasing all managed resources. This includes
+     * forcibly terminating all pending asynchronous requests.
+     */
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        executorService.shutdownNow();
+    }
+
+    public Future<ObjectListing> listObjectsAsync(ListObjectsRequest request) {
+        return listObjectsAsync(request, null);
+    }
+
+    public Future<ObjectListing> listObjectsAsync(final ListObjectsRequest request, AsyncHandler<ListObjectsRequest, ObjectListing> asyncHandler) {
+        return submit(request, new Callable<ObjectListing>() {
+            public ObjectListing call() throws Exception {
+                return listObjects(request);
+            }
+        }, asyncHandler);
+    }
+
+    public Future<ObjectMetadata> getObjectMetadataAsync(GetObjectMetadataRequest request) {
+        return getObjectMetadataAsync(request, null);
+    }
+
+    public Future<ObjectMetadata> getObjectMetadataAsync(final GetObjectMetadataRequest request, AsyncHandler<GetObjectMetadataRequest, ObjectMetadata> asyncHandler) {
+        if (isAsyncSupported()) {
+            ResponseFuture<GetObjectMetadataRequest, ObjectMetadata> future =
+                    new ResponseFuture<GetObjectMetadataRequest, ObjectMetadata>(request, asyncHandler);
+            try {
+                getObjectMetadata(request, future.abortHandle, future);
+            } catch (RuntimeException e) {
+                future.onError(e);
+            }
+            return future;
+        }
+        return submit(request, new Callable<ObjectMetadata>() {
+            public ObjectMetadata call() throws Exception {
+                return getObjectMetadata(request);
+            }
+        }, asyncHandler);
+    }
+
+    public Future<S3Object> getObjectAsync(GetObjectRequest request) {
+        return getObjectAsync(request, null);
+    }
+
+    public Future<S3Object> getObjectAsync(final GetObjectRequest request, AsyncHandler<GetObjectRequest, S3Object> asyncHandler) {
+        if (isAsyncSupported()) {
+            ResponseFuture<GetObjectRequest, S3Object> future =
+                    new ResponseFuture<GetObjectRequest, S3Object>(request, asyncHandler);
+            try {
+                getObject(request, future.abortHandle, future);
+            } catch (RuntimeException e) {
+                future.onError(e);
+            }
+            return future;
+        }
+        return submit(request, new Callable<S3Object>() {
+            public S3Object call() throws Exception {
+                return getObject(request);
+            }
+        }, asyncHandler);
+    }
+
+    public Future<PutObjectResult> putObjectAsync(PutObjectRequest request) {
+        return putObjectAsync(request, null);
+    }
+
+    public Future<PutObjectResult> putObjectAsync(final PutObjectRequest request, AsyncHandler<PutObjectRequest, PutObjectResult> asyncHandler) {
+        return submit(request, new Callable<PutObjectResult>() {
+            public PutObjectResult call() throws Exception {
+                return putObject(request);
+            }
+        }, asyncHandler);
+    }
+
+    public Future<Void> copyObjectAsync(CopyObjectRequest request) {
+        return copyObjectAsync(request, null);
+    }
+
+    public Future<Void> copyObjectAsync(final CopyObjectRequest request, AsyncHandler<CopyObjectRequest, Void> asyncHandler) {
+        return submit(request, new Callable<Void>() {
+            public Void call() throws Exception {
+                copyObject(request);
+                return null;
+            }
+        }, asyncHandler);
+    }
+
+    public Future<Void> deleteObjectAsync(DeleteObjectRequest request) {
+        return deleteObjectAsync(request, null);
+    }
+
+    public Future<Void> deleteObjectAsync(final DeleteObjectRequest request, AsyncHandler<DeleteObjectRequest, Void> asyncHandler) {
+        return submit(request, new Callable<Void>() {
+            public Void call() throws Exception {
+                deleteObject(request);
+                return null;
+            }
+        }, asyncHandler);
+    }
+
+    public Future<InitiateMultipartUploadResult> initiateMultipartUploadAsync(InitiateMultipartUploadRequest request) {
+        return initiateMultipartUploadAsync(request, null);
+    }
+
+    public Future<InitiateMultipartUploadResult> initiateMultipartUploadAsync(final InitiateMultipartUploadRequest request, AsyncHandler<InitiateMultipartUploadRequest, InitiateMultipartUploadResult> asyncHandler) {
+        return submit(request, new Callable<InitiateMultipartUploadResult>() {
+            public InitiateMultipartUploadResult call() throws Exception {
+                return initiateMultipartUpload(request);
+            }
+        }, asyncHandler);
+    }
+
+    public Future<UploadPartResult> uploadPartAsync(UploadPartRequest request) {
+        return uploadPartAsync(request, null);
+    }
+
+    public Future<UploadPartResult> uploadPartAsync(final UploadPartRequest request, AsyncHandler<UploadPartRequest, UploadPartResult> asyncHandler) {
+        return submit(request, new Callable<UploadPartResult>() {
+            public UploadPartResult call() throws Exception {
+                return uploadPart(request);
+            }
+        }, asyncHandler);
+    }
+
+    public Future<PartListing> listPartsAsync(ListPartsRequest request) {
+        return listPartsAsync(request, null);
+    }
+
+    public Future<PartListing> listPartsAsync(final ListPartsRequest request, AsyncHandler<ListPartsRequest, PartListing> asyncHandler) {
+        return submit(request, new Callable<PartListing>() {
+            public PartListing call() throws Exception {
+                return listParts(request);
+            }
+        }, asyncHandler);
+    }
+
+    public Future<ObjectMetadata> completeMultipartUploadAsync(CompleteMultipartUploadRequest request) {
+        return completeMultipartUploadAsync(request, null);
+    }
+
+    public Future<ObjectMetadata> completeMultipartUploadAsync(final CompleteMultipartUploadRequest request, AsyncHandler<CompleteMultipartUploadRequest, ObjectMetadata> asyncHandler) {
+        return submit(request, new Callable<ObjectMetadata>() {
+            public ObjectMetadata call() throws Exception {
+                return completeMultipartUpload(request);
+            }
+        }, asyncHandler);
+    }
+
+    /**
+     * Submits a request to the executor service, wiring cancellation of the
+     * returned future to an abort handle for this call and notifying the handler,
+     * if any, when the request completes.
+     */
+    private <REQUEST extends SCSWebServiceRequest, RESULT> Future<RESULT> submit(final REQUEST request,
+            final Callable<RESULT> callable, final AsyncHandler<REQUEST, RESULT> asyncHandler) {
+        final RequestAbortHandle abortHandle = new RequestAbortHandle();
+
+        FutureTask<RESULT> future = new AbortableFutureTask<RESULT>(new Callable<RESULT>() {
+            public RESULT call() throws Exception {
+                RESULT result;
+                try {
+                    // The handle is passed on through the executing thread,
+                    // not the request, which the caller may submit again
+                    currentAbortHandle.set(abortHandle);
+                    try {
+                        result = callable.call();
+                    } finally {
+                        currentAbortHandle.remove();
+                    }
+                } catch (Exception e) {
+                    if (asyncHandler != null) asyncHandler.onError(e);
+                    throw e;
+                }
+                if (asyncHandler != null) asyncHandler.onSuccess(request, result);
+                return result;
+            }
+        }, abortHandle);
+        executorService.execute(future);
+        return future;
+    }
+
+    /**
+     * Future task which aborts the HTTP request of its service request when
+     * it is cancelled.
+     */
+    private static class AbortableFutureTask<RESULT> extends FutureTask<RESULT> {
+        protected final RequestAbortHandle abortHandle;
+
+        public AbortableFutureTask(Callable<RESULT> callable, RequestAbortHandle abortHandle) {
+            super(callable);
+            this.abortHandle = abortHandle;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) abortHandle.abort();
+            return cancelled;
+        }
+    }
+
+    /**
+     * Future of a request sent without blocking, completed by the client's
+     * callback rather than by running a task. It notifies the handler, if
+     * any, before completing.
+     */
+    private static final class ResponseFuture<REQUEST extends SCSWebServiceRequest, RESULT>
+            extends AbortableFutureTask<RESULT> implements ResponseCallback<RESULT> {
+        private final REQUEST request;
+        private final AsyncHandler<REQUEST, RESULT> asyncHandler;
+
+        public ResponseFuture(REQUEST request, AsyncHandler<REQUEST, RESULT> asyncHandler) {
+            super(new Callable<RESULT>() {
+                public RESULT call() {
+                    throw new IllegalStateException("Completed by the response callback");
+                }
+            }, new RequestAbortHandle());
+            this.request = request;
+            this.asyncHandler = asyncHandler;
+        }
+
+        public void onResponse(RESULT result) {
+            try {
+                if (asyncHandler != null) asyncHandler.onSuccess(request, result);
+            } catch (RuntimeException e) {
+                setException(e);
+                return;
+            }
+            set(result);
+        }
+
+        public void onError(Exception exception) {
+            try {
+                if (asyncHandler != null) asyncHandler.onError(exception);
+            } catch (RuntimeException e) {
+                setException(e);
+                return;
+            }
+            setException(exception);
+        }
+    }
+}
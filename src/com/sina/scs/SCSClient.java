@@ -24,11 +24,13 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.TreeSet;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -56,9 +58,14 @@ import com.sina.event.ProgressListener;
 import com.sina.event.ProgressListenerCallbackExecutor;
 import com.sina.event.ProgressReportingInputStream;
 import com.sina.http.ExecutionContext;
+import com.sina.http.FileRegionInputStream;
 import com.sina.http.HttpMethodName;
 import com.sina.http.HttpResponseHandler;
+import com.sina.http.RequestAbortHandle;
+import com.sina.http.ResponseCallback;
 import com.sina.internal.StaticCredentialsProvider;
+import com.sina.metrics.RequestMetricsFullSupport;
+import com.sina.scs.model.AbortMultipartUploadRequest;
 import com.sina.scs.model.AccessControlList;
 import com.sina.scs.model.AmazonS3Exception;
 import com.sina.scs.model.Bucket;
@@ -102,6 +109,7 @@ import com.sina.transform.Unmarshaller;
 import com.sina.util.BinaryUtils;
 import com.sina.util.ContentLengthValidationInputStream;
 import com.sina.util.DateUtils;
+import com.sina.util.FileHashIndex;
 import com.sina.util.HttpUtils;
 import com.sina.util.Md5Utils;
 
@@ -114,6 +122,12 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
     /** Shared logger for client events */
     private static Log log = LogFactory.getLog(SCSClient.class);
 
+    /**
+     * Abort handle of the asynchronous call running on the current thread, or
+     * null; kept per call so that requests stay free to be reused.
+     */
+    static final ThreadLocal<RequestAbortHandle> currentAbortHandle = new ThreadLocal<RequestAbortHandle>();
+
     /** Responsible for handling error responses from all S3 service calls. */
     private S3ErrorResponseHandler errorResponseHandler = new S3ErrorResponseHandler();
 
@@ -123,6 +137,9 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
     /** S3 specific client configuration options */
     private S3ClientOptions clientOptions = new S3ClientOptions();
 
+    /** Index of the hashes of uploaded files, or null to always hash them */
+    private FileHashIndex fileHashIndex;
+
     /** Provider for AWS credentials. */
     private AWSCredentialsProvider awsCredentialsProvider;
 
@@ -246,7 +263,22 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
     }
 
     protected final ExecutionContext createExecutionContext(SCSWebServiceRequest req) {
-        return new ExecutionContext();
+        ExecutionContext executionContext = new ExecutionContext();
+        executionContext.setAbortHandle(currentAbortHandle.get());
+        if (clientConfiguration.getRequestMetricCollector() != null) {
+            executionContext.setRequestMetrics(new RequestMetricsFullSupport(getOperationName(req)));
+        }
+        return executionContext;
+    }
+
+    /**
+     * Returns the name of the operation a request is for, e.g. "GetObject"
+     * for a GetObjectRequest.
+     */
+    private static String getOperationName(SCSWebServiceRequest req) {
+        if (req == null) return "Unknown";
+        String name = req.getClass().getSimpleName();
+        return name.endsWith("Request") ? name.substring(0, name.length() - "Request".length()) : name;
     }
 
     /**
@@ -315,6 +347,19 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
       this.clientOptions = new S3ClientOptions(clientOptions);
     }
 
+    /**
+     * <p>
+     * Sets the index consulted for the MD5 hash of files uploaded by this
+     * client, so that a file which hasn't changed since it was indexed isn't
+     * read an extra time to hash it.
+     * </p>
+     * @param fileHashIndex
+     *            The file hash index to use, or null to always hash files.
+     */
+    public void setFileHashIndex(FileHashIndex fileHashIndex) {
+        this.fileHashIndex = fileHashIndex;
+    }
+
     /* (non-Javadoc)
      * @see com.amazonaws.services.s3.AmazonS3#listObjects(java.lang.String)
      */
@@ -613,6 +658,29 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
         return invoke(request, new S3MetadataResponseHandler(), bucketName, key);
     }
 
+    /**
+     * Gets the metadata of an object like
+     * {@link #getObjectMetadata(GetObjectMetadataRequest)}, but without
+     * blocking; the callback is notified of the result. Only valid when
+     * {@link #isAsyncSupported()}.
+     */
+    void getObjectMetadata(GetObjectMetadataRequest getObjectMetadataRequest, RequestAbortHandle abortHandle,
+            ResponseCallback<ObjectMetadata> callback) {
+        assertParameterNotNull(getObjectMetadataRequest, "The GetObjectMetadataRequest parameter must be specified when requesting an object's metadata");
+
+        String bucketName = getObjectMetadataRequest.getBucketName();
+        String key = getObjectMetadataRequest.getKey();
+        String versionId = getObjectMetadataRequest.getVersionId();
+
+        assertParameterNotNull(bucketName, "The bucket name parameter must be specified when requesting an object's metadata");
+        assertParameterNotNull(key, "The key parameter must be specified when requesting an object's metadata");
+
+        Request<GetObjectMetadataRequest> request = createRequest(bucketName, key, getObjectMetadataRequest, HttpMethodName.HEAD);
+        if (versionId != null) request.addParameter("versionId", versionId);
+
+        invokeAsync(request, new S3MetadataResponseHandler(), bucketName, key, abortHandle, callback);
+    }
+
     /* (non-Javadoc)
      * @see com.amazonaws.services.s3.AmazonS3#getObject(java.lang.String, java.lang.String)
      */
@@ -664,6 +732,66 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
      */
     public S3Object getObject(GetObjectRequest getObjectRequest)
             throws SCSClientException, SCSServiceException {
+        Request<GetObjectRequest> request = createGetObjectRequest(getObjectRequest);
+
+        /*
+         * This is compatible with progress listener set by either the legacy
+         * method GetObjectRequest#setProgressListener or the new method
+         * GetObjectRequest#setGeneralProgressListener.
+         */
+        ProgressListener progressListener = getObjectRequest.getGeneralProgressListener();
+        ProgressListenerCallbackExecutor progressListenerCallbackExecutor = ProgressListenerCallbackExecutor
+                .wrapListener(progressListener);
+
+        try {
+            S3Object s3Object = invoke(request, new S3ObjectResponseHandler(), getObjectRequest.getBucketName(), getObjectRequest.getKey());
+            return prepareObjectContent(getObjectRequest, s3Object, progressListenerCallbackExecutor);
+        } catch (AmazonS3Exception ase) {
+            if (isConstraintNotMet(ase, progressListenerCallbackExecutor)) return null;
+            throw ase;
+        }
+    }
+
+    /**
+     * Gets an object like {@link #getObject(GetObjectRequest)}, but without
+     * blocking; the callback is notified of the object once its metadata has
+     * arrived, with its content left streaming. Only valid when
+     * {@link #isAsyncSupported()}.
+     */
+    void getObject(final GetObjectRequest getObjectRequest, RequestAbortHandle abortHandle,
+            final ResponseCallback<S3Object> callback) {
+        Request<GetObjectRequest> request = createGetObjectRequest(getObjectRequest);
+        final ProgressListenerCallbackExecutor progressListenerCallbackExecutor = ProgressListenerCallbackExecutor
+                .wrapListener(getObjectRequest.getGeneralProgressListener());
+
+        invokeAsync(request, new S3ObjectResponseHandler(), getObjectRequest.getBucketName(), getObjectRequest.getKey(),
+                abortHandle, new ResponseCallback<S3Object>() {
+            public void onResponse(S3Object s3Object) {
+                S3Object result;
+                try {
+                    result = prepareObjectContent(getObjectRequest, s3Object, progressListenerCallbackExecutor);
+                } catch (RuntimeException e) {
+                    callback.onError(e);
+                    return;
+                }
+                callback.onResponse(result);
+            }
+
+            public void onError(Exception exception) {
+                if (exception instanceof AmazonS3Exception
+                        && isConstraintNotMet((AmazonS3Exception)exception, progressListenerCallbackExecutor)) {
+                    callback.onResponse(null);
+                } else {
+                    callback.onError(exception);
+                }
+            }
+        });
+    }
+
+    /**
+     * Creates the HTTP request for a {@link GetObjectRequest}.
+     */
+    private Request<GetObjectRequest> createGetObjectRequest(GetObjectRequest getObjectRequest) {
         assertParameterNotNull(getObjectRequest,
                 "The GetObjectRequest parameter must be specified when requesting an object");
         assertParameterNotNull(getObjectRequest.getBucketName(),
@@ -693,76 +821,79 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
                 getObjectRequest.getMatchingETagConstraints());
         addStringListHeader(request, Headers.GET_OBJECT_IF_NONE_MATCH,
                 getObjectRequest.getNonmatchingETagConstraints());
+        return request;
+    }
 
+    /**
+     * Sets the bucket and key of an object returned for a
+     * {@link GetObjectRequest} and wraps its content to report progress and
+     * to validate its MD5 digest or length.
+     */
+    private S3Object prepareObjectContent(GetObjectRequest getObjectRequest, S3Object s3Object,
+            ProgressListenerCallbackExecutor progressListenerCallbackExecutor) {
         /*
-         * This is compatible with progress listener set by either the legacy
-         * method GetObjectRequest#setProgressListener or the new method
-         * GetObjectRequest#setGeneralProgressListener.
+         * TODO: For now, it's easiest to set there here in the client, but
+         *       we could push this back into the response handler with a
+         *       little more work.
          */
-        ProgressListener progressListener = getObjectRequest.getGeneralProgressListener();
-        ProgressListenerCallbackExecutor progressListenerCallbackExecutor = ProgressListenerCallbackExecutor
-                .wrapListener(progressListener);
+        s3Object.setBucketName(getObjectRequest.getBucketName());
+        s3Object.setKey(getObjectRequest.getKey());
 
-        try {
-            S3Object s3Object = invoke(request, new S3ObjectResponseHandler(), getObjectRequest.getBucketName(), getObjectRequest.getKey());
-
-            /*
-             * TODO: For now, it's easiest to set there here in the client, but
-             *       we could push this back into the response handler with a
-             *       little more work.
-             */
-            s3Object.setBucketName(getObjectRequest.getBucketName());
-            s3Object.setKey(getObjectRequest.getKey());
-
-            S3ObjectInputStream input = s3Object.getObjectContent();
-            if (progressListenerCallbackExecutor != null) {
-                ProgressReportingInputStream progressReportingInputStream = new ProgressReportingInputStream(input, progressListenerCallbackExecutor);
-                progressReportingInputStream.setFireCompletedEvent(true);
-                input = new S3ObjectInputStream(progressReportingInputStream, input.getHttpRequest());
-                fireProgressEvent(progressListenerCallbackExecutor, ProgressEvent.STARTED_EVENT_CODE);
-            }
+        S3ObjectInputStream input = s3Object.getObjectContent();
+        if (progressListenerCallbackExecutor != null) {
+            ProgressReportingInputStream progressReportingInputStream = new ProgressReportingInputStream(input, progressListenerCallbackExecutor);
+            progressReportingInputStream.setFireCompletedEvent(true);
+            input = new S3ObjectInputStream(progressReportingInputStream, input.getHttpRequest());
+            fireProgressEvent(progressListenerCallbackExecutor, ProgressEvent.STARTED_EVENT_CODE);
+        }
 
-            if (getObjectRequest.getRange() == null && System.getProperty("com.amazonaws.services.s3.disableGetObjectMD5Validation") == null) {
-                byte[] serverSideHash = null;
-                String etag = s3Object.getObjectMetadata().getETag();
-                if (etag != null && ServiceUtils.isMultipartUploadETag(etag) == false) {
-                    serverSideHash = BinaryUtils.fromHex(s3Object.getObjectMetadata().getETag());
-                    DigestValidationInputStream inputStreamWithMD5DigestValidation;
-                    try {
-                        MessageDigest digest = MessageDigest.getInstance("MD5");
-                        inputStreamWithMD5DigestValidation = new DigestValidationInputStream(input, digest, serverSideHash);
-                        input = new S3ObjectInputStream(inputStreamWithMD5DigestValidation, input.getHttpRequest());
-                    } catch (NoSuchAlgorithmException e) {
-                        log.warn("No MD5 digest algorithm available.  Unable to calculate "
-                                    + "checksum and verify data integrity.", e);
-                    }
+        if (getObjectRequest.getRange() == null && System.getProperty("com.amazonaws.services.s3.disableGetObjectMD5Validation") == null) {
+            byte[] serverSideHash = null;
+            String etag = s3Object.getObjectMetadata().getETag();
+            if (etag != null && ServiceUtils.isMultipartUploadETag(etag) == false) {
+                serverSideHash = BinaryUtils.fromHex(s3Object.getObjectMetadata().getETag());
+                DigestValidationInputStream inputStreamWithMD5DigestValidation;
+                try {
+                    MessageDigest digest = MessageDigest.getInstance("MD5");
+                    inputStreamWithMD5DigestValidation = new DigestValidationInputStream(input, digest, serverSideHash);
+                    input = new S3ObjectInputStream(inputStreamWithMD5DigestValidation, input.getHttpRequest());
+                } catch (NoSuchAlgorithmException e) {
+                    log.warn("No MD5 digest algorithm available.  Unable to calculate "
+                                + "checksum and verify data integrity.", e);
                 }
-            } else {
-                input = new S3ObjectInputStream(
-                            new ContentLengthValidationInputStream(input, s3Object.getObjectMetadata().getContentLength()),
-                            input.getHttpRequest());
             }
+        } else {
+            input = new S3ObjectInputStream(
+                        new ContentLengthValidationInputStream(input, s3Object.getObjectMetadata().getContentLength()),
+                        input.getHttpRequest());
+        }
 
-            s3Object.setObjectContent(input);
-
-            return s3Object;
-        } catch (AmazonS3Exception ase) {
-            /*
-             * If the request failed because one of the specified constraints
-             * was not met (ex: matching ETag, modified since date, etc.), then
-             * return null, so that users don't have to wrap their code in
-             * try/catch blocks and check for this status code if they want to
-             * use constraints.
-             */
-            if (ase.getStatusCode() == 412 || ase.getStatusCode() == 304) {
-                fireProgressEvent(progressListenerCallbackExecutor, ProgressEvent.CANCELED_EVENT_CODE);
-                return null;
-            }
+        s3Object.setObjectContent(input);
 
-            fireProgressEvent(progressListenerCallbackExecutor, ProgressEvent.FAILED_EVENT_CODE);
+        return s3Object;
+    }
 
-            throw ase;
+    /**
+     * Fires the progress event for a {@link GetObjectRequest} that failed
+     * with the given exception, and returns true if it failed only because
+     * one of its constraints was not met.
+     */
+    private boolean isConstraintNotMet(AmazonS3Exception ase,
+            ProgressListenerCallbackExecutor progressListenerCallbackExecutor) {
+        /*
+         * If the request failed because one of the specified constraints
+         * was not met (ex: matching ETag, modified since date, etc.), then
+         * return null, so that users don't have to wrap their code in
+         * try/catch blocks and check for this status code if they want to
+         * use constraints.
+         */
+        if (ase.getStatusCode() == 412 || ase.getStatusCode() == 304) {
+            fireProgressEvent(progressListenerCallbackExecutor, ProgressEvent.CANCELED_EVENT_CODE);
+            return true;
         }
+
+        fireProgressEvent(progressListenerCallbackExecutor, ProgressEvent.FAILED_EVENT_CODE);
+        return false;
     }
 
     /* (non-Javadoc)
@@ -853,7 +984,11 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
         return putObject(new PutObjectRequest(bucketName, key, input, metadata));
     }
     
-    private PutObjectResult putObjectRelax(PutObjectRelaxRequest putObjectRelaxRequest){
+    /* (non-Javadoc)
+     * @see com.sina.scs.SCS#putObjectRelax(com.sina.scs.model.PutObjectRelaxRequest)
+     */
+    public PutObjectResult putObjectRelax(PutObjectRelaxRequest putObjectRelaxRequest)
+            throws SCSClientException, SCSServiceException {
         assertParameterNotNull(putObjectRelaxRequest, "The putObjectRelaxRequest parameter must be specified when uploading with relax");
         
         String bucketName = putObjectRelaxRequest.getBucketName();
@@ -957,20 +1092,40 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
                 metadata.setContentType(Mimetypes.getInstance().getMimetype(file));
             }
 
-            FileInputStream fileInputStream = null;
-            try {
-                fileInputStream = new FileInputStream(file);
-                byte[] md5Hash = Md5Utils.computeMD5Hash(fileInputStream);
-                metadata.setContentMD5(BinaryUtils.toBase64(md5Hash));
-            } catch (Exception e) {
-                throw new SCSClientException(
-                        "Unable to calculate MD5 hash: " + e.getMessage(), e);
-            } finally {
-                try {fileInputStream.close();} catch (Exception e) {}
+            // Only hash the file up front if the MD5 hash hasn't already
+            // been set. Otherwise the MD5 digest calculating stream below
+            // hashes it as it is sent, and the hash is checked against the
+            // returned ETag.
+            if (metadata.getContentMD5() == null
+                    && (fileHashIndex != null || !clientOptions.isInlineFileMD5())) {
+                FileInputStream fileInputStream = null;
+                try {
+                    byte[] md5Hash;
+                    if (fileHashIndex != null) {
+                        md5Hash = fileHashIndex.getMD5(file);
+                    } else {
+                        fileInputStream = new FileInputStream(file);
+                        md5Hash = Md5Utils.computeMD5Hash(fileInputStream);
+                    }
+                    metadata.setContentMD5(BinaryUtils.toBase64(md5Hash));
+                } catch (Exception e) {
+                    throw new SCSClientException(
+                            "Unable to calculate MD5 hash: " + e.getMessage(), e);
+                } finally {
+                    try {fileInputStream.close();} catch (Exception e) {}
+                }
             }
 
             try {
-                input = new RepeatableFileInputStream(file);
+                if (clientConfiguration.useZeroCopyUpload() && metadata.getContentMD5() != null) {
+                    // Nothing needs to see the bytes on their way out, so the
+                    // file can go straight to the socket
+                    FileRegionInputStream fileRegion = new FileRegionInputStream(file, 0, file.length());
+                    fileRegion.setProgressListenerCallbackExecutor(progressListenerCallbackExecutor);
+                    input = fileRegion;
+                } else {
+                    input = new RepeatableFileInputStream(file);
+                }
             } catch (FileNotFoundException fnfe) {
                 throw new SCSClientException("Unable to find file to upload", fnfe);
             }
@@ -1010,7 +1165,9 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
         }
 
         if (progressListenerCallbackExecutor != null) {
-            input = new ProgressReportingInputStream(input, progressListenerCallbackExecutor);
+            if (!(input instanceof FileRegionInputStream)) {
+                input = new ProgressReportingInputStream(input, progressListenerCallbackExecutor);
+            }
             fireProgressEvent(progressListenerCallbackExecutor, ProgressEvent.STARTED_EVENT_CODE);
         }
 
@@ -1258,8 +1415,49 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
         presignRequest(request, generatePresignedUrlRequest.getMethod(),
                 bucketName, key, generatePresignedUrlRequest.getExpiration(), null);
 
+        // The request's own parameters come first, in name order, followed
+        // by the signing parameters in the order Presigner uses
+        List<String> parameterOrder = new ArrayList<String>(new TreeSet<String>(request.getParameters().keySet()));
+        parameterOrder.removeAll(Presigner.QUERY_PARAMETER_ORDER);
+        parameterOrder.addAll(Presigner.QUERY_PARAMETER_ORDER);
+
         // Remove the leading slash (if any) in the resource-path
-        return ServiceUtils.convertRequestToUrl(request, true);
+        return ServiceUtils.convertRequestToUrl(request, true, parameterOrder);
+    }
+
+    /**
+     * Returns a presigner which generates the same URLs as
+     * {@link #generatePresignedUrl(GeneratePresignedUrlRequest)} at a fraction
+     * of the cost, for applications pre-signing URLs in bulk. The presigner
+     * uses this client's current credentials, endpoint and addressing style.
+     *
+     * @return A new presigner.
+     */
+    public Presigner newPresigner() {
+        boolean virtualHosting = !clientOptions.isPathStyleAccess() && !validIP(endpoint.getHost());
+        return new Presigner(this, awsCredentialsProvider.getCredentials(), endpoint, virtualHosting);
+    }
+
+    /* (non-Javadoc)
+     * @see com.amazonaws.services.s3.AmazonS3#abortMultipartUpload(com.amazonaws.services.s3.model.AbortMultipartUploadRequest)
+     */
+    public void abortMultipartUpload(AbortMultipartUploadRequest abortMultipartUploadRequest)
+            throws SCSClientException, SCSServiceException {
+        assertParameterNotNull(abortMultipartUploadRequest,
+            "The request parameter must be specified when aborting a multipart upload");
+        assertParameterNotNull(abortMultipartUploadRequest.getBucketName(),
+            "The bucket name parameter must be specified when aborting a multipart upload");
+        assertParameterNotNull(abortMultipartUploadRequest.getKey(),
+            "The key parameter must be specified when aborting a multipart upload");
+        assertParameterNotNull(abortMultipartUploadRequest.getUploadId(),
+            "The upload ID parameter must be specified when aborting a multipart upload");
+
+        String bucketName = abortMultipartUploadRequest.getBucketName();
+        String key = abortMultipartUploadRequest.getKey();
+        Request<AbortMultipartUploadRequest> request = createRequest(bucketName, key, abortMultipartUploadRequest, HttpMethodName.DELETE);
+        request.addParameter("uploadId", abortMultipartUploadRequest.getUploadId());
+
+        invoke(request, voidResponseHandler, bucketName, key);
     }
 
     /* (non-Javadoc)
@@ -1413,8 +1611,13 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
             inputStream = uploadPartRequest.getInputStream();
         } else if (uploadPartRequest.getFile() != null) {
             try {
-                inputStream = new InputSubstream(new RepeatableFileInputStream(uploadPartRequest.getFile()),
-                        uploadPartRequest.getFileOffset(), partSize, true);
+                if (clientConfiguration.useZeroCopyUpload() && uploadPartRequest.getMd5Digest() != null) {
+                    inputStream = new FileRegionInputStream(uploadPartRequest.getFile(),
+                            uploadPartRequest.getFileOffset(), partSize);
+                } else {
+                    inputStream = new InputSubstream(new RepeatableFileInputStream(uploadPartRequest.getFile()),
+                            uploadPartRequest.getFileOffset(), partSize, true);
+                }
             } catch (FileNotFoundException e) {
                 throw new IllegalArgumentException("The specified file doesn't exist", e);
             }
@@ -1449,7 +1652,11 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
                 .wrapListener(progressListener);
 
         if (progressListenerCallbackExecutor != null) {
-            inputStream = new ProgressReportingInputStream(inputStream, progressListenerCallbackExecutor);
+            if (inputStream instanceof FileRegionInputStream) {
+                ((FileRegionInputStream)inputStream).setProgressListenerCallbackExecutor(progressListenerCallbackExecutor);
+            } else {
+                inputStream = new ProgressReportingInputStream(inputStream, progressListenerCallbackExecutor);
+            }
             fireProgressEvent(progressListenerCallbackExecutor, ProgressEvent.PART_STARTED_EVENT_CODE);
         }
 
@@ -2051,50 +2258,79 @@ public class SCSClient extends SCSWebServiceClient implements SCS {
     private <X, Y extends SCSWebServiceRequest> X invoke(Request<Y> request,
             HttpResponseHandler<SCSWebServiceResponse<X>> responseHandler,
             String bucket, String key) {
-        SCSWebServiceRequest originalRequest = request.getOriginalRequest();
-        ExecutionContext executionContext = createExecutionContext(originalRequest);
-//        AWSRequestMetrics awsRequestMetrics = executionContext.getAwsRequestMetrics();
-//        // Binds the request metrics to the current request.
-//        request.setAWSRequestMetrics(awsRequestMetrics);
-        // Having the ClientExecuteTime defined here is not ideal (for the
-        // timing measurement should start as close to the top of the call
-        // stack of the service client method as possible)
-        // but definitely a safe compromise for S3 at least for now.
-        // We can incrementally make it more elaborate should the need arise
-        // for individual method.
-//        awsRequestMetrics.startEvent(Field.ClientExecuteTime);
-        Response<X> response = null;
-        try {
-            for (Entry<String, String> entry : request.getOriginalRequest()
-                    .copyPrivateRequestParameters().entrySet()) {
-                request.addParameter(entry.getKey(), entry.getValue());
-            }
-            
-            request.addParameter("formatter", "json");
-            
-            request.setTimeOffset(timeOffset);
-            /*
-             * The string we sign needs to include the exact headers that we
-             * send with the request, but the client runtime layer adds the
-             * Content-Type header before the request is sent if one isn't set,
-             * so we have to set something here otherwise the request will fail.
-             */
-            if (request.getHeaders().get("Content-Type") == null) {
-                request.addHeader("Content-Type",//"application/json; charset=utf-8");
-                        "application/x-www-form-urlencoded; charset=utf-8");
+        ExecutionContext executionContext = prepareInvocation(request, bucket, key);
+        Response<X> response = client.execute(request, responseHandler,
+                errorResponseHandler, executionContext);
+        return response.getAwsResponse();
+    }
+
+    /**
+     * Executes the request like {@link #invoke}, but without blocking; the
+     * callback is notified of the result. Aborting the given handle aborts
+     * the request.
+     */
+    private <X, Y extends SCSWebServiceRequest> void invokeAsync(Request<Y> request,
+            HttpResponseHandler<SCSWebServiceResponse<X>> responseHandler,
+            String bucket, String key, RequestAbortHandle abortHandle,
+            final ResponseCallback<X> callback) {
+        ExecutionContext executionContext = prepareInvocation(request, bucket, key);
+        executionContext.setAbortHandle(abortHandle);
+        client.executeAsync(request, responseHandler, errorResponseHandler, executionContext,
+                new ResponseCallback<Response<X>>() {
+            public void onResponse(Response<X> response) {
+                callback.onResponse(response.getAwsResponse());
             }
-            AWSCredentials credentials = awsCredentialsProvider
-                    .getCredentials();
-            if (originalRequest.getRequestCredentials() != null) {
-                credentials = originalRequest.getRequestCredentials();
+
+            public void onError(Exception exception) {
+                callback.onError(exception);
             }
-            executionContext.setSigner(createSigner(request, bucket, key));
-            executionContext.setCredentials(credentials);
-            response = client.execute(request, responseHandler,
-                    errorResponseHandler, executionContext);
-            return response.getAwsResponse();
-         } finally {
-//            endClientExecution(awsRequestMetrics, request, response);
+        });
+    }
+
+    /**
+     * Returns true if the HTTP transport can send requests without blocking,
+     * which the non-blocking <code>getObject</code> and
+     * <code>getObjectMetadata</code> variants need.
+     */
+    boolean isAsyncSupported() {
+        return client.isAsyncSupported();
+    }
+
+    /**
+     * Adds the parameters and headers every request needs and returns the
+     * execution context to sign and send it with.
+     */
+    private ExecutionContext prepareInvocation(Request<?> request, String bucket, String key) {
+        SCSWebServiceRequest originalRequest = request.getOriginalRequest();
+        ExecutionContext executionContext = createExecutionContext(originalRequest);
+        if (executionContext.getRequestMetrics() instanceof RequestMetricsFullSupport) {
+            ((RequestMetricsFullSupport)executionContext.getRequestMetrics()).setBucketName(bucket);
         }
-   }
+        for (Entry<String, String> entry : originalRequest
+                .copyPrivateRequestParameters().entrySet()) {
+            request.addParameter(entry.getKey(), entry.getValue());
+        }
+
+        request.addParameter("formatter", "json");
+
+        request.setTimeOffset(timeOffset);
+        /*
+         * The string we sign needs to include the exact headers that we
+         * send with the request, but the client runtime layer adds the
+         * Content-Type header before the request is sent if one isn't set,
+         * so we have to set something here otherwise the request will fail.
+         */
+        if (request.getHeaders().get("Content-Type") == null) {
+            request.addHeader("Content-Type",//"application/json; charset=utf-8");
+                    "application/x-www-form-urlencoded; charset=utf-8");
+        }
+        AWSCredentials credentials = awsCredentialsProvider
+                .getCredentials();
+        if (originalRequest.getRequestCredentials() != null) {
+            credentials = originalRequest.getRequestCredentials();
+        }
+        executionContext.setSigner(createSigner(request, bucket, key));
+        executionContext.setCredentials(credentials);
+        return executionContext;
+    }
 }
\ No newline at end of file
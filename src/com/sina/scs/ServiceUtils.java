@@ -17,20 +17,27 @@
  */
 package com.sina.scs;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.io.UnsupportedEncodingException;
+import java.lang.ref.SoftReference;
 import java.net.MalformedURLException;
 import java.net.SocketException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
 import java.text.ParseException;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Properties;
 
 import javax.net.ssl.SSLProtocolException;
 
@@ -39,11 +46,14 @@ import org.apache.commons.logging.LogFactory;
 
 import com.sina.Request;
 import com.sina.SCSClientException;
+import com.sina.event.ProgressEvent;
+import com.sina.event.ProgressListener;
+import com.sina.scs.model.GetObjectRequest;
 import com.sina.scs.model.S3Object;
 import com.sina.util.BinaryUtils;
+import com.sina.util.CountingInputStream;
 import com.sina.util.DateUtils;
 import com.sina.util.HttpUtils;
-import com.sina.util.Md5Utils;
 
 
 /**
@@ -158,6 +168,29 @@ public class ServiceUtils {
      *             If the request cannot be converted to a well formed URL.
      */
     public static URL convertRequestToUrl(Request<?> request, boolean removeLeadingSlashInResourcePath) {
+        return convertRequestToUrl(request, removeLeadingSlashInResourcePath, request.getParameters().keySet());
+    }
+
+    /**
+     * Converts the specified request object into a URL, with the request
+     * parameters in a given order.
+     *
+     * @param request
+     *            The request to convert into a URL.
+     * @param removeLeadingSlashInResourcePath
+     *            Whether the leading slash in resource-path should be removed
+     *            before appending to the endpoint.
+     * @param parameterOrder
+     *            The names of the request parameters, in the order they
+     *            appear in the query string. Names which aren't parameters
+     *            of the request are skipped.
+     * @return A new URL representing the specified request.
+     *
+     * @throws SCSClientException
+     *             If the request cannot be converted to a well formed URL.
+     */
+    public static URL convertRequestToUrl(Request<?> request, boolean removeLeadingSlashInResourcePath,
+            Collection<String> parameterOrder) {
         String resourcePath = HttpUtils.urlEncode(request.getResourcePath(), true);
         
         // Removed the padding "/" that was already added into the request's resource path.
@@ -175,7 +208,8 @@ public class ServiceUtils {
         String urlString =  request.getEndpoint() + urlPath;
 
         boolean firstParam = true;
-        for (String param : request.getParameters().keySet()) {
+        for (String param : parameterOrder) {
+            if (!request.getParameters().containsKey(param)) continue;
             if (firstParam) {
                 urlString += "?";
                 firstParam = false;
@@ -219,6 +253,16 @@ public class ServiceUtils {
         return result;
     }
 
+    /** Default size of the buffer objects are copied to disk through. */
+    public static final int DEFAULT_DOWNLOAD_BUFFER_SIZE = 128 * 1024;
+
+    /**
+     * The buffer each thread last downloaded through, kept so that the
+     * threads of a transfer manager don't allocate one for every object.
+     */
+    private static final ThreadLocal<SoftReference<byte[]>> downloadBuffer =
+            new ThreadLocal<SoftReference<byte[]>>();
+
     /**
      * Downloads an S3Object, as returned from
      * {@link SCSClient#getObject(com.amazonaws.services.s3.model.GetObjectRequest)},
@@ -234,6 +278,31 @@ public class ServiceUtils {
      *
      */
     public static void downloadObjectToFile(S3Object s3Object, File destinationFile, boolean performIntegrityCheck) {
+        downloadObjectToFile(s3Object, destinationFile, performIntegrityCheck, DEFAULT_DOWNLOAD_BUFFER_SIZE);
+    }
+
+    /**
+     * Downloads an S3Object, as returned from
+     * {@link SCSClient#getObject(com.amazonaws.services.s3.model.GetObjectRequest)},
+     * to the specified file.
+     * <p>
+     * The file is first extended to the object's Content-Length. The object's
+     * data is then read into a buffer of the given size, reused by the calling
+     * thread across downloads, and each full buffer is written with a single
+     * positional {@link FileChannel} write.
+     *
+     * @param s3Object
+     *            The S3Object containing a reference to an InputStream
+     *            containing the object's data.
+     * @param destinationFile
+     *            The file to store the object's data in.
+     * @param performIntegrityCheck
+     *            Boolean valuable to indicate whether do the integrity check or not
+     * @param bufferSize
+     *            The size, in bytes, of the buffer the data is copied through.
+     */
+    public static void downloadObjectToFile(S3Object s3Object, File destinationFile, boolean performIntegrityCheck,
+            int bufferSize) {
 
         // attempt to create the parent if it doesn't exist
         File parentDirectory = destinationFile.getParentFile();
@@ -241,14 +310,45 @@ public class ServiceUtils {
             parentDirectory.mkdirs();
         }
 
-        OutputStream outputStream = null;
+        // Hash the contents as they are written, rather than reading the
+        // file back afterwards. Multipart Uploads don't have an MD5
+        // calculated on the service side.
+        MessageDigest digest = null;
+        String eTag = s3Object.getObjectMetadata().getETag();
+        if (performIntegrityCheck && eTag != null && ServiceUtils.isMultipartUploadETag(eTag) == false) {
+            try {
+                digest = MessageDigest.getInstance("MD5");
+            } catch (Exception e) {
+                log.warn("Unable to calculate MD5 hash to validate download: " + e.getMessage(), e);
+            }
+        }
+
+        RandomAccessFile randomAccessFile = null;
         try {
-            outputStream = new BufferedOutputStream(new FileOutputStream(destinationFile));
-            byte[] buffer = new byte[1024*10];
+            randomAccessFile = new RandomAccessFile(destinationFile, "rw");
+            FileChannel channel = randomAccessFile.getChannel();
+
+            // Reserve the whole file before writing to it, rather than
+            // growing it one buffer at a time
+            long contentLength = s3Object.getObjectMetadata().getContentLength();
+            randomAccessFile.setLength(Math.max(contentLength, 0));
+
+            InputStream input = s3Object.getObjectContent();
+            byte[] buffer = getDownloadBuffer(bufferSize);
+            ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+            long position = 0;
             int bytesRead;
-            while ((bytesRead = s3Object.getObjectContent().read(buffer)) > -1) {
-                outputStream.write(buffer, 0, bytesRead);
+            while ((bytesRead = fillBuffer(input, buffer)) > 0) {
+                byteBuffer.clear();
+                byteBuffer.limit(bytesRead);
+                while (byteBuffer.hasRemaining()) {
+                    position += channel.write(byteBuffer, position);
+                }
+                if (digest != null) digest.update(buffer, 0, bytesRead);
             }
+
+            // Trim the file if the object was shorter than announced
+            if (position != contentLength) randomAccessFile.setLength(position);
         } catch (IOException e) {
             try {
                 s3Object.getObjectContent().abort();
@@ -258,20 +358,21 @@ public class ServiceUtils {
             throw new SCSClientException(
                     "Unable to store object contents to disk: " + e.getMessage(), e);
         } finally {
-            try {outputStream.close();} catch (Exception e) {}
+            if (randomAccessFile != null) {
+                try {randomAccessFile.close();} catch (Exception e) {}
+            }
             try {s3Object.getObjectContent().close();} catch (Exception e) {}
         }
 
         byte[] clientSideHash = null;
         byte[] serverSideHash = null;
-        try {
-            // Multipart Uploads don't have an MD5 calculated on the service side
-            if (ServiceUtils.isMultipartUploadETag(s3Object.getObjectMetadata().getETag()) == false) {
-                clientSideHash = Md5Utils.computeMD5Hash(new FileInputStream(destinationFile));
-                serverSideHash = BinaryUtils.fromHex(s3Object.getObjectMetadata().getETag());
+        if (digest != null) {
+            try {
+                clientSideHash = digest.digest();
+                serverSideHash = BinaryUtils.fromHex(eTag);
+            } catch (Exception e) {
+                log.warn("Unable to calculate MD5 hash to validate download: " + e.getMessage(), e);
             }
-        } catch (Exception e) {
-            log.warn("Unable to calculate MD5 hash to validate download: " + e.getMessage(), e);
         }
 
         if (performIntegrityCheck && clientSideHash != null && serverSideHash != null && !Arrays.equals(clientSideHash, serverSideHash)) {
@@ -281,6 +382,42 @@ public class ServiceUtils {
         }
     }
 
+    /**
+     * Returns the calling thread's download buffer, allocating a new one if
+     * the thread has none of the requested size. Every download to a file,
+     * whether single part, resumable or by ranges, copies through this
+     * buffer, so a thread holds at most one download buffer at a time.
+     *
+     * @param bufferSize
+     *            The size, in bytes, of the buffer.
+     *
+     * @return The calling thread's download buffer. It must not be used once
+     *         the thread starts another download.
+     */
+    public static byte[] getDownloadBuffer(int bufferSize) {
+        SoftReference<byte[]> reference = downloadBuffer.get();
+        byte[] buffer = (reference == null) ? null : reference.get();
+        if (buffer == null || buffer.length != bufferSize) {
+            buffer = new byte[bufferSize];
+            downloadBuffer.set(new SoftReference<byte[]>(buffer));
+        }
+        return buffer;
+    }
+
+    /**
+     * Reads from the input stream until the buffer is full or the stream ends,
+     * and returns the number of bytes read.
+     */
+    private static int fillBuffer(InputStream input, byte[] buffer) throws IOException {
+        int filled = 0;
+        while (filled < buffer.length) {
+            int bytesRead = input.read(buffer, filled, buffer.length - filled);
+            if (bytesRead == -1) break;
+            filled += bytesRead;
+        }
+        return filled;
+    }
+
     /**
      * Interface for the task of downloading object from S3 to a specific file,
      * enabling one-time retry mechanism after integrity check failure
@@ -318,6 +455,25 @@ public class ServiceUtils {
      * 			get access to all the visible variables at the calling site of this method.
      */
     public static S3Object retryableDownloadS3ObjectToFile (File file, RetryableS3DownloadTask retryableS3DownloadTask) {
+        return retryableDownloadS3ObjectToFile(file, retryableS3DownloadTask, DEFAULT_DOWNLOAD_BUFFER_SIZE);
+    }
+
+    /**
+     * Gets an object stored in S3 and downloads it into the specified file.
+     * This method includes the one-time retry mechanism after integrity check failure
+     * on the downloaded file. It will also return immediately after getting null valued
+     * S3Object (when getObject request does not meet the specified constraints).
+     *
+     * @param file
+     * 			The file to store the object's data in.
+     * @param safeS3DownloadTask
+     * 			The implementation of SafeS3DownloadTask interface which allows user to
+     * 			get access to all the visible variables at the calling site of this method.
+     * @param bufferSize
+     * 			The size, in bytes, of the buffer the object is copied to disk through.
+     */
+    public static S3Object retryableDownloadS3ObjectToFile (File file, RetryableS3DownloadTask retryableS3DownloadTask,
+            int bufferSize) {
         boolean hasRetried = false;
         boolean needRetry;
         S3Object s3Object;
@@ -328,7 +484,7 @@ public class ServiceUtils {
                 return null;
 
             try {
-                ServiceUtils.downloadObjectToFile(s3Object, file, retryableS3DownloadTask.needIntegrityCheck());
+                ServiceUtils.downloadObjectToFile(s3Object, file, retryableS3DownloadTask.needIntegrityCheck(), bufferSize);
             } catch (SCSClientException ace) {
                 // Determine whether an immediate retry is needed according to the captured AmazonClientException.
                 // (There are three cases when downloadObjectToFile() throws AmazonClientException:
@@ -353,4 +509,384 @@ public class ServiceUtils {
         } while ( needRetry );
         return s3Object;
     }
+
+    /** Suffix of the partial file a resumable download writes to. */
+    public static final String PARTIAL_DOWNLOAD_SUFFIX = ".part";
+
+    /** Suffix, appended to the partial file name, of its sidecar info file. */
+    private static final String PARTIAL_DOWNLOAD_INFO_SUFFIX = ".info";
+
+    /** Number of bytes written between flushes of a resumable download to disk. */
+    private static final long RESUMABLE_DOWNLOAD_SYNC_INTERVAL = 8 * Constants.MB;
+
+    /** Maximum number of times a failed resumable download is resumed within one call. */
+    private static final int MAX_DOWNLOAD_RESUMES = 3;
+
+    /**
+     * Interface for the task of fetching an object, or the remaining range of
+     * an object, for a resumable download.
+     */
+    public interface ResumableS3DownloadTask {
+        /**
+         * User defines how to get the S3Object from S3 for the specified
+         * request, which may carry a byte range and an ETag constraint when
+         * the download is being resumed. Such a range always runs to the
+         * object's last byte.
+         *
+         * @return
+         * 		The S3Object containing a reference to an InputStream
+         *    	containing the object's data, or null if the ETag constraint
+         *    	wasn't met.
+         */
+        public S3Object getS3ObjectStream (GetObjectRequest getObjectRequest);
+    }
+
+    /**
+     * Gets an object stored in S3 and downloads it into the specified file,
+     * resuming from a partial download left by an earlier attempt.
+     * <p>
+     * Data is written to a sidecar <code>.part</code> file, together with a
+     * small info file recording the object's ETag, length and the last offset
+     * flushed to disk. If the download fails, or a partial file from an
+     * earlier call exists, the download continues with a range request from
+     * that offset, constrained to the recorded ETag so that an object which
+     * has changed in the meantime is downloaded again from the start. The
+     * partial file is renamed to the destination file only after the whole
+     * object has been received and its MD5 matches the ETag.
+     *
+     * @param file
+     * 			The file to store the object's data in.
+     * @param getObjectRequest
+     * 			The request for the whole object to download.
+     * @param resumableS3DownloadTask
+     * 			The implementation of ResumableS3DownloadTask used to fetch the
+     * 			object or its remaining range.
+     *
+     * @return The downloaded S3Object, or null if getObjectRequest's
+     *         constraints weren't met.
+     */
+    public static S3Object resumableDownloadS3ObjectToFile(File file, GetObjectRequest getObjectRequest,
+            ResumableS3DownloadTask resumableS3DownloadTask) {
+        return resumableDownloadS3ObjectToFile(file, getObjectRequest, resumableS3DownloadTask, DEFAULT_DOWNLOAD_BUFFER_SIZE);
+    }
+
+    /**
+     * Gets an object stored in S3 and downloads it into the specified file,
+     * resuming from a partial download left by an earlier attempt.
+     *
+     * @param file
+     * 			The file to store the object's data in.
+     * @param getObjectRequest
+     * 			The request for the whole object to download.
+     * @param resumableS3DownloadTask
+     * 			The implementation of ResumableS3DownloadTask used to fetch the
+     * 			object or its remaining range.
+     * @param bufferSize
+     * 			The size, in bytes, of the buffer the object is copied to disk through.
+     *
+     * @return The downloaded S3Object, or null if getObjectRequest's
+     *         constraints weren't met.
+     *
+     * @see #resumableDownloadS3ObjectToFile(File, GetObjectRequest, ResumableS3DownloadTask)
+     */
+    public static S3Object resumableDownloadS3ObjectToFile(File file, GetObjectRequest getObjectRequest,
+            ResumableS3DownloadTask resumableS3DownloadTask, int bufferSize) {
+        File partFile = new File(file.getPath() + PARTIAL_DOWNLOAD_SUFFIX);
+        File infoFile = new File(partFile.getPath() + PARTIAL_DOWNLOAD_INFO_SUFFIX);
+
+        File parentDirectory = file.getParentFile();
+        if ( parentDirectory != null && !parentDirectory.exists() ) {
+            parentDirectory.mkdirs();
+        }
+
+        int resumes = 0;
+        long progress = 0;
+        while (true) {
+            PartialDownload partial = PartialDownload.load(partFile, infoFile);
+            partial.progress = progress;
+            try {
+                S3Object s3Object = downloadRemainingObjectToPartFile(getObjectRequest, partial, resumableS3DownloadTask, bufferSize);
+                if (s3Object == null) return null;
+
+                // File.renameTo won't replace an existing file on all platforms
+                if (!partFile.renameTo(file)) {
+                    file.delete();
+                    if (!partFile.renameTo(file)) {
+                        throw new SCSClientException("Unable to rename " + partFile.getAbsolutePath()
+                                + " to " + file.getAbsolutePath());
+                    }
+                }
+                infoFile.delete();
+                return s3Object;
+            } catch (SCSClientException ace) {
+                progress = partial.progress;
+                if (Thread.currentThread().isInterrupted() || partial.length < 0 || ++resumes > MAX_DOWNLOAD_RESUMES) {
+                    throw ace;
+                }
+                log.info("Resuming the download of object " + getObjectRequest.getKey() + " (bucket "
+                        + getObjectRequest.getBucketName() + ") from byte " + partial.offset, ace);
+            }
+        }
+    }
+
+    /**
+     * Downloads the part of the object not yet in the partial file, verifies
+     * the complete partial file and returns the object, or returns null if the
+     * request's own constraints weren't met.
+     */
+    private static S3Object downloadRemainingObjectToPartFile(GetObjectRequest getObjectRequest,
+            PartialDownload partial, ResumableS3DownloadTask task, int bufferSize) {
+        S3Object s3Object = null;
+        if (partial.isResumable()) {
+            // Re-fetch at least the last byte, so a finished partial file is
+            // still checked against the current version of the object.
+            long offset = Math.min(partial.offset, partial.length - 1);
+            GetObjectRequest rangeRequest = copyGetObjectRequest(getObjectRequest)
+                .withRange(offset, partial.length - 1)
+                .withMatchingETagConstraint(partial.eTag);
+            s3Object = task.getS3ObjectStream(rangeRequest);
+            if (s3Object != null) {
+                partial.offset = offset;
+                reportProgress(getObjectRequest, partial, offset);
+            } else {
+                log.info("Object " + getObjectRequest.getKey() + " changed since it was partially downloaded;"
+                        + " downloading it again from the start");
+            }
+        }
+
+        if (s3Object == null) {
+            s3Object = task.getS3ObjectStream(getObjectRequest);
+            if (s3Object == null) return null;
+            partial.start(s3Object.getObjectMetadata().getETag(), s3Object.getObjectMetadata().getContentLength());
+            reportProgress(getObjectRequest, partial, 0);
+        }
+
+        // The part file is always hashed, including any bytes kept from an
+        // earlier attempt, so a resumed download is verified as a whole
+        MessageDigest digest = null;
+        if (partial.eTag != null && !isMultipartUploadETag(partial.eTag)) {
+            try {
+                digest = MessageDigest.getInstance("MD5");
+            } catch (Exception e) {
+                log.warn("No MD5 digest algorithm available.  Unable to calculate "
+                        + "checksum and verify data integrity.", e);
+            }
+        }
+
+        // The object's content stream reports the bytes read from it itself
+        CountingInputStream input = new CountingInputStream(s3Object.getObjectContent());
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(partial.partFile, "rw");
+            randomAccessFile.setLength(partial.offset);
+            FileChannel channel = randomAccessFile.getChannel();
+            byte[] buffer = getDownloadBuffer(bufferSize);
+            ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+            if (digest != null) updateDigest(digest, channel, partial.offset, byteBuffer);
+
+            long position = partial.offset;
+            int bytesRead;
+            while ((bytesRead = fillBuffer(input, buffer)) > 0) {
+                byteBuffer.clear();
+                byteBuffer.limit(bytesRead);
+                while (byteBuffer.hasRemaining()) {
+                    position += channel.write(byteBuffer, position);
+                }
+                if (digest != null) digest.update(buffer, 0, bytesRead);
+
+                // Only offsets flushed to disk are recorded as resumable
+                if (position - partial.offset >= RESUMABLE_DOWNLOAD_SYNC_INTERVAL) {
+                    channel.force(false);
+                    partial.offset = position;
+                    partial.save();
+                }
+            }
+            channel.force(false);
+            partial.offset = position;
+            partial.save();
+        } catch (IOException e) {
+            try {
+                s3Object.getObjectContent().abort();
+            } catch ( IOException abortException ) {
+                log.warn("Couldn't abort stream", abortException);
+            }
+            throw new SCSClientException(
+                    "Unable to store object contents to disk: " + e.getMessage(), e);
+        } finally {
+            if (randomAccessFile != null) {
+                try {randomAccessFile.close();} catch (Exception e) {}
+            }
+            try {s3Object.getObjectContent().close();} catch (Exception e) {}
+            partial.progress += input.getByteCount();
+        }
+
+        if (partial.offset != partial.length) {
+            throw new SCSClientException("Unable to download object " + getObjectRequest.getKey()
+                    + ": received " + partial.offset + " of " + partial.length + " bytes");
+        }
+
+        if (digest != null && !Arrays.equals(digest.digest(), BinaryUtils.fromHex(removeQuotes(partial.eTag)))) {
+            partial.discard();
+            throw new SCSClientException("Unable to verify integrity of data download.  " +
+                    "Client calculated content hash didn't match hash calculated by Amazon S3.  " +
+                    "The partial download has been discarded.");
+        }
+
+        s3Object.getObjectMetadata().setContentLength(partial.length);
+        return s3Object;
+    }
+
+    /**
+     * Brings the progress reported for the partial file to the specified
+     * offset: a partial file left by an earlier call is reported once, and
+     * bytes that are downloaded again after a resume or a restart are taken
+     * back first, so they aren't counted twice.
+     */
+    private static void reportProgress(GetObjectRequest getObjectRequest, PartialDownload partial, long offset) {
+        ProgressListener listener = getObjectRequest.getGeneralProgressListener();
+        if (listener != null && offset != partial.progress) {
+            ProgressEvent event = new ProgressEvent(offset - partial.progress);
+            if (offset < partial.progress) event.setEventCode(ProgressEvent.RESET_EVENT_CODE);
+            listener.progressChanged(event);
+        }
+        partial.progress = offset;
+    }
+
+    /**
+     * Feeds the first <code>length</code> bytes of the channel to the digest,
+     * reading them through the given array-backed buffer.
+     */
+    private static void updateDigest(MessageDigest digest, FileChannel channel, long length, ByteBuffer buffer)
+            throws IOException {
+        long position = 0;
+        while (position < length) {
+            buffer.clear();
+            if (length - position < buffer.capacity()) buffer.limit((int)(length - position));
+            int bytesRead = channel.read(buffer, position);
+            if (bytesRead < 0) throw new IOException("Partial download is shorter than recorded");
+            digest.update(buffer.array(), 0, bytesRead);
+            position += bytesRead;
+        }
+    }
+
+    /**
+     * Returns a copy of the specified request, for the same object version and
+     * with the same progress listener and client markers, without its range
+     * and ETag constraints.
+     */
+    private static GetObjectRequest copyGetObjectRequest(GetObjectRequest getObjectRequest) {
+        GetObjectRequest copy = new GetObjectRequest(getObjectRequest.getBucketName(),
+                getObjectRequest.getKey(), getObjectRequest.getVersionId());
+        copy.setResponseHeaders(getObjectRequest.getResponseHeaders());
+        copy.setGeneralProgressListener(getObjectRequest.getGeneralProgressListener());
+        copy.getRequestClientOptions().putClientMarker(com.sina.RequestClientOptions.Marker.USER_AGENT,
+                getObjectRequest.getRequestClientOptions().getClientMarker(com.sina.RequestClientOptions.Marker.USER_AGENT));
+        return copy;
+    }
+
+    /**
+     * State of a resumable download: the partial file, and the ETag, length
+     * and durable offset recorded in its sidecar info file.
+     */
+    private static final class PartialDownload {
+        private static final String ETAG = "eTag";
+        private static final String LENGTH = "length";
+        private static final String OFFSET = "offset";
+
+        private final File partFile;
+        private final File infoFile;
+        private String eTag;
+        private long length = -1;
+        private long offset = 0;
+        /** Bytes of the partial file reported as progress; not recorded */
+        private long progress = 0;
+
+        private PartialDownload(File partFile, File infoFile) {
+            this.partFile = partFile;
+            this.infoFile = infoFile;
+        }
+
+        /**
+         * Loads the recorded state, trusting no more of the partial file than
+         * the offset last recorded as flushed to disk.
+         */
+        static PartialDownload load(File partFile, File infoFile) {
+            PartialDownload partial = new PartialDownload(partFile, infoFile);
+            if (!partFile.isFile() || !infoFile.isFile()) return partial;
+
+            Properties properties = new Properties();
+            InputStream input = null;
+            try {
+                input = new FileInputStream(infoFile);
+                properties.load(input);
+                partial.eTag = properties.getProperty(ETAG);
+                partial.length = Long.parseLong(properties.getProperty(LENGTH));
+                partial.offset = Math.min(Long.parseLong(properties.getProperty(OFFSET)), partFile.length());
+            } catch (Exception e) {
+                log.warn("Ignoring unreadable partial download info " + infoFile.getAbsolutePath() + ": " + e.getMessage());
+                partial.eTag = null;
+                partial.length = -1;
+                partial.offset = 0;
+            } finally {
+                if (input != null) {
+                    try {input.close();} catch (Exception e) {}
+                }
+            }
+            return partial;
+        }
+
+        boolean isResumable() {
+            return eTag != null && length > 0 && offset > 0;
+        }
+
+        /**
+         * Starts the partial download over for the specified object version.
+         */
+        void start(String eTag, long length) {
+            this.eTag = eTag;
+            this.length = length;
+            this.offset = 0;
+            save();
+        }
+
+        void save() {
+            Properties properties = new Properties();
+            if (eTag != null) properties.setProperty(ETAG, eTag);
+            properties.setProperty(LENGTH, String.valueOf(length));
+            properties.setProperty(OFFSET, String.valueOf(offset));
+
+            // Written to a temporary file and renamed, so a crash mid-write
+            // never leaves a truncated info file behind
+            File temporaryFile = new File(infoFile.getPath() + ".tmp");
+            OutputStream output = null;
+            try {
+                output = new FileOutputStream(temporaryFile);
+                properties.store(output, "Partial download of " + partFile.getName());
+                output.close();
+                output = null;
+
+                // File.renameTo won't replace an existing file on all platforms
+                if (!temporaryFile.renameTo(infoFile)) {
+                    infoFile.delete();
+                    if (!temporaryFile.renameTo(infoFile)) {
+                        throw new IOException("Unable to rename " + temporaryFile.getAbsolutePath());
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("Unable to save partial download info " + infoFile.getAbsolutePath() + ": " + e.getMessage(), e);
+            } finally {
+                if (output != null) {
+                    try {output.close();} catch (Exception e) {}
+                }
+            }
+        }
+
+        void discard() {
+            partFile.delete();
+            infoFile.delete();
+            eTag = null;
+            length = -1;
+            offset = 0;
+        }
+    }
 }
@@ -17,6 +17,9 @@ package com.sina.scs.model;
 import java.util.Date;
 import java.util.Map;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
 import com.sina.util.DateUtils;
 
 /**
@@ -28,6 +31,10 @@ import com.sina.util.DateUtils;
  */
 public class S3ObjectSummary {
 
+	public S3ObjectSummary(){
+		super();
+	}
+
 	/**
 	 * Create S3ObjectSummary from json map
 	 * 
@@ -48,7 +55,7 @@ public class S3ObjectSummary {
 		if(jsonMap != null){
 			this.sha1 = (String) jsonMap.get("SHA1");
 			this.key = (String) jsonMap.get("Name");
-			DateUtils du = new DateUtils();
+			DateUtils du = dateUtils;
 			if(jsonMap.get("Expiration-Time") != null){
 				try {
 					this.expiration = du.parseRfc822Date((String) jsonMap.get("Expiration-Time"));
@@ -66,7 +73,7 @@ public class S3ObjectSummary {
 			this.owner = new Owner((String) jsonMap.get("Owner"),"");
 			this.eTag = (String) jsonMap.get("MD5");
 			this.contentType = (String) jsonMap.get("Content-Type");
-			this.size = ((Double) jsonMap.get("Size")).intValue();
+			this.size = ((Double) jsonMap.get("Size")).longValue();
 		}
 	}
 	
@@ -83,10 +90,17 @@ public class S3ObjectSummary {
                 + "]";
 	}
 	
+	private static final Log log = LogFactory.getLog(S3ObjectSummary.class);
+
+	/** Shared parser for the dates of listed objects */
+	private static final DateUtils dateUtils = new DateUtils();
+
 	/** 文件内容的sha1值 */
 	protected String sha1;
 	/** 文件过期时间 */
 	protected Date expiration;
+	/** The expiration time while it is still an RFC 822 string */
+	private volatile LazyDate lazyExpiration;
 	/** 文件的mime type */
 	protected String contentType;
 	
@@ -99,13 +113,27 @@ public class S3ObjectSummary {
 	}
 
 	public Date getExpiration() {
-		return expiration;
+		LazyDate lazy = lazyExpiration;
+		return lazy != null ? lazy.get() : expiration;
 	}
 
 	public void setExpiration(Date expiration) {
+		this.lazyExpiration = null;
 		this.expiration = expiration;
 	}
 
+	/**
+	 * Sets the expiration time as an RFC 822 date string, which is only
+	 * parsed when {@link #getExpiration()} is first called.
+	 *
+	 * @param expiration
+	 *            The RFC 822 expiration time, or null.
+	 */
+	public void setExpirationRfc822(String expiration) {
+		this.expiration = null;
+		this.lazyExpiration = expiration != null ? new LazyDate(expiration) : null;
+	}
+
 	public String getContentType() {
 		return contentType;
 	}
@@ -129,6 +157,9 @@ public class S3ObjectSummary {
     /** The date, according to Amazon S3, when this object was last modified */
     protected Date lastModified;
 
+    /** The last modified date while it is still an RFC 822 string */
+    private volatile LazyDate lazyLastModified;
+
 //    /** The class of storage used by Amazon S3 to store this object */
 //    protected String storageClass;
     
@@ -246,7 +277,8 @@ public class S3ObjectSummary {
      * @see S3ObjectSummary#setLastModified(Date)
      */
     public Date getLastModified() {
-        return lastModified;
+        LazyDate lazy = lazyLastModified;
+        return lazy != null ? lazy.get() : lastModified;
     }
 
     /**
@@ -260,9 +292,56 @@ public class S3ObjectSummary {
      * @see S3ObjectSummary#getLastModified()          
      */
     public void setLastModified(Date lastModified) {
+        this.lazyLastModified = null;
         this.lastModified = lastModified;
     }
 
+    /**
+     * Sets the last modified date as an RFC 822 date string, which is only
+     * parsed when {@link #getLastModified()} is first called. Listings set
+     * dates this way, since most callers of a large listing never look at
+     * them.
+     * 
+     * @param lastModified
+     *            The RFC 822 last modified date, or null.
+     */
+    public void setLastModifiedRfc822(String lastModified) {
+        this.lastModified = null;
+        this.lazyLastModified = lastModified != null ? new LazyDate(lastModified) : null;
+    }
+
+    /**
+     * An RFC 822 date string which is parsed when it is first read. Summaries
+     * handed to several threads may parse it more than once, but every thread
+     * gets an equal date.
+     */
+    private static final class LazyDate {
+        private final String text;
+        private volatile Date date;
+
+        LazyDate(String text) {
+            this.text = text;
+        }
+
+        Date get() {
+            Date parsed = date;
+            if (parsed == null) {
+                parsed = parseDate(text);
+                date = parsed;
+            }
+            return parsed;
+        }
+    }
+
+    private static Date parseDate(String rfc822Date) {
+        try {
+            return dateUtils.parseRfc822Date(rfc822Date);
+        } catch (Exception e) {
+            log.warn("Unable to parse date: " + rfc822Date, e);
+            return null;
+        }
+    }
+
     /**
      * Gets the owner of this object. Returns <code>null</code> 
      * if the requester doesn't have
@@ -1,6 +1,7 @@
 package com.sina.scs.model.transform;
 
 import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -12,6 +13,8 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.sina.SCSClientException;
 import com.sina.scs.Constants;
 import com.sina.scs.model.AccessControlList;
@@ -22,6 +25,7 @@ import com.sina.scs.model.ObjectInfo;
 import com.sina.scs.model.ObjectListing;
 import com.sina.scs.model.Owner;
 import com.sina.scs.model.PartListing;
+import com.sina.scs.model.S3ObjectSummary;
 
 public class JsonResponsesParser {
     private static final Log log = LogFactory.getLog(JsonResponsesParser.class);
@@ -62,14 +66,20 @@ public class JsonResponsesParser {
     public ObjectListing parseListBucketObjectsResponse(InputStream inputStream)
             throws SCSClientException {
     	try {
-            BufferedReader breader = new BufferedReader(new InputStreamReader(inputStream,
+            JsonReader reader = new JsonReader(new InputStreamReader(inputStream,
                 Constants.DEFAULT_ENCODING));
-            
-            Gson gson = new Gson();
-            @SuppressWarnings("unchecked")
-			Map<String,Object> modelObject = gson.fromJson(breader, Map.class);//mapper.readValue(breader,Map.class);
-            
-            return new ObjectListing(modelObject);
+            // As lenient as Gson.fromJson, which parsed listings before
+            reader.setLenient(true);
+            JsonToken token;
+            try {
+                token = reader.peek();
+            } catch (EOFException e) {
+                // An empty document, which Gson.fromJson also read as no listing
+                return new ObjectListing();
+            }
+            if (token == JsonToken.NULL) return new ObjectListing();
+
+            return readObjectListing(reader);
             
         } catch (Throwable t) {
             try {
@@ -85,6 +95,130 @@ public class JsonResponsesParser {
     	
     }
 
+    /**
+     * Reads a ListBucket response in a single pass, filling the listing and
+     * its object summaries directly. Unknown fields are skipped, and dates
+     * are left to be parsed when they are first requested.
+     */
+    private static ObjectListing readObjectListing(JsonReader reader) throws IOException {
+        ObjectListing listing = new ObjectListing();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+            } else if (name.equals("Contents")) {
+                List<S3ObjectSummary> summaries = listing.getObjectSummaries();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    summaries.add(readObjectSummary(reader));
+                }
+                reader.endArray();
+            } else if (name.equals("CommonPrefixes")) {
+                List<String> commonPrefixes = new ArrayList<String>();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    commonPrefixes.add(readCommonPrefix(reader));
+                }
+                reader.endArray();
+                listing.setCommonPrefixes(commonPrefixes);
+            } else if (name.equals("Delimiter")) {
+                listing.setDelimiter(reader.nextString());
+            } else if (name.equals("Prefix")) {
+                listing.setPrefix(reader.nextString());
+            } else if (name.equals("Marker")) {
+                listing.setMarker(reader.nextString());
+            } else if (name.equals("NextMarker")) {
+                listing.setNextMarker(reader.nextString());
+            } else if (name.equals("IsTruncated")) {
+                listing.setTruncated(reader.nextBoolean());
+            } else if (name.equals("ContentsQuantity")) {
+                listing.setContentsQuantity((int)readLong(reader));
+            } else if (name.equals("CommonPrefixesQuantity")) {
+                listing.setCommonPrefixesQuantity((int)readLong(reader));
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return listing;
+    }
+
+    /**
+     * Reads one entry of the "Contents" array of a ListBucket response.
+     */
+    private static S3ObjectSummary readObjectSummary(JsonReader reader) throws IOException {
+        S3ObjectSummary summary = new S3ObjectSummary();
+        String owner = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+            } else if (name.equals("Name")) {
+                summary.setKey(reader.nextString());
+            } else if (name.equals("Size")) {
+                summary.setSize(readLong(reader));
+            } else if (name.equals("Last-Modified")) {
+                summary.setLastModifiedRfc822(reader.nextString());
+            } else if (name.equals("MD5")) {
+                summary.setETag(reader.nextString());
+            } else if (name.equals("SHA1")) {
+                summary.setSha1(reader.nextString());
+            } else if (name.equals("Content-Type")) {
+                summary.setContentType(reader.nextString());
+            } else if (name.equals("Owner")) {
+                owner = reader.nextString();
+            } else if (name.equals("Expiration-Time")) {
+                summary.setExpirationRfc822(reader.nextString());
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        summary.setOwner(new Owner(owner, ""));
+        return summary;
+    }
+
+    /**
+     * Reads one entry of the "CommonPrefixes" array of a ListBucket response:
+     * either the prefix itself, or an object with a "Prefix" field. Any other
+     * entry is rejected, as a null prefix would make recursive listings
+     * list the whole bucket again.
+     */
+    private static String readCommonPrefix(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.STRING) return reader.nextString();
+
+        String prefix = null;
+        if (token == JsonToken.BEGIN_OBJECT) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("Prefix") && reader.peek() == JsonToken.STRING) {
+                    prefix = reader.nextString();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        if (prefix == null) {
+            throw new SCSClientException("Invalid common prefix in listing: " + token);
+        }
+        return prefix;
+    }
+
+    /**
+     * Reads a number as a long, truncating any fraction.
+     */
+    private static long readLong(JsonReader reader) throws IOException {
+        try {
+            return reader.nextLong();
+        } catch (NumberFormatException e) {
+            return (long)reader.nextDouble();
+        }
+    }
+
     /**
      * Parses a ListAllMyBuckets response json document from an input stream.
      *
@@ -0,0 +1,230 @@
+package com.sina.scs.transfer;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sina.SCSClientException;
+import com.sina.scs.SCS;
+import com.sina.scs.model.ListObjectsRequest;
+import com.sina.scs.model.ObjectListing;
+
+/**
+ * Lists every object below a key prefix, recursing into all the virtual
+ * subdirectories rolled up under the delimiter.
+ * <p>
+ * Each common prefix is listed, page by page, by its own task on a bounded
+ * pool of listing threads, so independent subdirectories are listed
+ * concurrently instead of one round trip at a time. Pages are handed over
+ * through a bounded queue as soon as they arrive; listing threads wait
+ * while the queue is full, so the caller controls how far ahead the listing
+ * runs. Pages of different subdirectories arrive in no particular order.
+ * <p>
+ * Typical usage:
+ * <pre>
+ * RecursiveObjectLister lister = transferManager.listObjectsRecursively(bucketName, keyPrefix);
+ * try {
+ *     ObjectListing page;
+ *     while ((page = lister.nextPage()) != null) {
+ *         for (S3ObjectSummary summary : page.getObjectSummaries()) {
+ *             ...
+ *         }
+ *     }
+ * } finally {
+ *     lister.close();
+ * }
+ * </pre>
+ */
+public class RecursiveObjectLister {
+
+    /** Marks the end of the listing in the queue of listed pages */
+    private static final ObjectListing END_OF_LISTING = new ObjectListing();
+
+    private final SCS s3;
+    private final String bucketName;
+    private final String keyPrefix;
+    private final String delimiter;
+
+    /** The threads listing common prefixes */
+    private final ThreadPoolExecutor listingThreads;
+
+    /** Listed pages waiting to be handed over by nextPage() */
+    private final BlockingQueue<ObjectListing> listedPages;
+
+    /** The number of common prefixes being listed or waiting to be listed */
+    private final AtomicInteger pendingPrefixes = new AtomicInteger(0);
+
+    /** Whether the end of the listing has been queued */
+    private final AtomicBoolean endQueued = new AtomicBoolean(false);
+
+    /** The first error the listing ran into, if any */
+    private volatile Exception failure;
+
+    private boolean started = false;
+    private volatile boolean closed = false;
+
+    /**
+     * Constructs a new lister. Nothing is listed until {@link #start()} is
+     * called.
+     *
+     * @param s3
+     *            The client used to list objects.
+     * @param bucketName
+     *            The bucket to list.
+     * @param keyPrefix
+     *            The key prefix to list below, or null for the whole bucket.
+     * @param delimiter
+     *            The delimiter separating virtual subdirectories.
+     * @param concurrency
+     *            The maximum number of common prefixes listed at once.
+     * @param queueCapacity
+     *            The maximum number of listed pages waiting to be handed
+     *            over.
+     */
+    public RecursiveObjectLister(SCS s3, String bucketName, String keyPrefix, String delimiter,
+            int concurrency, int queueCapacity) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Listing concurrency must be positive");
+        }
+        this.s3 = s3;
+        this.bucketName = bucketName;
+        this.keyPrefix = (keyPrefix == null) ? "" : keyPrefix;
+        this.delimiter = delimiter;
+        this.listedPages = new ArrayBlockingQueue<ObjectListing>(queueCapacity);
+        this.listingThreads = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), listingThreadFactory);
+    }
+
+    /**
+     * Starts listing in the background.
+     */
+    public synchronized void start() {
+        if (started) {
+            throw new IllegalStateException("The listing has already been started");
+        }
+        started = true;
+        listPrefix(keyPrefix);
+    }
+
+    /**
+     * Returns the next page of the listing, waiting for it to arrive if
+     * necessary, or null once every page has been returned. Only the object
+     * summaries and common prefixes of a page are meaningful; its prefix is
+     * the common prefix the page was listed from.
+     *
+     * @return The next page of the listing, or null at the end.
+     *
+     * @throws SCSClientException
+     *             If the listing failed.
+     * @throws InterruptedException
+     *             If this thread is interrupted while waiting for a page.
+     */
+    public ObjectListing nextPage() throws InterruptedException {
+        if (closed) return null;
+        ObjectListing page = listedPages.take();
+        if (page != END_OF_LISTING) return page;
+
+        close();
+        Exception e = failure;
+        if (e instanceof RuntimeException) throw (RuntimeException)e;
+        if (e != null) {
+            throw new SCSClientException("Unable to list objects under " + bucketName + "/" + keyPrefix
+                    + ": " + e.getMessage(), e);
+        }
+        return null;
+    }
+
+    /**
+     * Stops the listing and releases its threads. Safe to call more than
+     * once, and after the listing has finished.
+     */
+    public void close() {
+        closed = true;
+        listingThreads.shutdownNow();
+    }
+
+    /**
+     * Queues a task listing all pages of the given common prefix.
+     */
+    private void listPrefix(final String prefix) {
+        pendingPrefixes.incrementAndGet();
+        try {
+            listingThreads.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        listAllPages(prefix);
+                    } catch (InterruptedException e) {
+                        // The lister was closed
+                    } catch (Exception e) {
+                        fail(e);
+                    } finally {
+                        if (pendingPrefixes.decrementAndGet() == 0) queueEndOfListing();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pendingPrefixes.decrementAndGet();
+            if (!closed) throw e;
+        }
+    }
+
+    private void listAllPages(String prefix) throws InterruptedException {
+        ObjectListing listing = null;
+        do {
+            if (closed || failure != null) return;
+            if (listing == null) {
+                listing = s3.listObjects(new ListObjectsRequest().withBucketName(bucketName)
+                        .withPrefix(prefix).withDelimiter(delimiter));
+            } else {
+                listing = s3.listNextBatchOfObjects(listing);
+            }
+
+            for (String commonPrefix : listing.getCommonPrefixes()) {
+                // Listing a prefix which doesn't extend this one would never end
+                if (commonPrefix == null || commonPrefix.length() <= (prefix == null ? 0 : prefix.length())
+                        || (prefix != null && !commonPrefix.startsWith(prefix))) {
+                    throw new SCSClientException("Invalid common prefix " + commonPrefix
+                            + " listed under prefix " + prefix);
+                }
+                listPrefix(commonPrefix);
+            }
+            if (!listing.getObjectSummaries().isEmpty()) {
+                listedPages.put(listing);
+            }
+        } while (listing.isTruncated());
+    }
+
+    private void fail(Exception e) {
+        synchronized (this) {
+            if (failure == null) failure = e;
+        }
+        queueEndOfListing();
+    }
+
+    private void queueEndOfListing() {
+        if (!endQueued.compareAndSet(false, true)) return;
+        try {
+            listedPages.put(END_OF_LISTING);
+        } catch (InterruptedException e) {
+            // The lister was closed
+        }
+    }
+
+    private static final ThreadFactory listingThreadFactory = new ThreadFactory() {
+        final AtomicInteger threadCount = new AtomicInteger( 0 );
+        public Thread newThread(Runnable r) {
+            int threadNumber = threadCount.incrementAndGet();
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            thread.setName("s3-transfer-manager-lister-" + threadNumber);
+            return thread;
+        }
+    };
+}
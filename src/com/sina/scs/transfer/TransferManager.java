@@ -15,14 +15,20 @@
 package com.sina.scs.transfer;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Stack;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
@@ -46,8 +52,8 @@ import com.sina.scs.SCS;
 import com.sina.scs.SCSClient;
 import com.sina.scs.Mimetypes;
 import com.sina.scs.ServiceUtils;
+import com.sina.scs.model.GetObjectMetadataRequest;
 import com.sina.scs.model.GetObjectRequest;
-import com.sina.scs.model.ListObjectsRequest;
 import com.sina.scs.model.ObjectListing;
 import com.sina.scs.model.ObjectMetadata;
 import com.sina.scs.model.PutObjectRequest;
@@ -56,6 +62,7 @@ import com.sina.scs.model.S3ObjectSummary;
 import com.sina.scs.transfer.Transfer.TransferState;
 import com.sina.scs.transfer.internal.DownloadImpl;
 import com.sina.scs.transfer.internal.DownloadMonitor;
+import com.sina.scs.transfer.internal.MultiRangeDownloadCallable;
 import com.sina.scs.transfer.internal.MultipleFileDownloadImpl;
 import com.sina.scs.transfer.internal.MultipleFileTransfer;
 import com.sina.scs.transfer.internal.MultipleFileTransferMonitor;
@@ -67,6 +74,7 @@ import com.sina.scs.transfer.internal.TransferStateChangeListener;
 import com.sina.scs.transfer.internal.UploadCallable;
 import com.sina.scs.transfer.internal.UploadImpl;
 import com.sina.scs.transfer.internal.UploadMonitor;
+import com.sina.scs.transfer.internal.UploadSyncFilter;
 import com.sina.util.VersionInfoUtils;
 
 /**
@@ -262,6 +270,13 @@ public class TransferManager {
      * this can be very expensive, and should be avoided whenever possible.
      * </p>
      * <p>
+     * When {@link TransferManagerConfiguration#setStreamUploadConcurrency(int)}
+     * is greater than one, large streams and streams of unknown length are
+     * instead uploaded in parts: the stream is read ahead into a fixed pool
+     * of part buffers and several parts are sent at once, using at most the
+     * configured concurrency multiplied by the part size in memory.
+     * </p>
+     * <p>
      * Use the returned <code>Upload</code> object to query the progress of the
      * transfer, add listeners for progress events, and wait for the upload to
      * complete.
@@ -311,6 +326,16 @@ public class TransferManager {
      * <p>
      * If resources are available, the upload will begin immediately, otherwise
      * it will be scheduled and started as soon as resources become available.
+     * <p>
+     * If an upload checkpoint directory is configured through
+     * {@link TransferManagerConfiguration#setUploadCheckpointDirectory(File)},
+     * a multipart upload of the file that was interrupted earlier is resumed,
+     * uploading only the parts the server doesn't already have.
+     * <p>
+     * If upload with relax is enabled through
+     * {@link TransferManagerConfiguration#setRelaxUploadEnabled(boolean)},
+     * the object is first created from content the server already stores
+     * with the same SHA-1 hash, and the file is only sent if there is none.
      *
      * @param bucketName
      *            The name of the bucket to upload the new object to.
@@ -454,6 +479,13 @@ public class TransferManager {
      * <p>
      * Use the returned Download object to query the progress of the transfer,
      * add listeners for progress events, and wait for the download to complete.
+     * <p>
+     * No request is made on the calling thread. The object's length is taken
+     * from the headers of the GET that downloads it, or of a HEAD sent first
+     * when the configuration allows multi-range or resumable downloads, so
+     * the total number of bytes to transfer is unknown (-1) until that
+     * response arrives. Errors such as a missing object are reported when
+     * waiting for the download to complete.
      *
      * @param getObjectRequest
      *            The request containing all the parameters for the download.
@@ -489,7 +521,7 @@ public class TransferManager {
 
         String description = "Downloading from " + getObjectRequest.getBucketName() + "/" + getObjectRequest.getKey();
 
-        TransferProgressImpl transferProgress = new TransferProgressImpl();
+        final TransferProgressImpl transferProgress = new TransferProgressImpl();
         ProgressListenerChain listenerChain = new ProgressListenerChain(
                 new TransferProgressUpdatingListener(transferProgress),   // The listener for updating transfer progress
                 getObjectRequest.getGeneralProgressListener());           // Listeners included in the original request
@@ -512,20 +544,18 @@ public class TransferManager {
                 listenerChain);
         getObjectRequest.setGeneralProgressListener(listenerChainForGetObjectRequest);
 
-        final ObjectMetadata objectMetadata = s3.getObjectMetadata(getObjectRequest.getBucketName(), getObjectRequest.getKey());
-
         final StartDownloadLock startDownloadLock = new StartDownloadLock();
         // We still pass the unfiltered listener chain into DownloadImpl
         final DownloadImpl download = new DownloadImpl(description, transferProgress, listenerChain, null, stateListener);
-        long contentLength = objectMetadata.getContentLength();
+
+        // The length of a whole object is only known once its GET response
+        // arrives, and is left unknown until then
         if (getObjectRequest.getRange() != null && getObjectRequest.getRange().length == 2) {
             long startingByte = getObjectRequest.getRange()[0];
             long lastByte     = getObjectRequest.getRange()[1];
-            contentLength     = lastByte - startingByte;
+            transferProgress.setTotalBytesToTransfer(lastByte - startingByte + 1);
         }
 
-        transferProgress.setTotalBytesToTransfer(contentLength);
-
         Future<?> future = threadPool.submit(new Callable<Object>() {
             @Override
             public Object call() throws Exception {
@@ -540,27 +570,75 @@ public class TransferManager {
                          }
                      }
                     download.setState(TransferState.InProgress);
-                    S3Object s3Object = ServiceUtils.retryableDownloadS3ObjectToFile(file, new ServiceUtils.RetryableS3DownloadTask() {
 
-                        @Override
-                        public S3Object getS3ObjectStream() {
-                            S3Object s3Object = s3.getObject(getObjectRequest);
-                            download.setS3Object(s3Object);
-                            return s3Object;
+                    // Whether a whole object is downloaded in ranges depends
+                    // on its length, so when that's possible the length is
+                    // looked up with a HEAD before any GET is sent. Otherwise
+                    // the object is fetched straight away, and its length is
+                    // taken from the GET response.
+                    if (getObjectRequest.getRange() == null && TransferManagerUtils.mayUseRangedDownload(configuration)) {
+                        ObjectMetadata objectMetadata = s3.getObjectMetadata(new GetObjectMetadataRequest(
+                                getObjectRequest.getBucketName(), getObjectRequest.getKey(), getObjectRequest.getVersionId()));
+                        if (!TransferManagerUtils.meetsConstraints(getObjectRequest, objectMetadata)) {
+                            download.setState(TransferState.Canceled);
+                            download.setMonitor(new DownloadMonitor(download, null));
+                            return download;
                         }
+                        transferProgress.setTotalBytesToTransfer(objectMetadata.getContentLength());
 
-                        @Override
-                        public boolean needIntegrityCheck() {
-                            // Don't perform the integrity check if the stream data is wrapped
-                            // in a decryption stream, or if we're only looking at a range of
-                            // the data, since otherwise the checksum won't match up.
-                            boolean performIntegrityCheck = true;
-                            if (getObjectRequest.getRange() != null) performIntegrityCheck = false;
-//                            if (s3 instanceof AmazonS3EncryptionClient) performIntegrityCheck = false;
-                            return performIntegrityCheck;
+                        if (TransferManagerUtils.shouldUseMultiRangeDownload(getObjectRequest, objectMetadata.getContentLength(), configuration)) {
+                            S3Object s3Object = new MultiRangeDownloadCallable(s3, threadPool, getObjectRequest,
+                                    objectMetadata, file, configuration.getDownloadRangeSize(),
+                                    configuration.getDownloadBufferSize()).call();
+                            download.setS3Object(s3Object);
+                            download.setState(TransferState.Completed);
+                            return true;
                         }
-                    });
+                    }
 
+                    S3Object s3Object;
+                    if (configuration.isResumableDownloadEnabled() && getObjectRequest.getRange() == null) {
+                        s3Object = ServiceUtils.resumableDownloadS3ObjectToFile(file, getObjectRequest, new ServiceUtils.ResumableS3DownloadTask() {
+
+                            @Override
+                            public S3Object getS3ObjectStream(GetObjectRequest request) {
+                                S3Object s3Object = s3.getObject(request);
+                                download.setS3Object(s3Object);
+                                // A resumed download's range runs to the object's last byte
+                                if (s3Object != null) {
+                                    long[] range = request.getRange();
+                                    transferProgress.setTotalBytesToTransfer(range == null
+                                            ? s3Object.getObjectMetadata().getContentLength() : range[1] + 1);
+                                }
+                                return s3Object;
+                            }
+                        }, configuration.getDownloadBufferSize());
+                    } else {
+                        s3Object = ServiceUtils.retryableDownloadS3ObjectToFile(file, new ServiceUtils.RetryableS3DownloadTask() {
+
+                            @Override
+                            public S3Object getS3ObjectStream() {
+                                S3Object s3Object = s3.getObject(getObjectRequest);
+                                download.setS3Object(s3Object);
+                                // The length of a whole object is known once its response arrives
+                                if (s3Object != null && getObjectRequest.getRange() == null) {
+                                    transferProgress.setTotalBytesToTransfer(s3Object.getObjectMetadata().getContentLength());
+                                }
+                                return s3Object;
+                            }
+
+                            @Override
+                            public boolean needIntegrityCheck() {
+                                // Don't perform the integrity check if the stream data is wrapped
+                                // in a decryption stream, or if we're only looking at a range of
+                                // the data, since otherwise the checksum won't match up.
+                                boolean performIntegrityCheck = true;
+                                if (getObjectRequest.getRange() != null) performIntegrityCheck = false;
+//                                if (s3 instanceof AmazonS3EncryptionClient) performIntegrityCheck = false;
+                                return performIntegrityCheck;
+                            }
+                        }, configuration.getDownloadBufferSize());
+                    }
 
                     if (s3Object == null) {
                         download.setState(TransferState.Canceled);
@@ -591,6 +669,12 @@ public class TransferManager {
      * Downloads all objects in the virtual directory designated by the
      * keyPrefix given to the destination directory given. All virtual
      * subdirectories will be downloaded recursively.
+     * <p>
+     * This method is non-blocking: the directory is listed in the background
+     * and downloads are queued as the listing arrives, so the total number of
+     * bytes reported by the returned transfer's progress grows until the
+     * listing has finished. An error while listing fails the returned
+     * transfer and is reported when waiting for it to complete.
      *
      * @param bucketName
      *            The bucket containing the virtual directory
@@ -607,101 +691,161 @@ public class TransferManager {
         if ( keyPrefix == null )
             keyPrefix = "";
 
-        List<S3ObjectSummary> objectSummaries = new LinkedList<S3ObjectSummary>();
-        Stack<String> commonPrefixes = new Stack<String>();
-        commonPrefixes.add(keyPrefix);
-        long totalSize = 0;
-
-        // Recurse all virtual subdirectories to get a list of object summaries.
-        // This is a depth-first search.
-        do {
-            String prefix = commonPrefixes.pop();
-            ObjectListing listObjectsResponse = null;
-
-            do {
-                if ( listObjectsResponse == null ) {
-                    ListObjectsRequest listObjectsRequest = new ListObjectsRequest().withBucketName(bucketName)
-                            .withDelimiter(DEFAULT_DELIMITER).withPrefix(prefix);
-                    listObjectsResponse = s3.listObjects(listObjectsRequest);
-                } else {
-                    listObjectsResponse = s3.listNextBatchOfObjects(listObjectsResponse);
-                }
-
-                for ( S3ObjectSummary s : listObjectsResponse.getObjectSummaries() ) {
-                    // Skip any files that are also virtual directories, since
-                    // we can't save both a directory and a file of the same
-                    // name.
-                    if ( !s.getKey().equals(prefix)
-                            && !listObjectsResponse.getCommonPrefixes().contains(s.getKey() + DEFAULT_DELIMITER) ) {
-                        objectSummaries.add(s);
-                        totalSize += s.getSize();
-                    } else {
-                        log.debug("Skipping download for object " + s.getKey()
-                                + " since it is also a virtual directory");
-                    }
-                }
-
-                commonPrefixes.addAll(listObjectsResponse.getCommonPrefixes());
-            } while ( listObjectsResponse.isTruncated() );
-        } while ( !commonPrefixes.isEmpty() );
-
         /* This is the hook for adding additional progress listeners */
         ProgressListenerChain additionalProgressListenerChain = new ProgressListenerChain();
 
-        TransferProgressImpl transferProgress = new TransferProgressImpl();
-        transferProgress.setTotalBytesToTransfer(totalSize);
+        /*
+         * The total size is only known once the listing has finished, so it
+         * starts at zero and grows as each listed object is queued.
+         */
+        final TransferProgressImpl transferProgress = new TransferProgressImpl();
+        transferProgress.setTotalBytesToTransfer(0);
         /*
          * Bind additional progress listeners to this
          * MultipleFileTransferProgressUpdatingListener to receive
          * ByteTransferred events from each single-file download implementation.
          */
-        ProgressListener multipleFileTransferProgressListener = new MultipleFileTransferProgressUpdatingListener(
+        final ProgressListener multipleFileTransferProgressListener = new MultipleFileTransferProgressUpdatingListener(
                 transferProgress, additionalProgressListenerChain);
 
-        List<DownloadImpl> downloads = new ArrayList<DownloadImpl>();
+        // Downloads are added by the listing task while the monitor and the
+        // caller may be iterating over them
+        final Collection<DownloadImpl> downloads = new ConcurrentLinkedQueue<DownloadImpl>();
 
         String description = "Downloading from " + bucketName + "/" + keyPrefix;
         final MultipleFileDownloadImpl multipleFileDownload = new MultipleFileDownloadImpl(description, transferProgress,
                 additionalProgressListenerChain, keyPrefix, bucketName, downloads);
-        multipleFileDownload.setMonitor(new MultipleFileTransferMonitor(multipleFileDownload, downloads));
 
         final AllDownloadsQueuedLock allTransfersQueuedLock = new AllDownloadsQueuedLock();
-        MultipleFileTransferStateChangeListener multipleFileTransferStateChangeListener = new MultipleFileTransferStateChangeListener(
+        final MultipleFileTransferStateChangeListener multipleFileTransferStateChangeListener = new MultipleFileTransferStateChangeListener(
                 allTransfersQueuedLock, multipleFileDownload);
 
-        for ( S3ObjectSummary summary : objectSummaries ) {
-            // TODO: non-standard delimiters
-            File f = new File(destinationDirectory, summary.getKey());
-            File parentFile = f.getParentFile();
-            if ( !parentFile.exists() && !parentFile.mkdirs() ) {
-                throw new RuntimeException("Couldn't create parent directories for " + f.getAbsolutePath());
+        // The listing runs in the background and hands over one page of
+        // object summaries at a time, so downloads can start as soon as the
+        // first page arrives and only a bounded number of pages are held in
+        // memory. The pages are read on the thread pool too, so this method
+        // returns before the listing has finished.
+        final RecursiveObjectLister lister = listObjectsRecursively(bucketName, keyPrefix);
+        final String listedBucketName = bucketName;
+        final String listedKeyPrefix = keyPrefix;
+        final File destination = destinationDirectory;
+
+        FutureTask<Object> queueingTask = new FutureTask<Object>(new Callable<Object>() {
+            public Object call() throws Exception {
+                try {
+                    queueDownloads(listedBucketName, lister, destination, downloads, transferProgress,
+                            multipleFileTransferProgressListener, multipleFileTransferStateChangeListener);
+                } catch (Exception e) {
+                    lister.close();
+                    for ( DownloadImpl download : downloads ) {
+                        try {
+                            download.abortWithoutNotifyingStateChangeListener();
+                        } catch (Exception ignored) {
+                        }
+                    }
+                    // An interrupted listing was aborted rather than failed
+                    if ( e instanceof InterruptedException ) {
+                        multipleFileDownload.setState(TransferState.Canceled);
+                    } else {
+                        log.info("Unable to list " + listedBucketName + "/" + listedKeyPrefix + ": " + e.getMessage());
+                        multipleFileDownload.setState(TransferState.Failed);
+                    }
+                    throw e;
+                }
+
+                if ( downloads.isEmpty() ) {
+                    multipleFileDownload.setState(TransferState.Completed);
+                } else {
+                    // Let the state change listener collate the final state
+                    // now that every download is known; some may already have
+                    // finished.
+                    multipleFileTransferStateChangeListener.allTransfersQueued();
+                }
+                return true;
             }
+        });
+        multipleFileDownload.setMonitor(new MultipleFileTransferMonitor(multipleFileDownload, downloads, queueingTask));
+        threadPool.execute(queueingTask);
 
-            // All the single-file downloads share the same
-            // MultipleFileTransferProgressUpdatingListener and
-            // MultipleFileTransferStateChangeListener
-            downloads.add((DownloadImpl) download(
-                            new GetObjectRequest(summary.getBucketName(),
-                                    summary.getKey())
-                                    .withGeneralProgressListener(
-                                            multipleFileTransferProgressListener),
-                            f,
-                            multipleFileTransferStateChangeListener));
-        }
+        return multipleFileDownload;
+    }
 
-        if ( downloads.isEmpty() ) {
-            multipleFileDownload.setState(TransferState.Completed);
-            return multipleFileDownload;
-        }
+    /**
+     * Reads the listing's pages and queues a download for each listed object,
+     * growing the total number of bytes to transfer as it goes. Returns once
+     * the listing has been read to the end.
+     */
+    private void queueDownloads(String bucketName, RecursiveObjectLister lister, File destinationDirectory,
+            Collection<DownloadImpl> downloads, TransferProgressImpl transferProgress,
+            ProgressListener multipleFileTransferProgressListener,
+            MultipleFileTransferStateChangeListener multipleFileTransferStateChangeListener)
+            throws InterruptedException {
+        long totalSize = 0;
+        ObjectListing page;
+        while ( (page = lister.nextPage()) != null ) {
+            for ( S3ObjectSummary summary : page.getObjectSummaries() ) {
+                // Stop queueing once the transfer has been aborted
+                if ( Thread.currentThread().isInterrupted() ) {
+                    throw new InterruptedException("Download of " + bucketName + "/" + page.getPrefix()
+                            + " was aborted");
+                }
+
+                // Skip any files that are also virtual directories, since
+                // we can't save both a directory and a file of the same
+                // name.
+                if ( summary.getKey().equals(page.getPrefix())
+                        || page.getCommonPrefixes().contains(summary.getKey() + DEFAULT_DELIMITER) ) {
+                    log.debug("Skipping download for object " + summary.getKey()
+                            + " since it is also a virtual directory");
+                    continue;
+                }
 
-        // Notify all state changes waiting for the downloads to all be queued
-        // to wake up and continue.
-        synchronized (allTransfersQueuedLock) {
-            allTransfersQueuedLock.allQueued = true;
-            allTransfersQueuedLock.notifyAll();
+                // TODO: non-standard delimiters
+                File f = new File(destinationDirectory, summary.getKey());
+                File parentFile = f.getParentFile();
+                if ( !parentFile.exists() && !parentFile.mkdirs() ) {
+                    throw new RuntimeException("Couldn't create parent directories for " + f.getAbsolutePath());
+                }
+
+                totalSize += summary.getSize();
+                transferProgress.setTotalBytesToTransfer(totalSize);
+
+                // All the single-file downloads share the same
+                // MultipleFileTransferProgressUpdatingListener and
+                // MultipleFileTransferStateChangeListener
+                downloads.add((DownloadImpl) download(
+                                new GetObjectRequest(bucketName, summary.getKey())
+                                        .withGeneralProgressListener(
+                                                multipleFileTransferProgressListener),
+                                f,
+                                multipleFileTransferStateChangeListener));
+            }
         }
+    }
 
-        return multipleFileDownload;
+    /**
+     * Lists every object below the given key prefix, recursing into all
+     * virtual subdirectories. Independent subdirectories are listed
+     * concurrently, up to the listing concurrency set in this
+     * <code>TransferManager</code>'s configuration, each with its own
+     * pagination. Pages of the listing are returned by the lister as they
+     * arrive; the caller must close the lister if it stops reading pages
+     * before the end.
+     *
+     * @param bucketName
+     *            The bucket to list.
+     * @param keyPrefix
+     *            The key prefix to list below, or null for the entire bucket.
+     *
+     * @return A started lister returning pages of the listing.
+     *
+     * @see TransferManagerConfiguration#setListingConcurrency(int)
+     */
+    public RecursiveObjectLister listObjectsRecursively(String bucketName, String keyPrefix) {
+        RecursiveObjectLister lister = new RecursiveObjectLister(s3, bucketName, keyPrefix, DEFAULT_DELIMITER,
+                configuration.getListingConcurrency(), LISTING_QUEUE_CAPACITY);
+        lister.start();
+        return lister;
     }
 
     private static final class AllDownloadsQueuedLock {
@@ -725,20 +869,6 @@ public class TransferManager {
 
         @Override
         public void transferStateChanged(Transfer upload, TransferState state) {
-
-            // There's a race here: we can't start monitoring the state of
-            // individual transfers until we have added all the transfers to the
-            // list, or we may incorrectly report completion.
-            synchronized (allTransfersQueuedLock) {
-                if ( !allTransfersQueuedLock.allQueued ) {
-                    try {
-                        allTransfersQueuedLock.wait();
-                    } catch ( InterruptedException e ) {
-                        throw new SCSClientException("Couldn't wait for all downloads to be queued");
-                    }
-                }
-            }
-
             synchronized (multipleFileTransfer) {
                 if ( multipleFileTransfer.getState() == state || multipleFileTransfer.isDone() )
                     return;
@@ -747,16 +877,31 @@ public class TransferManager {
                  * If we're not already in a terminal state, allow a transition
                  * to a non-waiting state. Mark completed if this download is
                  * completed and the monitor says all of the rest are as well.
+                 * There's a race here: we can't collate the final state of
+                 * the individual transfers until we have added all of them to
+                 * the list, or we may incorrectly report completion.
                  */
                 if ( state == TransferState.InProgress ) {
                     multipleFileTransfer.setState(state);
-                } else if ( multipleFileTransfer.getMonitor().isDone() ) {
+                } else if ( allTransfersQueuedLock.allQueued && multipleFileTransfer.getMonitor().isDone() ) {
                     multipleFileTransfer.collateFinalState();
                 } else {
                     multipleFileTransfer.setState(TransferState.InProgress);
                 }
             }
         }
+
+        /**
+         * Marks all the sub-transfers as queued, and collates the final state
+         * if they have all finished already.
+         */
+        public void allTransfersQueued() {
+            synchronized (multipleFileTransfer) {
+                allTransfersQueuedLock.allQueued = true;
+                if ( !multipleFileTransfer.isDone() && multipleFileTransfer.getMonitor().isDone() )
+                    multipleFileTransfer.collateFinalState();
+            }
+        }
     };
 
     /**
@@ -788,7 +933,9 @@ public class TransferManager {
      * recursing for all subdirectories.
      * <p>
      * S3 will overwrite any existing objects that happen to have the same key,
-     * just as when uploading individual files, so use with caution.
+     * just as when uploading individual files, so use with caution. Files
+     * already stored unchanged are left out if upload sync is enabled in
+     * this <code>TransferManager</code>'s configuration.
      *
      * @param bucketName
      *            The name of the bucket to upload objects to.
@@ -812,7 +959,9 @@ public class TransferManager {
      * recursing for all subdirectories.
      * <p>
      * S3 will overwrite any existing objects that happen to have the same key,
-     * just as when uploading individual files, so use with caution.
+     * just as when uploading individual files, so use with caution. Files
+     * already stored unchanged are left out if upload sync is enabled in
+     * this <code>TransferManager</code>'s configuration.
      *
      * @param bucketName
      *            The name of the bucket to upload objects to.
@@ -846,7 +995,9 @@ public class TransferManager {
      * relative keys depending on the commonParentDirectory given.
      * <p>
      * S3 will overwrite any existing objects that happen to have the same key,
-     * just as when uploading individual files, so use with caution.
+     * just as when uploading individual files, so use with caution. Files
+     * already stored unchanged are left out if upload sync is enabled in
+     * this <code>TransferManager</code>'s configuration.
      *
      * @param bucketName
      *            The name of the bucket to upload objects to.
@@ -872,7 +1023,9 @@ public class TransferManager {
      * relative keys depending on the commonParentDirectory given.
      * <p>
      * S3 will overwrite any existing objects that happen to have the same key,
-     * just as when uploading individual files, so use with caution.
+     * just as when uploading individual files, so use with caution. Files
+     * already stored unchanged are left out if upload sync is enabled in
+     * this <code>TransferManager</code>'s configuration.
      *
      * @param bucketName
      *            The name of the bucket to upload objects to.
@@ -924,10 +1077,6 @@ public class TransferManager {
         MultipleFileTransferStateChangeListener multipleFileTransferStateChangeListener = new MultipleFileTransferStateChangeListener(
                 allTransfersQueuedLock, multipleFileUpload);
 
-        if ( files == null || files.isEmpty()) {
-            multipleFileUpload.setState(TransferState.Completed);
-        }
-
         /*
          * If the absolute path for the common/base directory does NOT end in a
          * separator (which is the case for anything but root directories), then
@@ -937,43 +1086,59 @@ public class TransferManager {
         int startingPosition = directory.getAbsolutePath().length();
         if (!(directory.getAbsolutePath().endsWith(File.separator))) startingPosition++;
 
-        long totalSize = 0;
-        for (File f : files) {
-            //Check, if file, since only files can be uploaded.
-            if (f.isFile()) {
-                totalSize += f.length();
+        Map<String, File> filesByKey = new LinkedHashMap<String, File>();
+        if ( files != null ) {
+            for (File f : files) {
+                //Check, if file, since only files can be uploaded.
+                if (f.isFile()) {
+                    String key = f.getAbsolutePath().substring(startingPosition).replaceAll("\\\\", "/");
+                    filesByKey.put(virtualDirectoryKeyPrefix + key, f);
+                }
+            }
+        }
 
-                String key = f.getAbsolutePath().substring(startingPosition).replaceAll("\\\\", "/");
+        // In sync mode, leave out the files already stored unchanged
+        if ( configuration.isUploadSyncEnabled() && !filesByKey.isEmpty() ) {
+            Set<String> unchangedKeys = new UploadSyncFilter(s3, threadPool, bucketName, virtualDirectoryKeyPrefix,
+                    configuration.getFileHashIndex(), configuration.isUploadSyncByModificationTimeEnabled())
+                    .findUnchangedKeys(filesByKey);
+            filesByKey.keySet().removeAll(unchangedKeys);
+        }
 
-                ObjectMetadata metadata=new ObjectMetadata();
+        long totalSize = 0;
+        for (Map.Entry<String, File> entry : filesByKey.entrySet()) {
+            File f = entry.getValue();
+            totalSize += f.length();
 
-                // Invoke the callback if it's present.
-                // The callback allows the user to customize the metadata for each file being uploaded.
-                if (metadataProvider != null) {
-                    metadataProvider.provideObjectMetadata(f, metadata);
-                }
+            ObjectMetadata metadata=new ObjectMetadata();
 
-                // All the single-file uploads share the same
-                // MultipleFileTransferProgressUpdatingListener and
-                // MultipleFileTransferStateChangeListener
-                uploads.add((UploadImpl) upload(
-                        new PutObjectRequest(bucketName,
-                                virtualDirectoryKeyPrefix + key, f)
-                                .withMetadata(metadata)
-                                .withGeneralProgressListener(
-                                        multipleFileTransferProgressListener),
-                        multipleFileTransferStateChangeListener));
+            // Invoke the callback if it's present.
+            // The callback allows the user to customize the metadata for each file being uploaded.
+            if (metadataProvider != null) {
+                metadataProvider.provideObjectMetadata(f, metadata);
             }
+
+            // All the single-file uploads share the same
+            // MultipleFileTransferProgressUpdatingListener and
+            // MultipleFileTransferStateChangeListener
+            uploads.add((UploadImpl) upload(
+                    new PutObjectRequest(bucketName,
+                            entry.getKey(), f)
+                            .withMetadata(metadata)
+                            .withGeneralProgressListener(
+                                    multipleFileTransferProgressListener),
+                    multipleFileTransferStateChangeListener));
+        }
+
+        if ( uploads.isEmpty() ) {
+            multipleFileUpload.setState(TransferState.Completed);
         }
 
         transferProgress.setTotalBytesToTransfer(totalSize);
 
-        // Notify all state changes waiting for the uploads to all be queued
-        // to wake up and continue
-        synchronized (allTransfersQueuedLock) {
-            allTransfersQueuedLock.allQueued = true;
-            allTransfersQueuedLock.notifyAll();
-        }
+        // Let the state change listener collate the final state now that
+        // every upload is known; some may already have finished.
+        multipleFileTransferStateChangeListener.allTransfersQueued();
 
         return multipleFileUpload;
     }
@@ -1033,6 +1198,16 @@ public class TransferManager {
 //        } while (uploadListing.isTruncated());
 //    }
 
+    /**
+     * Returns a snapshot of the thread pool transfers are executed on, most
+     * usefully its queue depth: parts waiting there are waiting for a thread,
+     * not for the network. The statistics of the client's connection pool are
+     * available from {@link SCSClient#getClientStatistics()}.
+     */
+    public TransferManagerStatistics getStatistics() {
+        return new TransferManagerStatistics(threadPool);
+    }
+
     /**
      * Forcefully shuts down this TransferManager instance - currently executing
      * transfers will not be allowed to finish. Callers should use this method
@@ -1067,6 +1242,9 @@ public class TransferManager {
 
     private static final String DEFAULT_DELIMITER = "/";
 
+    /** The number of listed pages buffered ahead of their consumer */
+    private static final int LISTING_QUEUE_CAPACITY = 4;
+
     /**
      * There is no need for threads from timedThreadPool if there is no more running threads in current process,
      * so we need a daemon thread factory for it.
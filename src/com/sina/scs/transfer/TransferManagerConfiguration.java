@@ -16,6 +16,11 @@ package com.sina.scs.transfer;
 
 import static com.sina.scs.Constants.*;
 
+import java.io.File;
+
+import com.sina.scs.ServiceUtils;
+import com.sina.util.FileHashIndex;
+
 /**
  * Configuration options for how {@link TransferManager} processes requests.
  * <p>
@@ -33,6 +38,15 @@ public class TransferManagerConfiguration {
     /** Default size threshold for when to use multipart uploads.  */
     private static final int DEFAULT_MULTIPART_UPLOAD_THRESHOLD = 64 * MB;//16 * MB;
 
+    /** Default size of each range fetched by a multi-range download. */
+    private static final long DEFAULT_DOWNLOAD_RANGE_SIZE = 16 * MB;
+
+    /** Default number of stream upload parts buffered and uploaded at once. */
+    private static final int DEFAULT_STREAM_UPLOAD_CONCURRENCY = 1;
+
+    /** Default number of common prefixes listed at once by recursive listings. */
+    private static final int DEFAULT_LISTING_CONCURRENCY = 1;
+
     
     /**
      * The minimum part size for upload parts. Decreasing the minimum part size
@@ -57,6 +71,91 @@ public class TransferManagerConfiguration {
      */
     private int multipartUploadThreshold = DEFAULT_MULTIPART_UPLOAD_THRESHOLD;
 
+    /**
+     * The number of parts of a stream upload that may be buffered in memory
+     * and uploaded concurrently. Stream data is read ahead into this many
+     * reusable part buffers, so memory use is bounded by this value
+     * multiplied by the upload part size. A value of one uploads stream parts
+     * in series on a single connection, without any read-ahead.
+     */
+    private int streamUploadConcurrency = DEFAULT_STREAM_UPLOAD_CONCURRENCY;
+
+    /**
+     * The part size for uploads from streams of unknown length. A multipart
+     * upload has at most 10,000 parts, so this size bounds the length of
+     * such a stream.
+     */
+    private long streamUploadPartSize = DEFAULT_MINIMUM_UPLOAD_PART_SIZE;
+
+    /**
+     * The directory in which checkpoints of multipart file uploads are
+     * stored, or null if uploads aren't checkpointed. A checkpoint records the
+     * multipart upload id, part size and completed parts of an upload so that
+     * a later upload of the same unchanged file to the same key resumes it,
+     * sending only the parts the server doesn't already have.
+     */
+    private File uploadCheckpointDirectory;
+
+    /**
+     * The size threshold, in bytes, above which downloads fetch ranges of the
+     * object concurrently instead of reading it over a single connection.
+     * Multi-range downloads are disabled by default.
+     */
+    private long multiRangeDownloadThreshold = Long.MAX_VALUE;
+
+    /**
+     * The size, in bytes, of each range fetched by a multi-range download.
+     */
+    private long downloadRangeSize = DEFAULT_DOWNLOAD_RANGE_SIZE;
+
+    /**
+     * Whether downloads write to a partial file that later attempts resume
+     * from, instead of starting over from the first byte.
+     */
+    private boolean resumableDownloadEnabled = false;
+
+    /**
+     * The number of virtual subdirectories listed at once by recursive
+     * listings, such as the one behind a directory download.
+     */
+    private int listingConcurrency = DEFAULT_LISTING_CONCURRENCY;
+
+    /**
+     * Whether multiple file uploads leave out the files already stored,
+     * unchanged, under their keys.
+     */
+    private boolean uploadSyncEnabled = false;
+
+    /**
+     * Whether upload sync takes objects it can't compare by hash to be
+     * unchanged when they are no older than the file.
+     */
+    private boolean uploadSyncByModificationTimeEnabled = false;
+
+    /**
+     * Whether file uploads first try to create the object from content the
+     * server already stores, identified by the SHA-1 hash of the file.
+     */
+    private boolean relaxUploadEnabled = false;
+
+    /**
+     * The index consulted for the hashes of uploaded files, or null if files
+     * are always hashed.
+     */
+    private FileHashIndex fileHashIndex;
+
+    /**
+     * Whether each part of a multipart file upload is sent with the MD5 hash
+     * of its contents.
+     */
+    private boolean partMD5Enabled = false;
+
+    /**
+     * The size, in bytes, of the buffer single part downloads are copied to
+     * disk through.
+     */
+    private int downloadBufferSize = ServiceUtils.DEFAULT_DOWNLOAD_BUFFER_SIZE;
+
     
     /**
      * Returns the minimum part size for upload parts. 
@@ -124,4 +223,362 @@ public class TransferManagerConfiguration {
     public void setMultipartUploadThreshold(int multipartUploadThreshold) {
         this.multipartUploadThreshold = multipartUploadThreshold;
     }
+
+    /**
+     * Returns the number of parts of a stream upload that may be buffered in
+     * memory and uploaded concurrently. Memory used by a stream upload is
+     * bounded by this value multiplied by the upload part size.
+     *
+     * @return The number of stream upload parts uploaded concurrently.
+     */
+    public int getStreamUploadConcurrency() {
+        return streamUploadConcurrency;
+    }
+
+    /**
+     * Sets the number of parts of a stream upload that may be buffered in
+     * memory and uploaded concurrently. Values greater than one let
+     * multipart uploads from an <code>InputStream</code> read ahead into a
+     * fixed pool of part buffers and send several parts at once; memory used
+     * by each such upload is bounded by this value multiplied by the upload
+     * part size. Streams of unknown length are also uploaded in parts when
+     * this is enabled, instead of being buffered in memory in full.
+     *
+     * @param streamUploadConcurrency
+     *            The number of stream upload parts uploaded concurrently.
+     */
+    public void setStreamUploadConcurrency(int streamUploadConcurrency) {
+        if (streamUploadConcurrency < 1) {
+            throw new IllegalArgumentException("Stream upload concurrency must be at least one");
+        }
+        this.streamUploadConcurrency = streamUploadConcurrency;
+    }
+
+    /**
+     * Returns the part size for uploads from streams of unknown length.
+     *
+     * @return The part size for uploads from streams of unknown length.
+     */
+    public long getStreamUploadPartSize() {
+        return streamUploadPartSize;
+    }
+
+    /**
+     * Sets the part size for uploads from streams of unknown length, which
+     * are uploaded in parts when the stream upload concurrency is greater
+     * than one. A multipart upload has at most 10,000 parts, so the default
+     * of 64 MB allows streams of up to 625 GB; an upload from a longer stream fails before
+     * its first part over the limit is read. Raise this value for larger
+     * streams, such as multi-GB database dumps piped into the upload, keeping
+     * in mind that memory use is bounded by this value multiplied by the
+     * stream upload concurrency. The minimum upload part size still applies.
+     *
+     * @param streamUploadPartSize
+     *            The part size for uploads from streams of unknown length.
+     */
+    public void setStreamUploadPartSize(long streamUploadPartSize) {
+        if (streamUploadPartSize < 1 || streamUploadPartSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Stream upload part size must be between one byte and "
+                    + Integer.MAX_VALUE + " bytes, the size of a part buffer");
+        }
+        this.streamUploadPartSize = streamUploadPartSize;
+    }
+
+    /**
+     * Returns the directory in which checkpoints of multipart file uploads
+     * are stored, or null if uploads aren't checkpointed.
+     *
+     * @return The directory in which upload checkpoints are stored.
+     */
+    public File getUploadCheckpointDirectory() {
+        return uploadCheckpointDirectory;
+    }
+
+    /**
+     * Sets the directory in which checkpoints of multipart file uploads are
+     * stored. When set, each multipart upload from a file records its upload
+     * id, part size and completed parts in this directory as it progresses.
+     * If the upload dies partway, uploading the same unchanged file to the
+     * same key again reconciles the checkpoint with the parts the server has
+     * and uploads only the missing parts. Checkpoints are deleted once their
+     * upload completes.
+     *
+     * @param uploadCheckpointDirectory
+     *            The directory in which to store upload checkpoints, or null
+     *            to disable checkpointing.
+     */
+    public void setUploadCheckpointDirectory(File uploadCheckpointDirectory) {
+        this.uploadCheckpointDirectory = uploadCheckpointDirectory;
+    }
+
+    /**
+     * Returns the size threshold in bytes above which downloads fetch ranges
+     * of the object concurrently.
+     *
+     * @return The size threshold in bytes for multi-range downloads.
+     */
+    public long getMultiRangeDownloadThreshold() {
+        return multiRangeDownloadThreshold;
+    }
+
+    /**
+     * Sets the size threshold in bytes above which downloads fetch ranges of
+     * the object concurrently on the transfer thread pool, each range written
+     * at its offset in the destination file. A single connection caps the
+     * throughput of a large download; splitting it into ranges lets it use
+     * several. Downloads of a byte range of an object always use a single
+     * connection.
+     *
+     * @param multiRangeDownloadThreshold
+     *            The size threshold in bytes for multi-range downloads.
+     */
+    public void setMultiRangeDownloadThreshold(long multiRangeDownloadThreshold) {
+        this.multiRangeDownloadThreshold = multiRangeDownloadThreshold;
+    }
+
+    /**
+     * Returns the size in bytes of each range fetched by a multi-range
+     * download.
+     *
+     * @return The size in bytes of each download range.
+     */
+    public long getDownloadRangeSize() {
+        return downloadRangeSize;
+    }
+
+    /**
+     * Sets the size in bytes of each range fetched by a multi-range download.
+     * Setting this value too low adds latency and network communication for
+     * each range.
+     *
+     * @param downloadRangeSize
+     *            The size in bytes of each download range.
+     */
+    public void setDownloadRangeSize(long downloadRangeSize) {
+        if (downloadRangeSize < 1) {
+            throw new IllegalArgumentException("Download range size must be positive");
+        }
+        this.downloadRangeSize = downloadRangeSize;
+    }
+
+    /**
+     * Returns whether downloads can be resumed from a partial file left by an
+     * earlier, interrupted attempt.
+     *
+     * @return True if downloads are resumable.
+     */
+    public boolean isResumableDownloadEnabled() {
+        return resumableDownloadEnabled;
+    }
+
+    /**
+     * Sets whether downloads can be resumed from a partial file left by an
+     * earlier, interrupted attempt. When enabled, a download of a whole object
+     * writes to a <code>.part</code> file next to the destination file, along
+     * with the object's ETag and length. A failed download, or a later
+     * download of the same object to the same file, continues with a range
+     * request from the last offset flushed to disk, and starts over if the
+     * object's ETag has changed. The partial file replaces the destination
+     * file only once the whole object has been received and verified.
+     * Downloads that qualify for a multi-range download use that instead.
+     *
+     * @param resumableDownloadEnabled
+     *            True to make downloads resumable.
+     */
+    public void setResumableDownloadEnabled(boolean resumableDownloadEnabled) {
+        this.resumableDownloadEnabled = resumableDownloadEnabled;
+    }
+
+    /**
+     * Returns the number of virtual subdirectories listed at once by
+     * recursive listings.
+     *
+     * @return The number of virtual subdirectories listed at once.
+     */
+    public int getListingConcurrency() {
+        return listingConcurrency;
+    }
+
+    /**
+     * Sets the number of virtual subdirectories listed at once by recursive
+     * listings, such as the one behind
+     * {@link TransferManager#downloadDirectory(String, String, File)}. Each
+     * common prefix found is listed by its own task on a dedicated pool of
+     * this many threads, so a deep hierarchy is no longer listed one round
+     * trip at a time.
+     *
+     * @param listingConcurrency
+     *            The number of virtual subdirectories listed at once.
+     */
+    public void setListingConcurrency(int listingConcurrency) {
+        if (listingConcurrency < 1) {
+            throw new IllegalArgumentException("Listing concurrency must be positive");
+        }
+        this.listingConcurrency = listingConcurrency;
+    }
+
+    /**
+     * Returns whether multiple file uploads leave out the files already
+     * stored, unchanged, under their keys.
+     *
+     * @return True if multiple file uploads only upload new or changed files.
+     */
+    public boolean isUploadSyncEnabled() {
+        return uploadSyncEnabled;
+    }
+
+    /**
+     * Sets whether multiple file uploads leave out the files already stored,
+     * unchanged, under their keys. When enabled,
+     * {@link TransferManager#uploadDirectory(String, String, File, boolean)}
+     * and {@link TransferManager#uploadFileList(String, String, File, java.util.List)}
+     * list the destination prefix once and skip each file for which an
+     * object exists with the same key, the same size and the same contents.
+     * The contents are compared by the object's SHA-1 hash, or by the MD5
+     * hash in its ETag when it was listed without a SHA-1. Only files whose
+     * size matches are hashed, in parallel on the transfer manager's thread
+     * pool, and the file hash index is consulted first when one is set.
+     * <p>
+     * The ETag of an object uploaded in parts isn't a hash of its contents,
+     * so an object with such an ETag and no SHA-1 can't be compared, and its
+     * file is uploaded again unless
+     * {@link #setUploadSyncByModificationTimeEnabled(boolean)} is enabled.
+     *
+     * @param uploadSyncEnabled
+     *            True to upload only new or changed files.
+     */
+    public void setUploadSyncEnabled(boolean uploadSyncEnabled) {
+        this.uploadSyncEnabled = uploadSyncEnabled;
+    }
+
+    /**
+     * Returns whether upload sync takes objects that can't be compared by
+     * hash to be unchanged when they are no older than their files.
+     *
+     * @return True if upload sync falls back to modification times.
+     */
+    public boolean isUploadSyncByModificationTimeEnabled() {
+        return uploadSyncByModificationTimeEnabled;
+    }
+
+    /**
+     * Sets whether upload sync takes an object that can't be compared by
+     * hash, one uploaded in parts and listed without a SHA-1, to be
+     * unchanged when it has the file's size and was last modified no earlier
+     * than the file. This is a heuristic: a file changed without a change to
+     * its size or modification time, or whose clock runs behind the
+     * server's, is left out of the upload. When disabled, the default, such
+     * files are always uploaded.
+     *
+     * @param uploadSyncByModificationTimeEnabled
+     *            True to compare such objects by modification time.
+     */
+    public void setUploadSyncByModificationTimeEnabled(boolean uploadSyncByModificationTimeEnabled) {
+        this.uploadSyncByModificationTimeEnabled = uploadSyncByModificationTimeEnabled;
+    }
+
+    /**
+     * Returns whether file uploads first try to create the object from
+     * content the server already stores.
+     *
+     * @return True if file uploads try an upload with relax first.
+     */
+    public boolean isRelaxUploadEnabled() {
+        return relaxUploadEnabled;
+    }
+
+    /**
+     * Sets whether file uploads first try to create the object from content
+     * the server already stores ("instant upload"). When enabled, each upload
+     * of a file, including those of a directory upload, computes the SHA-1
+     * hash of the file on the transfer thread pool and sends a relax request
+     * carrying only the hash and length. The file itself is uploaded, in one
+     * part or in several as usual, only if the server rejects that request.
+     * Hashing reads the whole file once more, so this pays off when most
+     * uploaded content is already stored.
+     *
+     * @param relaxUploadEnabled
+     *            True to try an upload with relax first.
+     */
+    public void setRelaxUploadEnabled(boolean relaxUploadEnabled) {
+        this.relaxUploadEnabled = relaxUploadEnabled;
+    }
+
+    /**
+     * Returns the index consulted for the hashes of uploaded files, or null
+     * if files are always hashed.
+     *
+     * @return The file hash index in use.
+     */
+    public FileHashIndex getFileHashIndex() {
+        return fileHashIndex;
+    }
+
+    /**
+     * Sets the index consulted for the MD5 and SHA-1 hashes of uploaded
+     * files. Single part file uploads, upload sync comparisons and uploads
+     * with relax then only read a file to hash it if it has changed since it
+     * was indexed.
+     *
+     * @param fileHashIndex
+     *            The file hash index to use, or null to always hash files.
+     */
+    public void setFileHashIndex(FileHashIndex fileHashIndex) {
+        this.fileHashIndex = fileHashIndex;
+    }
+
+    /**
+     * Returns whether each part of a multipart file upload is sent with the
+     * MD5 hash of its contents.
+     *
+     * @return True if parts of file uploads are sent with their MD5 hashes.
+     */
+    public boolean isPartMD5Enabled() {
+        return partMD5Enabled;
+    }
+
+    /**
+     * Sets whether each part of a multipart file upload is sent with the MD5
+     * hash of its contents, so that the server checks the integrity of every
+     * part. When enabled, the thread uploading a part first hashes that part
+     * with positional reads of its range of the file, through
+     * {@link com.sina.util.Md5Utils#computeMD5Hash(File, long, long)}, so
+     * parts are hashed in parallel as they are uploaded rather than in a
+     * pass over the whole file before the upload starts. Parts of uploads
+     * from a stream are not hashed.
+     *
+     * @param partMD5Enabled
+     *            True to send parts of file uploads with their MD5 hashes.
+     */
+    public void setPartMD5Enabled(boolean partMD5Enabled) {
+        this.partMD5Enabled = partMD5Enabled;
+    }
+
+    /**
+     * Returns the size, in bytes, of the buffer downloads are copied to disk
+     * through.
+     *
+     * @return The download buffer size.
+     */
+    public int getDownloadBufferSize() {
+        return downloadBufferSize;
+    }
+
+    /**
+     * Sets the size, in bytes, of the buffer downloads are copied to disk
+     * through. This applies to single part, resumable and multi-range
+     * downloads alike. Each thread downloading a file or a range fills a
+     * buffer of this size from the connection before writing it to the file,
+     * so larger buffers mean fewer, larger writes at the cost of memory per
+     * download thread.
+     *
+     * @param downloadBufferSize
+     *            The download buffer size.
+     */
+    public void setDownloadBufferSize(int downloadBufferSize) {
+        if (downloadBufferSize <= 0) {
+            throw new IllegalArgumentException("Download buffer size must be positive");
+        }
+        this.downloadBufferSize = downloadBufferSize;
+    }
 }
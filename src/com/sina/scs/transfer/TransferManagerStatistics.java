@@ -0,0 +1,50 @@
+package com.sina.scs.transfer;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Snapshot of a {@link TransferManager}'s thread pool, taken with
+ * {@link TransferManager#getStatistics()}.
+ */
+public class TransferManagerStatistics implements TransferManagerStatisticsMBean {
+
+    private final int queueDepth;
+    private final int activeThreads;
+    private final int poolSize;
+    private final int maximumPoolSize;
+    private final long completedTasks;
+
+    TransferManagerStatistics(ThreadPoolExecutor threadPool) {
+        this.queueDepth = threadPool.getQueue().size();
+        this.activeThreads = threadPool.getActiveCount();
+        this.poolSize = threadPool.getPoolSize();
+        this.maximumPoolSize = threadPool.getMaximumPoolSize();
+        this.completedTasks = threadPool.getCompletedTaskCount();
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public int getActiveThreads() {
+        return activeThreads;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public int getMaximumPoolSize() {
+        return maximumPoolSize;
+    }
+
+    public long getCompletedTasks() {
+        return completedTasks;
+    }
+
+    @Override
+    public String toString() {
+        return "queued=" + queueDepth + " active=" + activeThreads + " poolSize=" + poolSize
+                + " maxPoolSize=" + maximumPoolSize + " completed=" + completedTasks;
+    }
+}
@@ -0,0 +1,25 @@
+package com.sina.scs.transfer;
+
+/**
+ * Management interface exposing the state of a {@link TransferManager}'s
+ * thread pool through JMX.
+ *
+ * @see com.sina.metrics.StatisticsMBeans#registerTransferManager(String, TransferManager)
+ */
+public interface TransferManagerStatisticsMBean {
+
+    /** Returns the number of tasks queued waiting for a thread. */
+    public int getQueueDepth();
+
+    /** Returns the number of threads currently executing tasks. */
+    public int getActiveThreads();
+
+    /** Returns the current number of threads in the pool. */
+    public int getPoolSize();
+
+    /** Returns the maximum number of threads the pool may have. */
+    public int getMaximumPoolSize();
+
+    /** Returns the number of tasks completed by the pool. */
+    public long getCompletedTasks();
+}
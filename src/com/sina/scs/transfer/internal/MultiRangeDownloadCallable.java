@@ -0,0 +1,215 @@
+package com.sina.scs.transfer.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.sina.RequestClientOptions.Marker;
+import com.sina.SCSClientException;
+import com.sina.scs.SCS;
+import com.sina.scs.ServiceUtils;
+import com.sina.scs.model.GetObjectRequest;
+import com.sina.scs.model.ObjectMetadata;
+import com.sina.scs.model.S3Object;
+import com.sina.util.BinaryUtils;
+import com.sina.util.Md5Utils;
+
+/**
+ * Downloads an object to a file by fetching ranges of the object concurrently
+ * on the transfer thread pool.
+ * <p>
+ * The destination file is preallocated to the object's length, and each range
+ * is written at its own offset with positional {@link FileChannel} writes, so
+ * ranges can complete in any order. Every range request is constrained to the
+ * ETag of the object being downloaded, so an object that is replaced during
+ * the download fails the download instead of producing a mixed file. Once all
+ * ranges are written, the file is hashed and compared with the ETag, unless
+ * the ETag is that of a multipart upload, which isn't an MD5 of the data.
+ */
+public class MultiRangeDownloadCallable implements Callable<S3Object> {
+    private static final Log log = LogFactory.getLog(MultiRangeDownloadCallable.class);
+
+    private final SCS s3;
+    private final ExecutorService threadPool;
+    private final GetObjectRequest getObjectRequest;
+    private final ObjectMetadata objectMetadata;
+    private final File destinationFile;
+    private final long rangeSize;
+    private final int bufferSize;
+
+    /**
+     * @param s3
+     *            The client to download the ranges with.
+     * @param threadPool
+     *            The thread pool on which to download the ranges.
+     * @param getObjectRequest
+     *            The request describing the object to download.
+     * @param objectMetadata
+     *            The metadata of the object to download, including its content
+     *            length and ETag.
+     * @param destinationFile
+     *            The file to download the object to.
+     * @param rangeSize
+     *            The size, in bytes, of each range to fetch.
+     * @param bufferSize
+     *            The size, in bytes, of the download buffer each range is
+     *            copied through.
+     */
+    public MultiRangeDownloadCallable(SCS s3, ExecutorService threadPool, GetObjectRequest getObjectRequest,
+            ObjectMetadata objectMetadata, File destinationFile, long rangeSize, int bufferSize) {
+        this.s3 = s3;
+        this.threadPool = threadPool;
+        this.getObjectRequest = getObjectRequest;
+        this.objectMetadata = objectMetadata;
+        this.destinationFile = destinationFile;
+        this.rangeSize = rangeSize;
+        this.bufferSize = bufferSize;
+    }
+
+    public S3Object call() throws Exception {
+        final long contentLength = objectMetadata.getContentLength();
+
+        File parentDirectory = destinationFile.getParentFile();
+        if ( parentDirectory != null && !parentDirectory.exists() ) {
+            parentDirectory.mkdirs();
+        }
+
+        List<FutureTask<Long>> rangeTasks = new ArrayList<FutureTask<Long>>();
+        RandomAccessFile randomAccessFile = new RandomAccessFile(destinationFile, "rw");
+        try {
+            randomAccessFile.setLength(contentLength);
+            FileChannel channel = randomAccessFile.getChannel();
+
+            for (long start = 0; start < contentLength; start += rangeSize) {
+                long end = Math.min(start + rangeSize, contentLength) - 1;
+                FutureTask<Long> task = new FutureTask<Long>(new RangeDownloadCallable(channel, start, end));
+                threadPool.execute(task);
+                rangeTasks.add(task);
+            }
+
+            for (FutureTask<Long> task : rangeTasks) {
+                TransferManagerUtils.waitForTask(threadPool, task);
+            }
+        } catch (Exception e) {
+            for (FutureTask<Long> task : rangeTasks) {
+                task.cancel(true);
+            }
+            throw e;
+        } finally {
+            try {randomAccessFile.close();} catch (Exception e) {}
+        }
+
+        verifyIntegrity(contentLength);
+
+        log.debug("Downloaded " + contentLength + " bytes of " + getObjectRequest.getKey()
+                + " in " + rangeTasks.size() + " ranges");
+
+        S3Object s3Object = new S3Object();
+        s3Object.setBucketName(getObjectRequest.getBucketName());
+        s3Object.setKey(getObjectRequest.getKey());
+        s3Object.setObjectMetadata(objectMetadata);
+        return s3Object;
+    }
+
+    /**
+     * Compares the MD5 hash of the downloaded file with the object's ETag,
+     * unless the object has no ETag or was uploaded in parts.
+     */
+    private void verifyIntegrity(long contentLength) {
+        String eTag = objectMetadata.getETag();
+        if (eTag == null || ServiceUtils.isMultipartUploadETag(eTag)) return;
+
+        byte[] clientSideHash;
+        byte[] serverSideHash;
+        try {
+            clientSideHash = Md5Utils.computeMD5Hash(destinationFile, 0, contentLength);
+            serverSideHash = BinaryUtils.fromHex(ServiceUtils.removeQuotes(eTag));
+        } catch (Exception e) {
+            log.warn("Unable to calculate MD5 hash to validate download: " + e.getMessage(), e);
+            return;
+        }
+
+        if (!Arrays.equals(clientSideHash, serverSideHash)) {
+            throw new SCSClientException("Unable to verify integrity of data download.  " +
+                    "Client calculated content hash didn't match hash calculated by Amazon S3.  " +
+                    "The data stored in '" + destinationFile.getAbsolutePath() + "' may be corrupt.");
+        }
+    }
+
+    /**
+     * Fetches one inclusive byte range of the object and writes it to the
+     * destination file at the range's offset.
+     */
+    private final class RangeDownloadCallable implements Callable<Long> {
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+
+        public RangeDownloadCallable(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+        }
+
+        public Long call() throws Exception {
+            GetObjectRequest rangeRequest = new GetObjectRequest(getObjectRequest.getBucketName(),
+                    getObjectRequest.getKey(), getObjectRequest.getVersionId())
+                .withRange(start, end)
+                .withGeneralProgressListener(getObjectRequest.getGeneralProgressListener());
+            if (objectMetadata.getETag() != null) {
+                rangeRequest.withMatchingETagConstraint(objectMetadata.getETag());
+            }
+            rangeRequest.getRequestClientOptions().putClientMarker(Marker.USER_AGENT,
+                    getObjectRequest.getRequestClientOptions().getClientMarker(Marker.USER_AGENT));
+
+            S3Object range = s3.getObject(rangeRequest);
+            if (range == null) {
+                throw new SCSClientException("Unable to download " + getObjectRequest.getKey()
+                        + ": the object was modified during the download");
+            }
+
+            InputStream input = range.getObjectContent();
+            long position = start;
+            try {
+                byte[] buffer = ServiceUtils.getDownloadBuffer(bufferSize);
+                ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+                int bytesRead;
+                while ((bytesRead = input.read(buffer)) > -1) {
+                    byteBuffer.clear();
+                    byteBuffer.limit(bytesRead);
+                    while (byteBuffer.hasRemaining()) {
+                        position += channel.write(byteBuffer, position);
+                    }
+                }
+            } catch (IOException e) {
+                try {
+                    range.getObjectContent().abort();
+                } catch ( IOException abortException ) {
+                    log.warn("Couldn't abort stream", abortException);
+                }
+                throw new SCSClientException(
+                        "Unable to store object contents to disk: " + e.getMessage(), e);
+            } finally {
+                try {input.close();} catch (Exception e) {}
+            }
+
+            if (position != end + 1) {
+                throw new SCSClientException("Unable to download bytes " + start + "-" + end + " of "
+                        + getObjectRequest.getKey() + ": received " + (position - start) + " bytes");
+            }
+            return position - start;
+        }
+    }
+}
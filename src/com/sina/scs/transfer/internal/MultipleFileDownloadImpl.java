@@ -81,7 +81,8 @@ public class MultipleFileDownloadImpl extends MultipleFileTransfer implements Mu
     @Override
     public void waitForCompletion()
             throws SCSClientException, SCSServiceException, InterruptedException {
-        if (subTransfers.isEmpty())
+        // Downloads may still be queued while the directory is listed
+        if (subTransfers.isEmpty() && getMonitor().isDone())
             return;
         super.waitForCompletion();
     }
@@ -90,6 +91,9 @@ public class MultipleFileDownloadImpl extends MultipleFileTransfer implements Mu
      * Aborts all outstanding downloads.
      */
     public void abort() throws IOException {
+        /* Stop queueing further downloads if the listing is still running. */
+        getMonitor().getFuture().cancel(true);
+
         /*
          * The abort() method of DownloadImpl would attempt to notify its
          * TransferStateChangeListener BEFORE it releases its intrinsic lock.
@@ -26,11 +26,33 @@ public class MultipleFileTransferMonitor implements TransferMonitor {
 
     private final Collection<? extends AbstractTransfer> subTransfers;
     private final AbstractTransfer transfer;
+    private final Future<?> queueingFuture;
     private final Future<?> future;
 
     public MultipleFileTransferMonitor(AbstractTransfer transfer, Collection<? extends AbstractTransfer> subTransfers) {
+        this(transfer, subTransfers, null);
+    }
+
+    /**
+     * Constructs a monitor for a transfer whose sub-transfers are still being
+     * queued by a background task. The transfer isn't done until that task
+     * has finished, and waiting for it reports the task's error, if any.
+     *
+     * @param transfer
+     *            The transfer being monitored.
+     * @param subTransfers
+     *            The sub-transfers, which the queueing task may still be
+     *            adding to, so the collection must be safe to iterate while
+     *            it's being added to.
+     * @param queueingFuture
+     *            The future of the task queueing the sub-transfers, or null if
+     *            they are all queued already.
+     */
+    public MultipleFileTransferMonitor(AbstractTransfer transfer, Collection<? extends AbstractTransfer> subTransfers,
+            Future<?> queueingFuture) {
         this.subTransfers = subTransfers;
         this.transfer = transfer;
+        this.queueingFuture = queueingFuture;
 
         /*
          * The future object is not publicly exposed, so we only need to worry
@@ -41,12 +63,16 @@ public class MultipleFileTransferMonitor implements TransferMonitor {
 
             @Override
             public boolean cancel(boolean mayInterruptIfRunning) {
+                if ( MultipleFileTransferMonitor.this.queueingFuture != null )
+                    MultipleFileTransferMonitor.this.queueingFuture.cancel(mayInterruptIfRunning);
                 return true;
             }
 
             @Override
             public Object get() throws InterruptedException, ExecutionException {
                 Object result = null;
+                if ( MultipleFileTransferMonitor.this.queueingFuture != null )
+                    result = MultipleFileTransferMonitor.this.queueingFuture.get();
                 for ( AbstractTransfer download : MultipleFileTransferMonitor.this.subTransfers ) {
                     result = download.getMonitor().getFuture().get();
                 }
@@ -57,6 +83,8 @@ public class MultipleFileTransferMonitor implements TransferMonitor {
             public Object get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException,
                     TimeoutException {
                 Object result = null;
+                if ( MultipleFileTransferMonitor.this.queueingFuture != null )
+                    result = MultipleFileTransferMonitor.this.queueingFuture.get(timeout, unit);
                 for ( AbstractTransfer subTransfer : MultipleFileTransferMonitor.this.subTransfers ) {
                     result = subTransfer.getMonitor().getFuture().get(timeout, unit);
                 }
@@ -82,6 +110,8 @@ public class MultipleFileTransferMonitor implements TransferMonitor {
 
     @Override
     public synchronized boolean isDone() {
+        if ( queueingFuture != null && !queueingFuture.isDone() )
+            return false;
         for ( Transfer subTransfer : subTransfers ) {
             if ( !subTransfer.isDone() )
                 return false;
@@ -0,0 +1,52 @@
+package com.sina.scs.transfer.internal;
+
+import java.util.LinkedList;
+
+/**
+ * Fixed-size pool of reusable byte buffers used to read ahead the parts of a
+ * stream upload.
+ * <p>
+ * Buffers are allocated lazily, up to the capacity of the pool, and returned
+ * buffers are handed out again rather than reallocated, so the memory held by
+ * an upload never exceeds the pool capacity multiplied by the part size,
+ * however large the stream is.
+ */
+public class PartBufferPool {
+    private final int capacity;
+    private final int bufferSize;
+    private final LinkedList<byte[]> availableBuffers = new LinkedList<byte[]>();
+    private int allocatedBuffers = 0;
+
+    public PartBufferPool(int capacity, int bufferSize) {
+        if (capacity < 1) throw new IllegalArgumentException("Buffer pool capacity must be at least one");
+        this.capacity = capacity;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Returns a buffer from the pool, blocking until one is released if all
+     * buffers are in use.
+     */
+    public synchronized byte[] acquire() throws InterruptedException {
+        while (availableBuffers.isEmpty() && allocatedBuffers >= capacity) {
+            wait();
+        }
+        if (!availableBuffers.isEmpty()) return availableBuffers.removeFirst();
+
+        allocatedBuffers++;
+        return new byte[bufferSize];
+    }
+
+    /**
+     * Returns a buffer previously obtained from {@link #acquire()} to the
+     * pool.
+     */
+    public synchronized void release(byte[] buffer) {
+        availableBuffers.addFirst(buffer);
+        notifyAll();
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+}
@@ -17,10 +17,20 @@ package com.sina.scs.transfer.internal;
 import static com.sina.scs.Constants.*;
 
 import java.io.File;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 
+import com.sina.Headers;
+import com.sina.SCSClientException;
+import com.sina.scs.ServiceUtils;
+import com.sina.scs.model.GetObjectRequest;
+import com.sina.scs.model.ObjectMetadata;
 import com.sina.scs.model.PutObjectRequest;
 import com.sina.scs.transfer.TransferManagerConfiguration;
 
@@ -47,6 +57,36 @@ public class TransferManagerUtils {
         return (ThreadPoolExecutor)Executors.newFixedThreadPool(10, threadFactory);
     }
 
+    /**
+     * Waits for a task that was submitted to the specified thread pool with
+     * <code>execute</code> to finish, and returns its result. If the task is
+     * still queued it is run in the calling thread instead, so a transfer
+     * waiting on its own sub-tasks can't deadlock a thread pool saturated by
+     * other transfers doing the same.
+     *
+     * @param threadPool
+     *            The thread pool the task was submitted to.
+     * @param task
+     *            The task to wait for.
+     *
+     * @return The result of the task.
+     *
+     * @throws Exception
+     *             The exception thrown by the task, if it failed.
+     */
+    public static <T> T waitForTask(ExecutorService threadPool, FutureTask<T> task) throws Exception {
+        if (threadPool instanceof ThreadPoolExecutor && ((ThreadPoolExecutor)threadPool).remove(task)) {
+            task.run();
+        }
+
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) throw (Exception)e.getCause();
+            throw new SCSClientException("Unable to complete transfer task: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
 	/**
 	 * Returns true if the specified upload request can use parallel part
 	 * uploads for increased performance.
@@ -68,6 +108,32 @@ public class TransferManagerUtils {
         return (getRequestFile(putObjectRequest) != null);
     }
 
+    /**
+     * Returns true if the specified stream upload request can read ahead into
+     * a pool of part buffers and upload its parts concurrently.
+     *
+     * @param putObjectRequest
+     *            The request to check.
+     * @param optimalPartSize
+     *            The part size, in bytes, to use for the upload.
+     * @param configuration
+     *            Configuration settings controlling how transfer manager
+     *            processes requests.
+     *
+     * @return True if the parts of this stream upload can be uploaded
+     *         concurrently.
+     */
+    public static boolean isStreamUploadParallelizable(final PutObjectRequest putObjectRequest,
+            final long optimalPartSize, final TransferManagerConfiguration configuration) {
+        if (getRequestFile(putObjectRequest) != null) return false;
+        if (putObjectRequest.getInputStream() == null) return false;
+
+        // Each part is buffered in a single byte array
+        if (optimalPartSize > Integer.MAX_VALUE) return false;
+
+        return configuration.getStreamUploadConcurrency() > 1;
+    }
+
     /**
      * Returns the size of the data in this request, otherwise -1 if the content
      * length is unknown.
@@ -105,6 +171,9 @@ public class TransferManagerUtils {
      */
     public static long calculateOptimalPartSize(PutObjectRequest putObjectRequest, TransferManagerConfiguration configuration) {
         double contentLength = TransferManagerUtils.getContentLength(putObjectRequest);
+        if (contentLength < 0) {
+            return Math.max(configuration.getStreamUploadPartSize(), configuration.getMinimumUploadPartSize());
+        }
         double optimalPartSize = (double)contentLength / (double)MAXIMUM_UPLOAD_PARTS;
         // round up so we don't push the upload over the maximum number of parts
         optimalPartSize = Math.ceil(optimalPartSize);
@@ -125,10 +194,106 @@ public class TransferManagerUtils {
      *         multipart upload.
      */
     public static boolean shouldUseMultipartUpload(PutObjectRequest putObjectRequest, TransferManagerConfiguration configuration) {
+        // Streams of unknown length are uploaded in parts when they can be
+        // read ahead into bounded part buffers, rather than being buffered
+        // in memory in full for a single part upload.
+        if (configuration.getStreamUploadConcurrency() > 1 && isContentLengthUnknown(putObjectRequest)) {
+            return true;
+        }
+
         long contentLength = TransferManagerUtils.getContentLength(putObjectRequest);
         return (contentLength > configuration.getMultipartUploadThreshold());
     }
 
+    /**
+     * Returns true if the specified download should fetch ranges of the
+     * object concurrently instead of reading it over a single connection.
+     *
+     * @param getObjectRequest
+     *            The request containing all the details of the download.
+     * @param contentLength
+     *            The length, in bytes, of the object being downloaded.
+     * @param configuration
+     *            Configuration settings controlling how transfer manager
+     *            processes requests.
+     *
+     * @return True if the download should use multiple ranges.
+     */
+    public static boolean shouldUseMultiRangeDownload(GetObjectRequest getObjectRequest, long contentLength,
+            TransferManagerConfiguration configuration) {
+        if (getObjectRequest.getRange() != null) return false;
+        return (contentLength > configuration.getMultiRangeDownloadThreshold());
+    }
+
+    /**
+     * Returns true if the configuration allows a download of a whole object
+     * to be made in ranges, which is decided by the object's length.
+     *
+     * @param configuration
+     *            Configuration settings controlling how transfer manager
+     *            processes requests.
+     *
+     * @return True if the object's length has to be known before it's
+     *         downloaded.
+     */
+    public static boolean mayUseRangedDownload(TransferManagerConfiguration configuration) {
+        return configuration.getMultiRangeDownloadThreshold() < Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns true if an object with the specified metadata meets the ETag
+     * and modification date constraints of the request, evaluated the way
+     * the service evaluates them for a GET.
+     *
+     * @param getObjectRequest
+     *            The request whose constraints to check.
+     * @param objectMetadata
+     *            The metadata of the object, as returned by a HEAD request.
+     *
+     * @return True if a GET of the object with the request's constraints
+     *         would return the object.
+     */
+    public static boolean meetsConstraints(GetObjectRequest getObjectRequest, ObjectMetadata objectMetadata) {
+        String eTag = objectMetadata.getETag() == null ? null : ServiceUtils.removeQuotes(objectMetadata.getETag());
+        Date lastModified = objectMetadata.getLastModified();
+
+        List<String> matchingETags = getObjectRequest.getMatchingETagConstraints();
+        if (matchingETags != null && !matchingETags.isEmpty() && !containsETag(matchingETags, eTag)) return false;
+
+        List<String> nonmatchingETags = getObjectRequest.getNonmatchingETagConstraints();
+        if (nonmatchingETags != null && containsETag(nonmatchingETags, eTag)) return false;
+
+        // HTTP dates have a resolution of one second
+        Date modifiedSince = getObjectRequest.getModifiedSinceConstraint();
+        if (modifiedSince != null && lastModified != null
+                && lastModified.getTime() / 1000 <= modifiedSince.getTime() / 1000) return false;
+
+        Date unmodifiedSince = getObjectRequest.getUnmodifiedSinceConstraint();
+        if (unmodifiedSince != null && lastModified != null
+                && lastModified.getTime() / 1000 > unmodifiedSince.getTime() / 1000) return false;
+
+        return true;
+    }
+
+    private static boolean containsETag(List<String> eTags, String eTag) {
+        if (eTag == null) return false;
+        for (String candidate : eTags) {
+            if ("*".equals(candidate) || eTag.equals(ServiceUtils.removeQuotes(candidate))) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the request uploads a stream without declaring its
+     * content length.
+     */
+    private static boolean isContentLengthUnknown(final PutObjectRequest putObjectRequest) {
+        if (getRequestFile(putObjectRequest) != null) return false;
+        if (putObjectRequest.getInputStream() == null) return false;
+        if (putObjectRequest.getMetadata() == null) return true;
+        return putObjectRequest.getMetadata().getRawMetadata().get(Headers.CONTENT_LENGTH) == null;
+    }
+
     /**
      * Convenience method for getting the file specified in a request.
      */
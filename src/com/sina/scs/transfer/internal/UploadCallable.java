@@ -14,24 +14,44 @@
  */
 package com.sina.scs.transfer.internal;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.sina.Headers;
+import com.sina.RequestClientOptions.Marker;
+import com.sina.SCSClientException;
+import com.sina.SCSServiceException;
 import com.sina.event.ProgressEvent;
 import com.sina.event.ProgressListenerCallbackExecutor;
 import com.sina.event.ProgressListenerChain;
+import com.sina.scs.Constants;
 import com.sina.scs.SCS;
+import com.sina.scs.ServiceUtils;
+import com.sina.scs.model.AbortMultipartUploadRequest;
 import com.sina.scs.model.CompleteMultipartUploadRequest;
 import com.sina.scs.model.InitiateMultipartUploadRequest;
+import com.sina.scs.model.ListPartsRequest;
 import com.sina.scs.model.PartETag;
+import com.sina.scs.model.PartListing;
+import com.sina.scs.model.ObjectMetadata;
+import com.sina.scs.model.PartSummary;
+import com.sina.scs.model.PutObjectRelaxRequest;
 import com.sina.scs.model.PutObjectRequest;
 import com.sina.scs.model.PutObjectResult;
 import com.sina.scs.model.StorageClass;
@@ -40,12 +60,16 @@ import com.sina.scs.transfer.Transfer.TransferState;
 import com.sina.scs.transfer.TransferManager;
 import com.sina.scs.transfer.TransferManagerConfiguration;
 import com.sina.scs.transfer.model.UploadResult;
+import com.sina.util.BinaryUtils;
+import com.sina.util.FileHashIndex;
+import com.sina.util.Sha1Utils;
 
 public class UploadCallable implements Callable<UploadResult> {
     private final SCS s3;
     private final ExecutorService threadPool;
     private final PutObjectRequest putObjectRequest;
     private String multipartUploadId;
+    private UploadCheckpoint checkpoint;
     private final UploadImpl upload;
 
     private static final Log log = LogFactory.getLog(UploadCallable.class);
@@ -80,6 +104,10 @@ public class UploadCallable implements Callable<UploadResult> {
         return multipartUploadId;
     }
 
+    UploadCheckpoint getCheckpoint() {
+        return checkpoint;
+    }
+
     /**
      * Returns true if this UploadCallable is processing a multipart upload.
      * @return True if this UploadCallable is processing a multipart upload.
@@ -92,16 +120,112 @@ public class UploadCallable implements Callable<UploadResult> {
         upload.setState(TransferState.InProgress);
         if ( isMultipartUpload() ) {
             fireProgressEvent(ProgressEvent.STARTED_EVENT_CODE);
+        }
+
+        if ( configuration.isRelaxUploadEnabled() && putObjectRequest.getFile() != null ) {
+            UploadResult uploadResult = uploadWithRelax();
+            if ( uploadResult != null ) return uploadResult;
+        }
+
+        if ( isMultipartUpload() ) {
             return uploadInParts();
         } else {
             return uploadInOneChunk();
         }
     }
 
+    /**
+     * Tries to create the object from content the server already stores,
+     * identified by the SHA-1 hash of the file, without sending the file.
+     * Returns the result, or null if the server doesn't store the content and
+     * the file has to be uploaded.
+     */
+    private UploadResult uploadWithRelax() throws Exception {
+        File file = putObjectRequest.getFile();
+        long fileLength = file.length();
+        FileHashIndex fileHashIndex = configuration.getFileHashIndex();
+        String fileSha1 = BinaryUtils.toHex(fileHashIndex != null
+                ? fileHashIndex.getSHA1(file)
+                : Sha1Utils.computeSHA1Hash(new FileInputStream(file)));
+
+        PutObjectRelaxRequest relaxRequest = new PutObjectRelaxRequest(putObjectRequest.getBucketName(),
+                putObjectRequest.getKey(), fileSha1, fileLength, putObjectRequest.getCannedAcl())
+                .withMetadata(copyMetadataForRelax(putObjectRequest.getMetadata()));
+        relaxRequest.getRequestClientOptions().putClientMarker(Marker.USER_AGENT,
+                putObjectRequest.getRequestClientOptions().getClientMarker(Marker.USER_AGENT));
+
+        PutObjectResult putObjectResult;
+        try {
+            putObjectResult = s3.putObjectRelax(relaxRequest);
+        } catch (SCSServiceException e) {
+            if (!isContentNotStored(e)) throw e;
+            log.debug("Content of " + putObjectRequest.getKey() + " isn't stored yet, uploading the file: "
+                    + e.getMessage());
+            return null;
+        }
+
+        // The whole file counts as transferred
+        if ( !isMultipartUpload() ) {
+            fireProgressEvent(ProgressEvent.STARTED_EVENT_CODE);
+        }
+        if ( progressListenerChainCallbackExecutor != null ) {
+            progressListenerChainCallbackExecutor.progressChanged(new ProgressEvent(fileLength));
+        }
+        if ( !isMultipartUpload() ) {
+            fireProgressEvent(ProgressEvent.COMPLETED_EVENT_CODE);
+        }
+
+        UploadResult uploadResult = new UploadResult();
+        uploadResult.setBucketName(putObjectRequest.getBucketName());
+        uploadResult.setKey(putObjectRequest.getKey());
+        uploadResult.setETag(putObjectResult.getETag());
+        uploadResult.setVersionId(putObjectResult.getVersionId());
+        return uploadResult;
+    }
+
+    /**
+     * Returns whether a relax request failed because the server doesn't store
+     * content with the requested hash and length, which the relax endpoint
+     * reports as not found. A missing bucket is reported as not found too,
+     * but uploading the file can't succeed either, so it isn't included.
+     */
+    private static boolean isContentNotStored(SCSServiceException e) {
+        return e.getStatusCode() == 404 && !"NoSuchBucket".equals(e.getErrorCode());
+    }
+
+    /**
+     * Returns a copy of the given metadata for a relax request, leaving out
+     * the headers describing a request body, since relax requests have none.
+     */
+    private static ObjectMetadata copyMetadataForRelax(ObjectMetadata metadata) {
+        ObjectMetadata copy = new ObjectMetadata();
+        if ( metadata == null ) return copy;
+
+        for ( Map.Entry<String, Object> header : metadata.getRawMetadata().entrySet() ) {
+            if ( !Headers.CONTENT_LENGTH.equals(header.getKey()) && !Headers.CONTENT_MD5.equals(header.getKey()) ) {
+                copy.setHeader(header.getKey(), header.getValue());
+            }
+        }
+        if ( metadata.getUserMetadata() != null ) {
+            copy.setUserMetadata(new HashMap<String, String>(metadata.getUserMetadata()));
+        }
+        if ( metadata.getUserHeader() != null ) {
+            copy.setUserHeader(new HashMap<String, String>(metadata.getUserHeader()));
+        }
+        return copy;
+    }
+
     /**
      * Uploads the given request in a single chunk and returns the result.
      */
-    private UploadResult uploadInOneChunk() {
+    private UploadResult uploadInOneChunk() throws IOException {
+        // Spare the client from hashing a file the index knows
+        FileHashIndex fileHashIndex = configuration.getFileHashIndex();
+        if ( fileHashIndex != null && putObjectRequest.getFile() != null
+                && putObjectRequest.getMetadata().getContentMD5() == null ) {
+            putObjectRequest.getMetadata().setContentMD5(
+                    BinaryUtils.toBase64(fileHashIndex.getMD5(putObjectRequest.getFile())));
+        }
         PutObjectResult putObjectResult = s3.putObject(putObjectRequest);
 
         UploadResult uploadResult = new UploadResult();
@@ -124,7 +248,15 @@ public class UploadCallable implements Callable<UploadResult> {
         boolean isUsingEncryption = false;//s3 instanceof AmazonS3EncryptionClient;
         long optimalPartSize = getOptimalPartSize(isUsingEncryption);
 
-        multipartUploadId = initiateMultipartUpload(putObjectRequest);
+        checkpoint = createCheckpoint(optimalPartSize);
+        if (checkpoint != null && checkpoint.getStaleUploadId() != null) {
+            abortMultipartUpload(checkpoint.getStaleUploadId());
+        }
+        if (checkpoint != null) multipartUploadId = resumeMultipartUpload(checkpoint);
+        if (multipartUploadId == null) {
+            multipartUploadId = initiateMultipartUpload(putObjectRequest);
+            if (checkpoint != null) checkpoint.setUploadId(multipartUploadId);
+        }
 
         try {
             UploadPartRequestFactory requestFactory = new UploadPartRequestFactory(putObjectRequest, multipartUploadId, optimalPartSize);
@@ -132,6 +264,11 @@ public class UploadCallable implements Callable<UploadResult> {
             if (TransferManagerUtils.isUploadParallelizable(putObjectRequest, isUsingEncryption)) {
                 uploadPartsInParallel(requestFactory);
                 return null;
+            } else if (TransferManagerUtils.isStreamUploadParallelizable(putObjectRequest, optimalPartSize, configuration)) {
+                UploadResult uploadResult = uploadStreamPartsInParallel(optimalPartSize);
+                uploadResult.setBucketName(bucketName);
+                uploadResult.setKey(key);
+                return uploadResult;
             } else {
                 UploadResult uploadResult = uploadPartsInSeries(requestFactory);
                 uploadResult.setBucketName(bucketName);
@@ -173,13 +310,18 @@ public class UploadCallable implements Callable<UploadResult> {
      * Uploads all parts in the request in serial in this thread, then completes
      * the upload and returns the result.
      */
-    private UploadResult uploadPartsInSeries(UploadPartRequestFactory requestFactory) {
+    private UploadResult uploadPartsInSeries(UploadPartRequestFactory requestFactory) throws Exception {
 
         final List<PartETag> partETags = new ArrayList<PartETag>();
 
         while (requestFactory.hasMoreRequests()) {
             if (threadPool.isShutdown()) throw new CancellationException("TransferManager has been shutdown");
             UploadPartRequest uploadPartRequest = requestFactory.getNextUploadPartRequest();
+            PartETag uploadedPartETag = getUploadedPartETag(uploadPartRequest);
+            if (uploadedPartETag != null) {
+                partETags.add(uploadedPartETag);
+                continue;
+            }
             // Mark the stream in case we need to reset it
             InputStream inputStream = uploadPartRequest.getInputStream();
             if (inputStream != null && inputStream.markSupported()) {
@@ -189,7 +331,7 @@ public class UploadCallable implements Callable<UploadResult> {
                     inputStream.mark((int)uploadPartRequest.getPartSize());
                 }
             }
-            partETags.add(s3.uploadPart(uploadPartRequest).getPartETag());
+            partETags.add(new UploadPartCallable(s3, uploadPartRequest, checkpoint, configuration.isPartMD5Enabled()).call());
         }
 
 //        CompleteMultipartUploadResult completeMultipartUploadResult = s3
@@ -205,6 +347,7 @@ public class UploadCallable implements Callable<UploadResult> {
         
         s3.completeMultipartUpload(new CompleteMultipartUploadRequest(putObjectRequest.getBucketName(),
         		putObjectRequest.getKey(), multipartUploadId, partETags));
+        if (checkpoint != null) checkpoint.delete();
 
         UploadResult uploadResult = new UploadResult();
 //        uploadResult.setBucketName(completeMultipartUploadResult.getBucketName());
@@ -221,7 +364,252 @@ public class UploadCallable implements Callable<UploadResult> {
         while (requestFactory.hasMoreRequests()) {
             if (threadPool.isShutdown()) throw new CancellationException("TransferManager has been shutdown");
             UploadPartRequest request = requestFactory.getNextUploadPartRequest();
-            futures.add(threadPool.submit(new UploadPartCallable(s3, request)));
+            PartETag uploadedPartETag = getUploadedPartETag(request);
+            if (uploadedPartETag != null) {
+                futures.add(completedFuture(uploadedPartETag));
+                continue;
+            }
+            futures.add(threadPool.submit(new UploadPartCallable(s3, request, checkpoint, configuration.isPartMD5Enabled())));
+        }
+    }
+
+    /**
+     * Returns the checkpoint for this upload, or null if the upload isn't
+     * checkpointed because no checkpoint directory is configured or the
+     * upload isn't from a file.
+     */
+    private UploadCheckpoint createCheckpoint(long partSize) {
+        File file = TransferManagerUtils.getRequestFile(putObjectRequest);
+        if (file == null || configuration.getUploadCheckpointDirectory() == null) return null;
+
+        return UploadCheckpoint.forUpload(configuration.getUploadCheckpointDirectory(),
+                putObjectRequest.getBucketName(), putObjectRequest.getKey(), file, partSize);
+    }
+
+    /**
+     * Reconciles the parts recorded in the checkpoint with the parts the
+     * server has stored for the checkpointed upload, and returns the upload
+     * id to resume, or null if there is no upload that can be resumed.
+     * <p>
+     * A part is kept only if the server has it with the size expected for its
+     * part number and, where the checkpoint recorded the part, with the same
+     * ETag; all other parts are uploaded again.
+     */
+    private String resumeMultipartUpload(UploadCheckpoint checkpoint) {
+        String uploadId = checkpoint.getUploadId();
+        if (uploadId == null) return null;
+
+        final long contentLength = TransferManagerUtils.getContentLength(putObjectRequest);
+        final List<PartETag> uploadedPartETags = new ArrayList<PartETag>();
+        try {
+            PartListing partListing;
+            Integer partNumberMarker = null;
+            do {
+                ListPartsRequest listPartsRequest = new ListPartsRequest(
+                        putObjectRequest.getBucketName(), putObjectRequest.getKey(), uploadId);
+                if (partNumberMarker != null) listPartsRequest.setPartNumberMarker(partNumberMarker);
+                partListing = s3.listParts(listPartsRequest);
+
+                if (partListing.getParts() != null) {
+                    for (PartSummary part : partListing.getParts()) {
+                        if (part.getETag() == null) continue;
+
+                        long partOffset = (part.getPartNumber() - 1) * checkpoint.getPartSize();
+                        long expectedSize = Math.min(checkpoint.getPartSize(), contentLength - partOffset);
+                        if (part.getPartNumber() < 1 || expectedSize <= 0 || part.getSize() != expectedSize) continue;
+
+                        PartETag recorded = checkpoint.getPartETag(part.getPartNumber());
+                        if (recorded != null && !ServiceUtils.removeQuotes(recorded.getETag())
+                                .equals(ServiceUtils.removeQuotes(part.getETag()))) continue;
+
+                        uploadedPartETags.add(new PartETag(part.getPartNumber(), part.getETag()));
+                    }
+                }
+                partNumberMarker = partListing.getNextPartNumberMarker();
+            } while (partListing.isTruncated() && partNumberMarker != null);
+        } catch (SCSServiceException e) {
+            log.info("Unable to resume multipart upload " + uploadId + ", starting a new upload: " + e.getMessage());
+            abortMultipartUpload(uploadId);
+            return null;
+        }
+
+        checkpoint.setPartETags(uploadedPartETags);
+        log.debug("Resuming multipart upload " + uploadId + " with " + uploadedPartETags.size() + " parts already uploaded");
+        return uploadId;
+    }
+
+    /**
+     * Returns the ETag of the specified part if a resumed upload already has
+     * it, reporting the part's bytes as transferred, otherwise null.
+     */
+    private PartETag getUploadedPartETag(UploadPartRequest request) {
+        if (checkpoint == null) return null;
+
+        PartETag partETag = checkpoint.getPartETag(request.getPartNumber());
+        if (partETag != null && progressListenerChainCallbackExecutor != null) {
+            progressListenerChainCallbackExecutor.progressChanged(new ProgressEvent(request.getPartSize()));
+        }
+        return partETag;
+    }
+
+    /**
+     * Returns an already completed future for a part that doesn't need to be
+     * uploaded again.
+     */
+    private static Future<PartETag> completedFuture(final PartETag partETag) {
+        FutureTask<PartETag> future = new FutureTask<PartETag>(new Callable<PartETag>() {
+            public PartETag call() {
+                return partETag;
+            }
+        });
+        future.run();
+        return future;
+    }
+
+    /**
+     * Reads the request's input stream ahead into a bounded pool of part
+     * buffers, uploading up to the configured number of parts concurrently,
+     * then completes the upload and returns the result.
+     * <p>
+     * At most {@link TransferManagerConfiguration#getStreamUploadConcurrency()}
+     * parts are buffered at once; before reading another part this thread
+     * waits for the oldest part in flight to finish, so memory use stays
+     * bounded by the concurrency multiplied by the part size.
+     */
+    private UploadResult uploadStreamPartsInParallel(long partSize) throws Exception {
+        final InputStream input = putObjectRequest.getInputStream();
+        final int concurrency = configuration.getStreamUploadConcurrency();
+        final PartBufferPool bufferPool = new PartBufferPool(concurrency, (int)partSize);
+
+        final LinkedList<FutureTask<PartETag>> partsInFlight = new LinkedList<FutureTask<PartETag>>();
+        final List<PartETag> partETags = new ArrayList<PartETag>();
+
+        long remainingBytes = TransferManagerUtils.getContentLength(putObjectRequest);
+        final boolean isContentLengthKnown = (remainingBytes >= 0);
+        int partNumber = 1;
+        boolean isLastPart = false;
+
+        try {
+            while (!isLastPart) {
+                if (threadPool.isShutdown()) throw new CancellationException("TransferManager has been shutdown");
+
+                if (partsInFlight.size() >= concurrency) {
+                    partETags.add(TransferManagerUtils.waitForTask(threadPool, partsInFlight.removeFirst()));
+                }
+
+                // A stream of unknown length may run past the last part number
+                if (partNumber > Constants.MAXIMUM_UPLOAD_PARTS) {
+                    if (input.read() == -1) break;
+                    throw new SCSClientException("Unable to upload a stream longer than " + Constants.MAXIMUM_UPLOAD_PARTS
+                            + " parts of " + partSize + " bytes; set a larger stream upload part size"
+                            + " in the TransferManagerConfiguration");
+                }
+
+                byte[] buffer = bufferPool.acquire();
+                int bytesToRead = isContentLengthKnown ? (int)Math.min(partSize, remainingBytes) : bufferPool.getBufferSize();
+                int bytesRead = readFully(input, buffer, bytesToRead);
+
+                if (isContentLengthKnown) {
+                    if (bytesRead < bytesToRead) {
+                        bufferPool.release(buffer);
+                        throw new SCSClientException("Unable to read " + bytesToRead + " bytes for part " + partNumber
+                                + ": the upload stream ended before the specified content length");
+                    }
+                    remainingBytes -= bytesRead;
+                    isLastPart = (remainingBytes <= 0);
+                } else {
+                    isLastPart = (bytesRead < bytesToRead);
+                    // The previous part ended exactly at the end of the stream
+                    if (bytesRead == 0 && partNumber > 1) {
+                        bufferPool.release(buffer);
+                        break;
+                    }
+                }
+
+                UploadPartRequest request = new UploadPartRequest()
+                    .withBucketName(putObjectRequest.getBucketName())
+                    .withKey(putObjectRequest.getKey())
+                    .withUploadId(multipartUploadId)
+                    .withInputStream(new ByteArrayInputStream(buffer, 0, bytesRead))
+                    .withPartNumber(partNumber++)
+                    .withPartSize(bytesRead);
+                request.setLastPart(isLastPart);
+                request.setGeneralProgressListener(putObjectRequest.getGeneralProgressListener());
+
+                FutureTask<PartETag> task = new FutureTask<PartETag>(
+                        new PooledBufferUploadPartCallable(s3, request, bufferPool, buffer));
+                threadPool.execute(task);
+                partsInFlight.add(task);
+            }
+
+            while (!partsInFlight.isEmpty()) {
+                partETags.add(TransferManagerUtils.waitForTask(threadPool, partsInFlight.removeFirst()));
+            }
+        } catch (Exception e) {
+            for (FutureTask<PartETag> task : partsInFlight) {
+                task.cancel(true);
+            }
+            abortMultipartUpload(multipartUploadId);
+            throw e;
+        }
+
+        s3.completeMultipartUpload(new CompleteMultipartUploadRequest(putObjectRequest.getBucketName(),
+                putObjectRequest.getKey(), multipartUploadId, partETags));
+
+        return new UploadResult();
+    }
+
+    /**
+     * Aborts the specified multipart upload of this callable's key so the
+     * server frees the parts uploaded so far. A failure to abort is logged
+     * rather than thrown, so the upload itself carries on or fails with its
+     * own error.
+     */
+    private void abortMultipartUpload(String uploadId) {
+        try {
+            s3.abortMultipartUpload(new AbortMultipartUploadRequest(
+                    putObjectRequest.getBucketName(), putObjectRequest.getKey(), uploadId));
+        } catch (Exception e) {
+            log.info("Unable to abort multipart upload, you may need to manually remove uploaded parts: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads from the stream until the specified number of bytes have been read
+     * into the buffer or the end of the stream is reached, and returns the
+     * number of bytes read.
+     */
+    private static int readFully(InputStream input, byte[] buffer, int length) throws IOException {
+        int totalBytesRead = 0;
+        while (totalBytesRead < length) {
+            int bytesRead = input.read(buffer, totalBytesRead, length - totalBytesRead);
+            if (bytesRead == -1) break;
+            totalBytesRead += bytesRead;
+        }
+        return totalBytesRead;
+    }
+
+    /**
+     * Uploads a part whose data is held in a pooled buffer, returning the
+     * buffer to the pool once the part has been sent.
+     */
+    private static final class PooledBufferUploadPartCallable implements Callable<PartETag> {
+        private final UploadPartCallable uploadPartCallable;
+        private final PartBufferPool bufferPool;
+        private final byte[] buffer;
+
+        public PooledBufferUploadPartCallable(SCS s3, UploadPartRequest request, PartBufferPool bufferPool, byte[] buffer) {
+            this.uploadPartCallable = new UploadPartCallable(s3, request);
+            this.bufferPool = bufferPool;
+            this.buffer = buffer;
+        }
+
+        public PartETag call() throws Exception {
+            try {
+                return uploadPartCallable.call();
+            } finally {
+                bufferPool.release(buffer);
+            }
         }
     }
 
@@ -0,0 +1,287 @@
+package com.sina.scs.transfer.internal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.sina.scs.ServiceUtils;
+import com.sina.scs.model.PartETag;
+import com.sina.util.BinaryUtils;
+import com.sina.util.Md5Utils;
+
+/**
+ * Persistent record of a multipart file upload in progress, used to resume
+ * the upload after the process or connection dies.
+ * <p>
+ * A checkpoint stores the multipart upload id, the part size and the ETag of
+ * each part uploaded so far, along with the length and modification time of
+ * the source file so that a checkpoint is never applied to a file that has
+ * changed since. It is rewritten after each part completes and deleted once
+ * the upload has been completed.
+ */
+public class UploadCheckpoint {
+    private static final Log log = LogFactory.getLog(UploadCheckpoint.class);
+
+    private static final String CHECKPOINT_FILE_SUFFIX = ".upload";
+
+    private static final String BUCKET_NAME = "bucketName";
+    private static final String KEY = "key";
+    private static final String FILE_PATH = "filePath";
+    private static final String FILE_LENGTH = "fileLength";
+    private static final String FILE_LAST_MODIFIED = "fileLastModified";
+    private static final String UPLOAD_ID = "uploadId";
+    private static final String PART_SIZE = "partSize";
+    private static final String PART_PREFIX = "part.";
+
+    private final File checkpointFile;
+    private final String bucketName;
+    private final String key;
+    private final String filePath;
+    private final long fileLength;
+    private final long fileLastModified;
+    private final long partSize;
+    private String uploadId;
+    private String staleUploadId;
+    private final Map<Integer, PartETag> partETags = new HashMap<Integer, PartETag>();
+
+    private UploadCheckpoint(File checkpointFile, String bucketName, String key, String filePath,
+            long fileLength, long fileLastModified, long partSize) {
+        this.checkpointFile = checkpointFile;
+        this.bucketName = bucketName;
+        this.key = key;
+        this.filePath = filePath;
+        this.fileLength = fileLength;
+        this.fileLastModified = fileLastModified;
+        this.partSize = partSize;
+    }
+
+    /**
+     * Returns the checkpoint for uploading the specified file to the specified
+     * bucket and key with the specified part size. A previously saved
+     * checkpoint is returned if one exists for the same file contents and part
+     * size; otherwise a new, empty checkpoint is returned.
+     *
+     * @param checkpointDirectory
+     *            The directory in which checkpoints are stored.
+     * @param bucketName
+     *            The name of the bucket being uploaded to.
+     * @param key
+     *            The key being uploaded to.
+     * @param file
+     *            The file being uploaded.
+     * @param partSize
+     *            The part size, in bytes, of the upload.
+     *
+     * @return The checkpoint for the upload.
+     */
+    public static UploadCheckpoint forUpload(File checkpointDirectory, String bucketName, String key,
+            File file, long partSize) {
+        String filePath = file.getAbsolutePath();
+        try {
+            filePath = file.getCanonicalPath();
+        } catch (IOException e) {
+            log.debug("Unable to resolve canonical path of " + filePath, e);
+        }
+
+        File checkpointFile = new File(checkpointDirectory, checkpointFileName(bucketName, key, filePath));
+        UploadCheckpoint checkpoint = new UploadCheckpoint(checkpointFile, bucketName, key, filePath,
+                file.length(), file.lastModified(), partSize);
+
+        if (checkpointFile.isFile()) {
+            try {
+                checkpoint.restore();
+            } catch (Exception e) {
+                log.warn("Ignoring unreadable upload checkpoint " + checkpointFile.getAbsolutePath()
+                        + ": " + e.getMessage());
+                checkpoint.uploadId = null;
+                checkpoint.partETags.clear();
+            }
+        }
+        return checkpoint;
+    }
+
+    private static String checkpointFileName(String bucketName, String key, String filePath) {
+        byte[] identity = ServiceUtils.toByteArray(bucketName + "\n" + key + "\n" + filePath);
+        try {
+            return BinaryUtils.toHex(Md5Utils.computeMD5Hash(identity)) + CHECKPOINT_FILE_SUFFIX;
+        } catch (Exception e) {
+            return Integer.toHexString((bucketName + "\n" + key + "\n" + filePath).hashCode()) + CHECKPOINT_FILE_SUFFIX;
+        }
+    }
+
+    /**
+     * Loads the saved checkpoint, keeping its upload id and part ETags only if
+     * it describes this same upload of unchanged file contents.
+     */
+    private void restore() throws IOException {
+        Properties properties = new Properties();
+        InputStream input = new FileInputStream(checkpointFile);
+        try {
+            properties.load(input);
+        } finally {
+            try {input.close();} catch (Exception e) {}
+        }
+
+        if (!bucketName.equals(properties.getProperty(BUCKET_NAME))
+                || !key.equals(properties.getProperty(KEY))
+                || !filePath.equals(properties.getProperty(FILE_PATH))
+                || !String.valueOf(fileLength).equals(properties.getProperty(FILE_LENGTH))
+                || !String.valueOf(fileLastModified).equals(properties.getProperty(FILE_LAST_MODIFIED))
+                || !String.valueOf(partSize).equals(properties.getProperty(PART_SIZE))) {
+            log.debug("Discarding stale upload checkpoint " + checkpointFile.getAbsolutePath());
+            if (bucketName.equals(properties.getProperty(BUCKET_NAME)) && key.equals(properties.getProperty(KEY))) {
+                staleUploadId = properties.getProperty(UPLOAD_ID);
+            }
+            return;
+        }
+
+        uploadId = properties.getProperty(UPLOAD_ID);
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(PART_PREFIX)) {
+                int partNumber = Integer.parseInt(name.substring(PART_PREFIX.length()));
+                partETags.put(partNumber, new PartETag(partNumber, properties.getProperty(name)));
+            }
+        }
+    }
+
+    /**
+     * Returns the multipart upload id of a discarded checkpoint for the same
+     * bucket and key whose file contents or part size no longer match, or
+     * null if there is none. The upload can't be resumed and should be
+     * aborted so the server frees its parts.
+     */
+    public synchronized String getStaleUploadId() {
+        return staleUploadId;
+    }
+
+    /**
+     * Returns the multipart upload id recorded in this checkpoint, or null if
+     * no upload has been started for it.
+     */
+    public synchronized String getUploadId() {
+        return uploadId;
+    }
+
+    /**
+     * Records the id of a newly initiated multipart upload, discarding any
+     * parts recorded for a previous upload id, and saves the checkpoint.
+     */
+    public synchronized void setUploadId(String uploadId) {
+        this.uploadId = uploadId;
+        this.partETags.clear();
+        save();
+    }
+
+    /**
+     * Returns the ETag recorded for the specified part, or null if the part
+     * hasn't been recorded as uploaded.
+     */
+    public synchronized PartETag getPartETag(int partNumber) {
+        return partETags.get(partNumber);
+    }
+
+    /**
+     * Replaces the recorded parts with the specified parts, as reconciled with
+     * the parts actually stored by the server, and saves the checkpoint.
+     */
+    public synchronized void setPartETags(List<PartETag> reconciledPartETags) {
+        partETags.clear();
+        for (PartETag partETag : reconciledPartETags) {
+            partETags.put(partETag.getPartNumber(), partETag);
+        }
+        save();
+    }
+
+    /**
+     * Records a successfully uploaded part and saves the checkpoint.
+     */
+    public synchronized void addPartETag(PartETag partETag) {
+        partETags.put(partETag.getPartNumber(), partETag);
+        save();
+    }
+
+    /**
+     * Returns the recorded parts, ordered by part number.
+     */
+    public synchronized List<PartETag> getPartETags() {
+        List<PartETag> result = new ArrayList<PartETag>(partETags.values());
+        Collections.sort(result, new Comparator<PartETag>() {
+            public int compare(PartETag a, PartETag b) {
+                return a.getPartNumber() - b.getPartNumber();
+            }
+        });
+        return result;
+    }
+
+    public long getPartSize() {
+        return partSize;
+    }
+
+    /**
+     * Deletes this checkpoint once its upload has been completed.
+     */
+    public synchronized void delete() {
+        if (checkpointFile.exists() && !checkpointFile.delete()) {
+            log.warn("Unable to delete upload checkpoint " + checkpointFile.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Writes this checkpoint to a temporary file and renames it over the
+     * previous checkpoint, so a crash while saving never leaves a truncated
+     * checkpoint behind. Failures to save are logged rather than failing the
+     * upload, since the checkpoint only saves work on a later retry.
+     */
+    private void save() {
+        Properties properties = new Properties();
+        properties.setProperty(BUCKET_NAME, bucketName);
+        properties.setProperty(KEY, key);
+        properties.setProperty(FILE_PATH, filePath);
+        properties.setProperty(FILE_LENGTH, String.valueOf(fileLength));
+        properties.setProperty(FILE_LAST_MODIFIED, String.valueOf(fileLastModified));
+        properties.setProperty(PART_SIZE, String.valueOf(partSize));
+        if (uploadId != null) properties.setProperty(UPLOAD_ID, uploadId);
+        for (PartETag partETag : partETags.values()) {
+            properties.setProperty(PART_PREFIX + partETag.getPartNumber(), partETag.getETag());
+        }
+
+        File directory = checkpointFile.getParentFile();
+        if (directory != null && !directory.exists()) directory.mkdirs();
+
+        File temporaryFile = new File(checkpointFile.getPath() + ".tmp");
+        OutputStream output = null;
+        try {
+            output = new FileOutputStream(temporaryFile);
+            properties.store(output, "Multipart upload checkpoint");
+            output.close();
+            output = null;
+
+            // File.renameTo won't replace an existing file on all platforms
+            if (!temporaryFile.renameTo(checkpointFile)) {
+                checkpointFile.delete();
+                if (!temporaryFile.renameTo(checkpointFile)) {
+                    throw new IOException("Unable to rename " + temporaryFile.getAbsolutePath());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Unable to save upload checkpoint " + checkpointFile.getAbsolutePath() + ": " + e.getMessage(), e);
+        } finally {
+            if (output != null) {
+                try {output.close();} catch (Exception e) {}
+            }
+        }
+    }
+}
@@ -249,6 +249,9 @@ public class UploadMonitor implements Callable<UploadResult>, TransferMonitor {
         
         s3.completeMultipartUpload(new CompleteMultipartUploadRequest(putObjectRequest.getBucketName(),
                 putObjectRequest.getKey(), uploadId, collectPartETags()));
+        if (multipartUploadCallable.getCheckpoint() != null) {
+            multipartUploadCallable.getCheckpoint().delete();
+        }
         uploadComplete();
         UploadResult uploadResult = new UploadResult();
         return uploadResult;
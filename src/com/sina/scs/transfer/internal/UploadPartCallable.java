@@ -19,17 +19,46 @@ import java.util.concurrent.Callable;
 import com.sina.scs.SCS;
 import com.sina.scs.model.PartETag;
 import com.sina.scs.model.UploadPartRequest;
+import com.sina.util.BinaryUtils;
+import com.sina.util.Md5Utils;
 
 public class UploadPartCallable implements Callable<PartETag> {
     private final SCS s3;
     private final UploadPartRequest request;
+    private final UploadCheckpoint checkpoint;
+    private final boolean computePartMD5;
 
     public UploadPartCallable(SCS s3, UploadPartRequest request) {
+        this(s3, request, null);
+    }
+
+    /**
+     * Constructs a callable which records the uploaded part in the specified
+     * checkpoint, if any, once the part has been uploaded.
+     */
+    public UploadPartCallable(SCS s3, UploadPartRequest request, UploadCheckpoint checkpoint) {
+        this(s3, request, checkpoint, false);
+    }
+
+    /**
+     * Constructs a callable which, if computePartMD5 is set and the part is
+     * read from a file, hashes the part before uploading it so that it is
+     * sent with its Content-MD5.
+     */
+    public UploadPartCallable(SCS s3, UploadPartRequest request, UploadCheckpoint checkpoint, boolean computePartMD5) {
         this.s3 = s3;
         this.request = request;
+        this.checkpoint = checkpoint;
+        this.computePartMD5 = computePartMD5;
     }
 
     public PartETag call() throws Exception {
-        return s3.uploadPart(request).getPartETag();
+        if (computePartMD5 && request.getFile() != null && request.getMd5Digest() == null) {
+            byte[] md5Hash = Md5Utils.computeMD5Hash(request.getFile(), request.getFileOffset(), request.getPartSize());
+            request.setMd5Digest(BinaryUtils.toBase64(md5Hash));
+        }
+        PartETag partETag = s3.uploadPart(request).getPartETag();
+        if (checkpoint != null) checkpoint.addPartETag(partETag);
+        return partETag;
     }
 }
@@ -0,0 +1,175 @@
+package com.sina.scs.transfer.internal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.sina.SCSClientException;
+import com.sina.scs.SCS;
+import com.sina.scs.ServiceUtils;
+import com.sina.scs.model.ListObjectsRequest;
+import com.sina.scs.model.ObjectListing;
+import com.sina.scs.model.S3ObjectSummary;
+import com.sina.util.BinaryUtils;
+import com.sina.util.FileHashIndex;
+import com.sina.util.Md5Utils;
+import com.sina.util.Sha1Utils;
+
+/**
+ * Finds the local files of a multiple file upload that are already stored,
+ * unchanged, under their keys. The destination prefix is listed once; a file
+ * is unchanged if an object with its key has the same size and a SHA-1 hash
+ * equal to that of the file's contents. Objects listed without a SHA-1 are
+ * compared by the MD5 hash in their ETag instead, unless it is the ETag of a
+ * multipart upload, which isn't a hash of the data. Those objects are taken
+ * to be changed, or, if modification times are trusted, to be unchanged when
+ * they were last modified no earlier than the file.
+ * <p>
+ * Only files whose size matches are hashed, on the given executor, and only
+ * if they aren't found unchanged in the file hash index when one is given.
+ */
+public class UploadSyncFilter {
+
+    private static final Log log = LogFactory.getLog(UploadSyncFilter.class);
+
+    private final SCS s3;
+    private final ExecutorService executor;
+    private final String bucketName;
+    private final String keyPrefix;
+
+    /** The index of file hashes to consult, or null */
+    private final FileHashIndex fileHashIndex;
+
+    /** Whether objects that can't be compared by hash are compared by date */
+    private final boolean byModificationTime;
+
+    /**
+     * @param s3
+     *            The client to list the destination prefix with.
+     * @param executor
+     *            The executor on which files are hashed.
+     * @param bucketName
+     *            The bucket being uploaded to.
+     * @param keyPrefix
+     *            The key prefix being uploaded to.
+     * @param fileHashIndex
+     *            The index of file hashes to consult, or null to hash every
+     *            candidate file.
+     * @param byModificationTime
+     *            Whether an object that can't be compared by hash is taken to
+     *            be unchanged when it is no older than the file.
+     */
+    public UploadSyncFilter(SCS s3, ExecutorService executor, String bucketName, String keyPrefix,
+            FileHashIndex fileHashIndex, boolean byModificationTime) {
+        this.s3 = s3;
+        this.executor = executor;
+        this.bucketName = bucketName;
+        this.keyPrefix = keyPrefix;
+        this.fileHashIndex = fileHashIndex;
+        this.byModificationTime = byModificationTime;
+    }
+
+    /**
+     * Returns the keys, among those of the given files, whose objects are
+     * identical to the files.
+     *
+     * @param filesByKey
+     *            The files to upload, by the key each is uploaded to.
+     *
+     * @return The keys of the files that don't need to be uploaded.
+     */
+    public Set<String> findUnchangedKeys(Map<String, File> filesByKey) {
+        Map<String, S3ObjectSummary> candidates = listCandidates(filesByKey);
+        Set<String> unchangedKeys = new HashSet<String>();
+        Map<String, Future<Boolean>> comparisons = new HashMap<String, Future<Boolean>>();
+        try {
+            for (Map.Entry<String, S3ObjectSummary> candidate : candidates.entrySet()) {
+                final File file = filesByKey.get(candidate.getKey());
+                final S3ObjectSummary summary = candidate.getValue();
+
+                if (summary.getSha1() == null && ServiceUtils.isMultipartUploadETag(summary.getETag())) {
+                    Date lastModified = summary.getLastModified();
+                    if (byModificationTime && lastModified != null && lastModified.getTime() >= file.lastModified()) {
+                        unchangedKeys.add(candidate.getKey());
+                    }
+                    continue;
+                }
+
+                comparisons.put(candidate.getKey(), executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        return isUnchanged(file, summary);
+                    }
+                }));
+            }
+
+            for (Map.Entry<String, Future<Boolean>> entry : comparisons.entrySet()) {
+                String key = entry.getKey();
+                try {
+                    if (entry.getValue().get()) unchangedKeys.add(key);
+                } catch (ExecutionException e) {
+                    // Upload the file anyway; the upload reports the error
+                    log.debug("Unable to hash " + filesByKey.get(key) + ", uploading it", e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            for (Future<Boolean> comparison : comparisons.values()) {
+                comparison.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new SCSClientException("Interrupted while comparing files with " + bucketName + "/" + keyPrefix, e);
+        }
+        return unchangedKeys;
+    }
+
+    /**
+     * Returns whether the file's contents hash to the SHA-1 of the object, or
+     * to the MD5 in its ETag if the object was listed without a SHA-1.
+     */
+    private boolean isUnchanged(File file, S3ObjectSummary summary) throws Exception {
+        if (summary.getSha1() != null) {
+            byte[] sha1 = (fileHashIndex != null)
+                    ? fileHashIndex.getSHA1(file)
+                    : Sha1Utils.computeSHA1Hash(new FileInputStream(file));
+            return BinaryUtils.toHex(sha1).equalsIgnoreCase(summary.getSha1());
+        }
+
+        byte[] md5 = (fileHashIndex != null)
+                ? fileHashIndex.getMD5(file)
+                : Md5Utils.computeMD5Hash(new FileInputStream(file));
+        return BinaryUtils.toHex(md5).equalsIgnoreCase(ServiceUtils.removeQuotes(summary.getETag()));
+    }
+
+    /**
+     * Lists the destination prefix and returns the summaries of the objects
+     * whose key and size match one of the given files, by key.
+     */
+    private Map<String, S3ObjectSummary> listCandidates(Map<String, File> filesByKey) {
+        Map<String, S3ObjectSummary> candidates = new HashMap<String, S3ObjectSummary>();
+        ObjectListing listing = s3.listObjects(new ListObjectsRequest().withBucketName(bucketName)
+                .withPrefix(keyPrefix));
+        while (true) {
+            for (S3ObjectSummary summary : listing.getObjectSummaries()) {
+                File file = filesByKey.get(summary.getKey());
+                if (file != null && (summary.getSha1() != null || summary.getETag() != null)
+                        && file.length() == summary.getSize()) {
+                    candidates.put(summary.getKey(), summary);
+                }
+            }
+            if (!listing.isTruncated()) break;
+            listing = s3.listNextBatchOfObjects(listing);
+        }
+        return candidates;
+    }
+}
@@ -17,6 +17,7 @@
  */
 package com.sina.util;
 
+import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -27,42 +28,60 @@ import java.util.TimeZone;
 /**
  * Utilities for parsing and formatting dates.
  * <p>
- * Note that this class doesn't use static methods because of the
- * synchronization issues with SimpleDateFormat. This lets synchronization be
- * done on a per-object level, instead of on a per-class level.
+ * Instances are thread-safe and hold no locks. Dates in the formats the SDK
+ * sends and receives are formatted and parsed arithmetically; anything else,
+ * such as dates before the Gregorian cutover or strings in a variant layout,
+ * falls back to per-thread SimpleDateFormats, so results are the same as
+ * SimpleDateFormat's.
+ * <p>
+ * The most recently formatted RFC 822 string is cached for the second it
+ * represents, so signing requests formats the Date header at most once per
+ * second.
  */
 public class DateUtils {
 
     /** ISO 8601 format */
-    protected final SimpleDateFormat iso8601DateFormat =
-        new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+    private static final ThreadLocal<DateFormat> iso8601DateFormat =
+        newDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", new SimpleTimeZone(0, "GMT"));
 
     /** Alternate ISO 8601 format without fractional seconds */
-    protected final SimpleDateFormat alternateIso8601DateFormat =
-        new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+    private static final ThreadLocal<DateFormat> alternateIso8601DateFormat =
+        newDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", new SimpleTimeZone(0, "GMT"));
 
     /** RFC 822 format */
-    protected final SimpleDateFormat rfc822DateFormat =
-        new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
-    
-    protected final SimpleDateFormat rfc822DateFormatUTC =
-            new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss 'UTC'", Locale.US);
+    private static final ThreadLocal<DateFormat> rfc822DateFormat =
+        newDateFormat("EEE, dd MMM yyyy HH:mm:ss 'GMT'", new SimpleTimeZone(0, "GMT"));
+
+    private static final ThreadLocal<DateFormat> rfc822DateFormatUTC =
+        newDateFormat("EEE, dd MMM yyyy HH:mm:ss 'UTC'", TimeZone.getTimeZone("UTC"));
 
     /**
      * This is another ISO 8601 format that's used in clock skew error response
      */
-    protected final SimpleDateFormat compressedIso8601DateFormat =
-        new SimpleDateFormat("yyyyMMdd'T'HHmmss'Z'");
+    private static final ThreadLocal<DateFormat> compressedIso8601DateFormat =
+        newDateFormat("yyyyMMdd'T'HHmmss'Z'", new SimpleTimeZone(0, "GMT"));
+
+    private static final String[] DAY_NAMES = {"Sun", "Mon", "Tue", "Wed", "Thu", "Fri", "Sat"};
+
+    private static final String[] MONTH_NAMES =
+        {"Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec"};
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    /**
+     * Range handled arithmetically: from 1583-01-01, after the switch to the
+     * Gregorian calendar, through the end of year 9999.
+     */
+    private static final long MIN_FAST_MILLIS = -12212553600000L;
+    private static final long MAX_FAST_MILLIS = 253402300799999L;
+
+    /** The last RFC 822 string formatted, with the second it represents */
+    private volatile FormattedSecond lastRfc822Date;
 
     /**
      * Constructs a new DateUtils object, ready to parse/format dates.
      */
     public DateUtils() {
-        iso8601DateFormat.setTimeZone(new SimpleTimeZone(0, "GMT"));
-        rfc822DateFormat.setTimeZone(new SimpleTimeZone(0, "GMT"));
-        rfc822DateFormatUTC.setTimeZone(TimeZone.getTimeZone("UTC"));
-        alternateIso8601DateFormat.setTimeZone(new SimpleTimeZone(0, "GMT"));
-        compressedIso8601DateFormat.setTimeZone(new SimpleTimeZone(0, "GMT"));
     }
 
     /**
@@ -78,16 +97,22 @@ public class DateUtils {
      *             If the date string could not be parsed.
      */
     public Date parseIso8601Date(String dateString) throws ParseException {
-        try {
-            synchronized (iso8601DateFormat) {
-                return iso8601DateFormat.parse(dateString);
+        if (dateString != null) {
+            long millis = Long.MIN_VALUE;
+            if (dateString.length() == 24 && dateString.charAt(19) == '.' && dateString.charAt(23) == 'Z') {
+                millis = parseIsoDateTime(dateString, digits(dateString, 20, 3));
+            } else if (dateString.length() == 20 && dateString.charAt(19) == 'Z') {
+                millis = parseIsoDateTime(dateString, 0);
             }
+            if (millis != Long.MIN_VALUE) return new Date(millis);
+        }
+
+        try {
+            return iso8601DateFormat.get().parse(dateString);
         } catch (ParseException e) {
             // If the first ISO 8601 parser didn't work, try the alternate
             // version which doesn't include fractional seconds
-            synchronized (alternateIso8601DateFormat) {
-                return alternateIso8601DateFormat.parse(dateString);
-            }
+            return alternateIso8601DateFormat.get().parse(dateString);
         }
     }
 
@@ -100,9 +125,26 @@ public class DateUtils {
      * @return The ISO 8601 string representing the specified date.
      */
     public String formatIso8601Date(Date date) {
-        synchronized (iso8601DateFormat) {
-            return iso8601DateFormat.format(date);
+        long millis = date.getTime();
+        if (millis < MIN_FAST_MILLIS || millis > MAX_FAST_MILLIS) {
+            return iso8601DateFormat.get().format(date);
         }
+
+        long days = floorDiv(millis, MILLIS_PER_DAY);
+        int millisOfDay = (int)(millis - days * MILLIS_PER_DAY);
+        int[] ymd = civilFromDays(days);
+        char[] buf = new char[24];
+        append(buf, 0, ymd[0], 4);
+        buf[4] = '-';
+        append(buf, 5, ymd[1], 2);
+        buf[7] = '-';
+        append(buf, 8, ymd[2], 2);
+        buf[10] = 'T';
+        appendTime(buf, 11, millisOfDay / 1000);
+        buf[19] = '.';
+        append(buf, 20, millisOfDay % 1000, 3);
+        buf[23] = 'Z';
+        return new String(buf);
     }
 
     /**
@@ -118,16 +160,15 @@ public class DateUtils {
      *             If the date string could not be parsed.
      */
     public Date parseRfc822Date(String dateString) throws ParseException {
-        synchronized (rfc822DateFormatUTC) {
-        	if(dateString!=null){
-        		if(dateString.endsWith("UTC")){
-        			return rfc822DateFormatUTC.parse(dateString);
-        		}else{
-        			return rfc822DateFormat.parse(dateString);
-        		}
-        	}
-            return rfc822DateFormat.parse(dateString);
+        if (dateString != null) {
+            long millis = parseRfc822DateTime(dateString);
+            if (millis != Long.MIN_VALUE) return new Date(millis);
+
+            if (dateString.endsWith("UTC")) {
+                return rfc822DateFormatUTC.get().parse(dateString);
+            }
         }
+        return rfc822DateFormat.get().parse(dateString);
     }
 
     /**
@@ -139,9 +180,34 @@ public class DateUtils {
      * @return The RFC 822 string representing the specified date.
      */
     public String formatRfc822Date(Date date) {
-        synchronized (rfc822DateFormat) {
-            return rfc822DateFormat.format(date);
+        long millis = date.getTime();
+        long second = floorDiv(millis, 1000);
+        FormattedSecond last = lastRfc822Date;
+        if (last != null && last.second == second) return last.text;
+
+        String text;
+        if (millis < MIN_FAST_MILLIS || millis > MAX_FAST_MILLIS) {
+            text = rfc822DateFormat.get().format(date);
+        } else {
+            long days = floorDiv(millis, MILLIS_PER_DAY);
+            int secondOfDay = (int)((millis - days * MILLIS_PER_DAY) / 1000);
+            int[] ymd = civilFromDays(days);
+            char[] buf = new char[29];
+            DAY_NAMES[(int)floorMod(days + 4, 7)].getChars(0, 3, buf, 0);
+            buf[3] = ',';
+            buf[4] = ' ';
+            append(buf, 5, ymd[2], 2);
+            buf[7] = ' ';
+            MONTH_NAMES[ymd[1] - 1].getChars(0, 3, buf, 8);
+            buf[11] = ' ';
+            append(buf, 12, ymd[0], 4);
+            buf[16] = ' ';
+            appendTime(buf, 17, secondOfDay);
+            " GMT".getChars(0, 4, buf, 25);
+            text = new String(buf);
         }
+        lastRfc822Date = new FormattedSecond(second, text);
+        return text;
     }
 
     /**
@@ -157,8 +223,154 @@ public class DateUtils {
      *             If the date string could not be parsed.
      */
     public Date parseCompressedIso8601Date(String dateString) throws ParseException {
-        synchronized (compressedIso8601DateFormat) {
-            return compressedIso8601DateFormat.parse(dateString);
+        if (dateString != null && dateString.length() == 16
+                && dateString.charAt(8) == 'T' && dateString.charAt(15) == 'Z') {
+            long millis = toMillis(digits(dateString, 0, 4), digits(dateString, 4, 2), digits(dateString, 6, 2),
+                    digits(dateString, 9, 2), digits(dateString, 11, 2), digits(dateString, 13, 2), 0);
+            if (millis != Long.MIN_VALUE) return new Date(millis);
+        }
+        return compressedIso8601DateFormat.get().parse(dateString);
+    }
+
+    /**
+     * Parses "yyyy-MM-ddTHH:mm:ss" at the start of the string, returning
+     * Long.MIN_VALUE if it isn't laid out exactly so.
+     */
+    private static long parseIsoDateTime(String s, int millis) {
+        if (millis < 0 || s.charAt(4) != '-' || s.charAt(7) != '-' || s.charAt(10) != 'T'
+                || s.charAt(13) != ':' || s.charAt(16) != ':') {
+            return Long.MIN_VALUE;
+        }
+        return toMillis(digits(s, 0, 4), digits(s, 5, 2), digits(s, 8, 2),
+                digits(s, 11, 2), digits(s, 14, 2), digits(s, 17, 2), millis);
+    }
+
+    /**
+     * Parses "EEE, dd MMM yyyy HH:mm:ss GMT" (or UTC), returning
+     * Long.MIN_VALUE if the string isn't laid out exactly so.
+     */
+    private static long parseRfc822DateTime(String s) {
+        if (s.length() != 29 || s.charAt(3) != ',' || s.charAt(4) != ' ' || s.charAt(7) != ' '
+                || s.charAt(11) != ' ' || s.charAt(16) != ' ' || s.charAt(19) != ':' || s.charAt(22) != ':'
+                || !(s.endsWith(" GMT") || s.endsWith(" UTC"))
+                || indexOf(DAY_NAMES, s, 0) < 0) {
+            return Long.MIN_VALUE;
+        }
+        int month = indexOf(MONTH_NAMES, s, 8) + 1;
+        if (month == 0) return Long.MIN_VALUE;
+        return toMillis(digits(s, 12, 4), month, digits(s, 5, 2),
+                digits(s, 17, 2), digits(s, 20, 2), digits(s, 23, 2), 0);
+    }
+
+    /**
+     * Returns the epoch millis of the given UTC date and time, or
+     * Long.MIN_VALUE if a field is out of range or the date is outside the
+     * range handled arithmetically.
+     */
+    private static long toMillis(int year, int month, int day, int hour, int minute, int second, int millis) {
+        if (year < 1583 || year > 9999 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59 || millis < 0) {
+            return Long.MIN_VALUE;
+        }
+        return daysFromCivil(year, month, day) * MILLIS_PER_DAY
+                + ((hour * 60 + minute) * 60 + second) * 1000L + millis;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+            return leap ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    /** Returns the days since 1970-01-01 of a proleptic Gregorian date. */
+    private static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    /** Returns {year, month, day} of a number of days since 1970-01-01. */
+    private static int[] civilFromDays(long days) {
+        long z = days + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        int dayOfEra = (int)(z - era * 146097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        int year = (int)(yearOfEra + era * 400) + (month <= 2 ? 1 : 0);
+        return new int[] {year, month, day};
+    }
+
+    /** Parses a run of decimal digits, returning -1 if any isn't a digit. */
+    private static int digits(String s, int offset, int count) {
+        int value = 0;
+        for (int i = offset; i < offset + count; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static int indexOf(String[] names, String s, int offset) {
+        for (int i = 0; i < names.length; i++) {
+            if (s.regionMatches(offset, names[i], 0, 3)) return i;
+        }
+        return -1;
+    }
+
+    /** Writes "HH:mm:ss" for the given second of the day. */
+    private static void appendTime(char[] buf, int offset, int secondOfDay) {
+        append(buf, offset, secondOfDay / 3600, 2);
+        buf[offset + 2] = ':';
+        append(buf, offset + 3, secondOfDay / 60 % 60, 2);
+        buf[offset + 5] = ':';
+        append(buf, offset + 6, secondOfDay % 60, 2);
+    }
+
+    /** Writes a non-negative value as zero-padded decimal digits. */
+    private static void append(char[] buf, int offset, int value, int width) {
+        for (int i = offset + width - 1; i >= offset; i--) {
+            buf[i] = (char)('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        return (x % y != 0 && (x ^ y) < 0) ? q - 1 : q;
+    }
+
+    private static long floorMod(long x, long y) {
+        return x - floorDiv(x, y) * y;
+    }
+
+    private static ThreadLocal<DateFormat> newDateFormat(final String pattern, final TimeZone timeZone) {
+        return new ThreadLocal<DateFormat>() {
+            @Override
+            protected DateFormat initialValue() {
+                SimpleDateFormat format = new SimpleDateFormat(pattern, Locale.US);
+                format.setTimeZone(timeZone);
+                return format;
+            }
+        };
+    }
+
+    /** An RFC 822 string together with the epoch second it represents */
+    private static final class FormattedSecond {
+        final long second;
+        final String text;
+
+        FormattedSecond(long second, String text) {
+            this.second = second;
+            this.text = text;
         }
     }
 }
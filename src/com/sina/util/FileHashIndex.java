@@ -0,0 +1,219 @@
+package com.sina.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.sina.SCSClientException;
+
+/**
+ * A persistent index of the MD5 and SHA-1 hashes of local files, so that
+ * files which haven't changed since they were last hashed don't have to be
+ * read again.
+ * <p>
+ * Entries are keyed by the canonical path of a file and are only used while
+ * the file's length and last modified time are the same as when it was
+ * hashed. Java doesn't expose inode numbers before Java 7, so a file replaced
+ * by another of the same length and modification time isn't detected.
+ * <p>
+ * The index is a journal file, one line per hashed file, appended to as files
+ * are hashed and compacted when it is opened. Instances are thread safe;
+ * files are hashed outside of the index lock, so several threads can hash
+ * different files at once.
+ */
+public class FileHashIndex {
+
+    private static final String ENCODING = "UTF-8";
+
+    private final File indexFile;
+
+    /** The hashes of each indexed file, by canonical path */
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    /** Appends new entries to the journal; opened on first use */
+    private Writer journal;
+
+    /**
+     * Opens the hash index stored in the given file, creating it if it
+     * doesn't exist.
+     *
+     * @param indexFile
+     *            The file in which the index is stored.
+     */
+    public FileHashIndex(File indexFile) {
+        this.indexFile = indexFile;
+        try {
+            if (load()) compact();
+        } catch (IOException e) {
+            throw new SCSClientException("Unable to read file hash index " + indexFile + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the MD5 hash of the contents of the given file, hashing the
+     * file only if it has changed since it was indexed.
+     */
+    public byte[] getMD5(File file) throws IOException {
+        return getEntry(file).md5;
+    }
+
+    /**
+     * Returns the SHA-1 hash of the contents of the given file, hashing the
+     * file only if it has changed since it was indexed.
+     */
+    public byte[] getSHA1(File file) throws IOException {
+        return getEntry(file).sha1;
+    }
+
+    /**
+     * Closes the journal of this index. It is reopened if more files are
+     * hashed.
+     */
+    public synchronized void close() {
+        if (journal != null) {
+            try {journal.close();} catch (Exception e) {}
+            journal = null;
+        }
+    }
+
+    private Entry getEntry(File file) throws IOException {
+        String path = file.getCanonicalPath();
+        long length = file.length();
+        long lastModified = file.lastModified();
+        synchronized (this) {
+            Entry entry = entries.get(path);
+            if (entry != null && entry.length == length && entry.lastModified == lastModified) {
+                return entry;
+            }
+        }
+
+        Entry entry = hash(file);
+        // Don't index a file modified while it was being hashed
+        if (entry.length != length || entry.lastModified != lastModified
+                || file.length() != length || file.lastModified() != lastModified) {
+            return entry;
+        }
+        synchronized (this) {
+            entries.put(path, entry);
+            // A line break in a path would break the journal
+            if (path.indexOf('\n') < 0 && path.indexOf('\r') < 0) {
+                if (journal == null) {
+                    journal = new OutputStreamWriter(new FileOutputStream(indexFile, true), ENCODING);
+                }
+                journal.write(entry.format(path));
+                journal.flush();
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Reads the file once, computing both its MD5 and SHA-1 hashes.
+     */
+    private static Entry hash(File file) throws IOException {
+        Entry entry = new Entry();
+        entry.length = file.length();
+        entry.lastModified = file.lastModified();
+
+        MessageDigest md5;
+        MessageDigest sha1;
+        try {
+            md5 = MessageDigest.getInstance("MD5");
+            sha1 = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new SCSClientException("Unable to hash " + file + ": " + e.getMessage(), e);
+        }
+
+        InputStream input = new BufferedInputStream(new FileInputStream(file));
+        try {
+            byte[] buffer = new byte[16384];
+            int bytesRead;
+            while ( (bytesRead = input.read(buffer, 0, buffer.length)) != -1 ) {
+                md5.update(buffer, 0, bytesRead);
+                sha1.update(buffer, 0, bytesRead);
+            }
+        } finally {
+            try {input.close();} catch (Exception e) {}
+        }
+        entry.md5 = md5.digest();
+        entry.sha1 = sha1.digest();
+        return entry;
+    }
+
+    /**
+     * Loads the journal, later lines replacing earlier ones for the same
+     * file. Returns whether the journal holds superseded or malformed lines.
+     */
+    private boolean load() throws IOException {
+        if (!indexFile.exists()) return false;
+
+        int lines = 0;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), ENCODING));
+        try {
+            String line;
+            while ( (line = reader.readLine()) != null ) {
+                lines++;
+                String[] fields = line.split("\t", 5);
+                if (fields.length != 5) continue;
+                try {
+                    Entry entry = new Entry();
+                    entry.length = Long.parseLong(fields[0]);
+                    entry.lastModified = Long.parseLong(fields[1]);
+                    entry.md5 = BinaryUtils.fromHex(fields[2]);
+                    entry.sha1 = BinaryUtils.fromHex(fields[3]);
+                    entries.put(fields[4], entry);
+                } catch (RuntimeException e) {
+                    // Skip a line torn by a crash
+                }
+            }
+        } finally {
+            try {reader.close();} catch (Exception e) {}
+        }
+        return lines > entries.size();
+    }
+
+    /**
+     * Rewrites the journal with one line per indexed file, replacing it
+     * atomically.
+     */
+    private void compact() throws IOException {
+        File tempFile = new File(indexFile.getPath() + ".tmp");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(tempFile), ENCODING);
+        try {
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                writer.write(entry.getValue().format(entry.getKey()));
+            }
+        } finally {
+            try {writer.close();} catch (Exception e) {}
+        }
+        if (!tempFile.renameTo(indexFile)) {
+            indexFile.delete();
+            if (!tempFile.renameTo(indexFile)) {
+                throw new IOException("Unable to replace " + indexFile);
+            }
+        }
+    }
+
+    private static final class Entry {
+        private long length;
+        private long lastModified;
+        private byte[] md5;
+        private byte[] sha1;
+
+        private String format(String path) {
+            return length + "\t" + lastModified + "\t" + BinaryUtils.toHex(md5) + "\t"
+                    + BinaryUtils.toHex(sha1) + "\t" + path + "\n";
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.sina.util;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Utility methods for hashing streams with any {@link MessageDigest}
+ * algorithm, shared by {@link Md5Utils} and {@link Sha1Utils}.
+ */
+public class HashUtils {
+
+    private static final Log log = LogFactory.getLog(HashUtils.class);
+
+    /**
+     * Computes the hash of the data in the given input stream with the
+     * specified algorithm and returns it as an array of bytes. The stream is
+     * read in chunks and closed afterwards.
+     *
+     * @param is
+     *            The stream to hash.
+     * @param algorithm
+     *            The name of the {@link MessageDigest} algorithm, such as
+     *            "MD5" or "SHA-1".
+     */
+    public static byte[] computeHash(InputStream is, String algorithm) throws NoSuchAlgorithmException, IOException {
+        BufferedInputStream bis = new BufferedInputStream(is);
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance(algorithm);
+            byte[] buffer = new byte[16384];
+            int bytesRead = -1;
+            while ( (bytesRead = bis.read(buffer, 0, buffer.length)) != -1 ) {
+                messageDigest.update(buffer, 0, bytesRead);
+            }
+            return messageDigest.digest();
+        } finally {
+            try {
+                bis.close();
+            } catch ( Exception e ) {
+                log.debug("Unable to close input stream of hash candidate: " + e.getMessage(), e);
+            }
+        }
+    }
+}
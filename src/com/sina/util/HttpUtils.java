@@ -14,14 +14,10 @@
  */
 package com.sina.util;
 
-import java.io.UnsupportedEncodingException;
 import java.net.URI;
-import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map.Entry;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import com.sina.Request;
 import com.sina.http.HttpMethodName;
@@ -34,25 +30,33 @@ public class HttpUtils {
     private static final String DEFAULT_ENCODING = "UTF-8";
 
     /**
-     * Regex which matches any of the sequences that we need to fix up after
-     * URLEncoder.encode().
+     * Characters left as they are when URL encoding: the RFC 3986 unreserved
+     * characters. Slashes are also left alone when encoding a path.
      */
-    private static final Pattern ENCODED_CHARACTERS_PATTERN;
+    private static final boolean[] UNRESERVED = new boolean[128];
     static {
-        StringBuilder pattern = new StringBuilder();
-
-        pattern
-            .append(Pattern.quote("+"))
-            .append("|")
-            .append(Pattern.quote("*"))
-            .append("|")
-            .append(Pattern.quote("%7E"))
-            .append("|")
-            .append(Pattern.quote("%2F"));
-
-        ENCODED_CHARACTERS_PATTERN = Pattern.compile(pattern.toString());
+        for (char c = 'a'; c <= 'z'; c++) UNRESERVED[c] = true;
+        for (char c = 'A'; c <= 'Z'; c++) UNRESERVED[c] = true;
+        for (char c = '0'; c <= '9'; c++) UNRESERVED[c] = true;
+        UNRESERVED['-'] = true;
+        UNRESERVED['_'] = true;
+        UNRESERVED['.'] = true;
+        UNRESERVED['~'] = true;
     }
-    
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    /** Builders larger than this aren't kept for reuse by their thread */
+    private static final int MAX_REUSED_BUILDER_CAPACITY = 8 * 1024;
+
+    /** Per-thread builder values are encoded into */
+    private static final ThreadLocal<StringBuilder> encodeBuilder = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(256);
+        }
+    };
+
     public static String stringToAscii(String value)  
     {  
         StringBuffer sbu = new StringBuffer();  
@@ -70,11 +74,15 @@ public class HttpUtils {
     }  
 
     /**
-     * Encode a string for use in the path of a URL; uses URLEncoder.encode,
-     * (which encodes a string for use in the query portion of a URL), then
-     * applies some postfilters to fix things up per the RFC. Can optionally
-     * handle strings which are meant to encode a path (ie include '/'es
-     * which should NOT be escaped).
+     * Encode a string for use in the path of a URL, per RFC 3986: everything
+     * but the unreserved characters is percent-encoded as UTF-8. Can
+     * optionally handle strings which are meant to encode a path (ie include
+     * '/'es which should NOT be escaped).
+     * <p>
+     * The result is the same as encoding with URLEncoder and then replacing
+     * "+" with "%20", "*" with "%2A" and "%7E" with "~" (and "%2F" with "/"
+     * for paths), but is computed in a single pass, and a value which needs
+     * no encoding is returned as it is.
      *
      * @param value the value to encode
      * @param path true if the value is intended to represent a path
@@ -85,36 +93,58 @@ public class HttpUtils {
             return "";
         }
 
-        try {
-            String encoded = URLEncoder.encode(value, DEFAULT_ENCODING);
-
-            Matcher matcher = ENCODED_CHARACTERS_PATTERN.matcher(encoded);
-            StringBuffer buffer = new StringBuffer(encoded.length());
-
-            while (matcher.find()) {
-                String replacement = matcher.group(0);
+        int start = 0;
+        while (start < value.length() && !needsEncoding(value.charAt(start), path)) start++;
+        if (start == value.length()) return value;
+
+        StringBuilder buffer = encodeBuilder.get();
+        buffer.setLength(0);
+        buffer.append(value, 0, start);
+        appendEncoded(buffer, value, start, path);
+        String encoded = buffer.toString();
+        if (buffer.capacity() > MAX_REUSED_BUILDER_CAPACITY) {
+            encodeBuilder.remove();
+        }
+        return encoded;
+    }
 
-                if ("+".equals(replacement)) {
-                    replacement = "%20";
-                } else if ("*".equals(replacement)) {
-                    replacement = "%2A";
-                } else if ("%7E".equals(replacement)) {
-                    replacement = "~";
-                } else if (path && "%2F".equals(replacement)) {
-                    replacement = "/";
-                }
+    private static boolean needsEncoding(char c, boolean path) {
+        return c >= 128 || !(UNRESERVED[c] || (path && c == '/'));
+    }
 
-                matcher.appendReplacement(buffer, replacement);
+    private static void appendEncoded(StringBuilder buffer, String value, int start, boolean path) {
+        final int length = value.length();
+        for (int i = start; i < length; i++) {
+            char c = value.charAt(i);
+            if (!needsEncoding(c, path)) {
+                buffer.append(c);
+            } else if (c < 0x80) {
+                appendEscaped(buffer, c);
+            } else if (c < 0x800) {
+                appendEscaped(buffer, 0xC0 | (c >> 6));
+                appendEscaped(buffer, 0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                appendEscaped(buffer, 0xF0 | (codePoint >> 18));
+                appendEscaped(buffer, 0x80 | ((codePoint >> 12) & 0x3F));
+                appendEscaped(buffer, 0x80 | ((codePoint >> 6) & 0x3F));
+                appendEscaped(buffer, 0x80 | (codePoint & 0x3F));
+            } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                // Unpaired surrogates can't be encoded as UTF-8; like
+                // String.getBytes, substitute '?'
+                appendEscaped(buffer, '?');
+            } else {
+                appendEscaped(buffer, 0xE0 | (c >> 12));
+                appendEscaped(buffer, 0x80 | ((c >> 6) & 0x3F));
+                appendEscaped(buffer, 0x80 | (c & 0x3F));
             }
-
-            matcher.appendTail(buffer);
-            return buffer.toString();
-
-        } catch (UnsupportedEncodingException ex) {
-            throw new RuntimeException(ex);
         }
     }
 
+    private static void appendEscaped(StringBuilder buffer, int b) {
+        buffer.append('%').append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
+    }
+
     /**
      * Returns true if the specified URI is using a non-standard port (i.e. any
      * port other than 80 for HTTP URIs or any port other than 443 for HTTPS
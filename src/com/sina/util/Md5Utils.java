@@ -17,46 +17,86 @@
  */
 package com.sina.util;
 
-import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
 /**
  * Utility methods for computing MD5 sums.
  */
 public class Md5Utils {
 
+    private static final Log log = LogFactory.getLog(Md5Utils.class);
+
+    /** Size of the direct buffer file regions are read through */
+    private static final int READ_BUFFER_SIZE = 128 * 1024;
+
+    /** Each thread's direct buffer for reading file regions */
+    private static final ThreadLocal<ByteBuffer> readBuffer = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        }
+    };
+
     /**
      * Computes the MD5 hash of the data in the given input stream and returns
      * it as an array of bytes.
      */
     public static byte[] computeMD5Hash(InputStream is) throws NoSuchAlgorithmException, IOException {
-        BufferedInputStream bis = new BufferedInputStream(is);
+        return HashUtils.computeHash(is, "MD5");
+    }
+
+    /**
+     * Computes the MD5 hash of the given data and returns it as an array of
+     * bytes.
+     */
+    public static byte[] computeMD5Hash(byte[] data) throws NoSuchAlgorithmException, IOException {
+        return computeMD5Hash(new ByteArrayInputStream(data));
+    }
+
+    /**
+     * Computes the MD5 hash of the given region of a file and returns it as an
+     * array of bytes. The region is read with positional reads into a direct
+     * buffer reused by the calling thread, so several regions of the same
+     * file can be hashed in parallel without mapping the file into memory.
+     */
+    public static byte[] computeMD5Hash(File file, long offset, long length) throws NoSuchAlgorithmException, IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
         try {
+            FileChannel channel = randomAccessFile.getChannel();
             MessageDigest messageDigest = MessageDigest.getInstance("MD5");
-            byte[] buffer = new byte[16384];
-            int bytesRead = -1;
-            while ( (bytesRead = bis.read(buffer, 0, buffer.length)) != -1 ) {
-                messageDigest.update(buffer, 0, bytesRead);
+            ByteBuffer buffer = readBuffer.get();
+            long position = offset;
+            long end = offset + length;
+            while (position < end) {
+                buffer.clear();
+                if (end - position < buffer.capacity()) buffer.limit((int)(end - position));
+                int bytesRead = channel.read(buffer, position);
+                if (bytesRead < 0) {
+                    throw new IOException("Unable to read " + length + " bytes from offset " + offset + " of "
+                            + file.getAbsolutePath() + ": the file is shorter");
+                }
+                buffer.flip();
+                messageDigest.update(buffer);
+                position += bytesRead;
             }
             return messageDigest.digest();
         } finally {
             try {
-                bis.close();
+                randomAccessFile.close();
             } catch ( Exception e ) {
-                System.err.println("Unable to close input stream of hash candidate: " + e);
+                log.debug("Unable to close hash candidate: " + e.getMessage(), e);
             }
         }
     }
-
-    /**
-     * Computes the MD5 hash of the given data and returns it as an array of
-     * bytes.
-     */
-    public static byte[] computeMD5Hash(byte[] data) throws NoSuchAlgorithmException, IOException {
-        return computeMD5Hash(new ByteArrayInputStream(data));
-    }
 }
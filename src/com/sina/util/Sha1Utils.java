@@ -0,0 +1,20 @@
+package com.sina.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Utility methods for computing SHA-1 sums.
+ */
+public class Sha1Utils {
+
+    /**
+     * Computes the SHA-1 hash of the data in the given input stream and
+     * returns it as an array of bytes. The stream is read in chunks and
+     * closed afterwards.
+     */
+    public static byte[] computeSHA1Hash(InputStream is) throws NoSuchAlgorithmException, IOException {
+        return HashUtils.computeHash(is, "SHA-1");
+    }
+}